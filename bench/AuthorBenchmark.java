@@ -0,0 +1,130 @@
+/*
+ * Compares the validation of Author fields before and after the
+ * AuthorValidator: the old setters matched the email with
+ * Pattern.matches, which compiles the regex again on every call, and
+ * checked the names with a stream over their chars. Also measures whole
+ * imports with the AuthorImporter on one and on all cores. Also part of
+ * EngineBenchmarks.
+ *
+ * Run: java AuthorBenchmark
+ *
+ * */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+public class AuthorBenchmark {
+
+	private static final String[] FIRST_NAMES = {"Max", "Anna", "Jürgen", "Sophie", "Lukas", "Zoë", "Max1", "Eva"};
+	private static final String[] LAST_NAMES = {"Mustermann", "Müller", "Schmidt", "Gruber", "Huber", "O'Neil"};
+	private static final String[] DOMAINS = {"example.com", "mail.univie.ac.at", "gmx.at", "web.de", "bad_domain"};
+
+
+	public static void main(String[] args) {
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+
+		run(bench);
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	static void run(Benchmark bench) {
+
+		RawAuthor[] records = generate(new Random(42), 1 << 14);
+		int mask = records.length - 1;
+
+		bench.run("author.validate.legacy", "record", 0, new Benchmark.Operation() {
+
+			private int i;
+
+			public long run() {
+
+				RawAuthor raw = records[this.i++ & mask];
+				return legacyValidate(raw.getFirstName(), raw.getLastName(), raw.getEmail());
+
+			}
+
+		});
+
+		bench.run("author.validate", "record", 0, new Benchmark.Operation() {
+
+			private int i;
+
+			public long run() {
+
+				return records[this.i++ & mask].validate();
+
+			}
+
+		});
+
+		int[] parallelism = {1, Runtime.getRuntime().availableProcessors()};
+
+		for(int p = 0; p < parallelism.length; p++) {
+
+			ForkJoinPool pool = new ForkJoinPool(parallelism[p]);
+			AuthorImporter importer = new AuthorImporter(pool);
+
+			bench.run("author.import x" + parallelism[p], records.length + " records", 0, new Benchmark.Operation() {
+
+				public long run() {
+
+					List<ImportFailure> failures = new ArrayList<ImportFailure>();
+					return importer.importAuthors(records, failures).length + failures.size();
+
+				}
+
+			});
+
+			pool.shutdown();
+
+		}
+
+	}
+
+
+	/*
+	 * The checks of the setters as they were before, kept here as the
+	 * baseline.
+	 *
+	 * */
+
+	static int legacyValidate(String firstName, String lastName, String email) {
+
+		int invalid = 0;
+
+		if(!(firstName != null && firstName.chars().allMatch(Character::isLetter))) invalid |= AuthorValidator.FIRST_NAME;
+		if(!(lastName != null && lastName.chars().allMatch(Character::isLetter))) invalid |= AuthorValidator.LAST_NAME;
+		if(!(email != null && Pattern.matches(AuthorValidator.EMAIL_REGEX, email))) invalid |= AuthorValidator.EMAIL;
+
+		return invalid;
+
+	}
+
+
+	private static RawAuthor[] generate(Random random, int n) {
+
+		RawAuthor[] records = new RawAuthor[n];
+
+		for(int i = 0; i < n; i++) {
+
+			String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+			String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+			String email = firstName.toLowerCase() + "_" + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+			Date birthday = new Date(1 + random.nextInt(28), 1 + random.nextInt(12), 1940 + random.nextInt(60));
+
+			records[i] = new RawAuthor(firstName, lastName, birthday, "Wien", email);
+
+		}
+
+		return records;
+
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * A small benchmark harness. An operation is first run for a number of
+ * warmup iterations, so that the JIT compiler has compiled it, and then
+ * for a number of measurement iterations of fixed length. For each
+ * operation the average time per call, the throughput and the number of
+ * bytes allocated per call (measured with the allocation counter of the
+ * current thread) are reported.
+ *
+ * Operations return a long that is accumulated by the harness, so that the
+ * JIT compiler cannot drop their work as dead code.
+ *
+ * */
+
+import java.lang.management.ManagementFactory;
+
+public class Benchmark {
+
+	public interface Operation {
+
+		public long run();
+
+	}
+
+
+	private int warmupIterations;
+	private int measurementIterations;
+	private long iterationNanos;
+	private long sink;
+
+
+	public Benchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+
+		this.warmupIterations = (warmupIterations < 0) ? 0 : warmupIterations;
+		this.measurementIterations = (measurementIterations < 1) ? 1 : measurementIterations;
+		this.iterationNanos = ((iterationMillis < 1) ? 1 : iterationMillis) * 1000000L;
+
+	}
+
+
+	/*
+	 * Runs op and prints one line with the results. bytesPerOp is the
+	 * amount of input one call processes, used to report MB/s; 0 if it
+	 * does not apply.
+	 *
+	 * */
+
+	public void run(String name, String param, long bytesPerOp, Operation op) {
+
+		long batch = 1;
+
+		/*
+		 * Calls op in batches, so that System.nanoTime() is not called after
+		 * every call of short operations. The batch grows until one batch
+		 * takes about a millisecond.
+		 *
+		 * */
+
+		for(int i = 0; i < this.warmupIterations; i++) {
+
+			long start = System.nanoTime();
+
+			while(System.nanoTime() - start < this.iterationNanos) {
+
+				long t0 = System.nanoTime();
+				this.runBatch(op, batch);
+
+				if(System.nanoTime() - t0 < 1000000L && batch < (1L << 30)) {
+
+					batch *= 2;
+
+				}
+
+			}
+
+		}
+
+		long ops = 0;
+		long nanos = 0;
+		long allocated = 0;
+		boolean measureAllocation = allocatedBytes() >= 0;
+
+		for(int i = 0; i < this.measurementIterations; i++) {
+
+			long bytesBefore = allocatedBytes();
+			long start = System.nanoTime();
+			long now = start;
+
+			while(now - start < this.iterationNanos) {
+
+				this.runBatch(op, batch);
+				ops += batch;
+				now = System.nanoTime();
+
+			}
+
+			nanos += now - start;
+			allocated += allocatedBytes() - bytesBefore;
+
+		}
+
+		double nsPerOp = nanos / (double) ops;
+		double opsPerSecond = ops * 1e9 / nanos;
+
+		System.out.printf("%-28s %-8s %14.1f ns/op %14.1f ops/s %10s %12.1f B/op%n", name, param, nsPerOp,
+				opsPerSecond, (bytesPerOp > 0) ? String.format("%.1f MB/s", bytesPerOp * opsPerSecond / 1e6) : "",
+				measureAllocation ? allocated / (double) ops : Double.NaN);
+
+	}
+
+
+	private void runBatch(Operation op, long batch) {
+
+		long result = 0;
+
+		for(long j = 0; j < batch; j++) {
+
+			result += op.run();
+
+		}
+
+		this.sink += result;
+
+	}
+
+
+	/*
+	 * The value accumulated from all operations. Printing it once at the
+	 * end keeps the results of the operations alive.
+	 *
+	 * */
+
+	public long getSink() {
+
+		return this.sink;
+
+	}
+
+
+	/*
+	 * Bytes allocated by the current thread so far, or a negative value if
+	 * the JVM does not support the measurement.
+	 *
+	 * */
+
+	private static long allocatedBytes() {
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		}
+
+		return -1;
+
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Measures the set operations behind BooleanQuery on synthetic doc id
+ * lists over a million documents: the galloping intersection of a rare
+ * (1 in 1000), a medium (1 in 10) and a common (1 in 2) stem, compared with
+ * a linear merge of the same lists and with advancing PostingsCursors over
+ * their (compressed) PostingLists, as BooleanQuery does for stems, the
+ * difference (NOT) and the heap based union (OR) of the three. Also part of EngineBenchmarks.
+ *
+ * Run: java BooleanQueryBenchmark
+ *
+ * */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class BooleanQueryBenchmark {
+
+	private static final int DOC_COUNT = 1 << 20;
+
+
+	public static void main(String[] args) {
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+
+		run(bench);
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	static void run(Benchmark bench) {
+
+		Random random = new Random(42);
+		int[] rare = generate(random, 1000);
+		int[] medium = generate(random, 10);
+		int[] common = generate(random, 2);
+		int[] out = new int[rare.length];
+		int[] rest = new int[common.length];
+		PostingList mediumList = toPostingList(medium);
+		PostingList commonList = toPostingList(common);
+		PostingsCursor mediumCursor = new PostingsCursor();
+		PostingsCursor commonCursor = new PostingsCursor();
+
+		bench.run("boolean.and", "gallop", 0, new Benchmark.Operation() {
+
+			public long run() {
+
+				int size = BooleanQuery.intersect(rare, rare.length, medium, medium.length, out);
+
+				return BooleanQuery.intersect(out, size, common, common.length, out);
+
+			}
+
+		});
+
+		bench.run("boolean.and", "merge", 0, new Benchmark.Operation() {
+
+			public long run() {
+
+				int size = merge(rare, rare.length, medium, medium.length, out);
+
+				return merge(out, size, common, common.length, out);
+
+			}
+
+		});
+
+		bench.run("boolean.and", "cursor", 0, new Benchmark.Operation() {
+
+			public long run() {
+
+				mediumCursor.reset(mediumList);
+				commonCursor.reset(commonList);
+				int size = BooleanQuery.intersect(rare, rare.length, mediumCursor, out);
+
+				return BooleanQuery.intersect(out, size, commonCursor, out);
+
+			}
+
+		});
+
+		bench.run("boolean.not", "common", 0, new Benchmark.Operation() {
+
+			public long run() {
+
+				return BooleanQuery.difference(medium, medium.length, common, common.length, rest);
+
+			}
+
+		});
+
+		int[][] lists = {rare, medium, common};
+		int[] sizes = {rare.length, medium.length, common.length};
+
+		bench.run("boolean.or", "3 lists", 0, new Benchmark.Operation() {
+
+			public long run() {
+
+				return BooleanQuery.union(lists, sizes, lists.length).length;
+
+			}
+
+		});
+
+	}
+
+
+	/*
+	 * The intersection by walking both lists, for comparison.
+	 *
+	 * */
+
+	private static int merge(int[] a, int na, int[] b, int nb, int[] out) {
+
+		int size = 0;
+		int i = 0;
+		int j = 0;
+
+		while(i < na && j < nb) {
+
+			if(a[i] < b[j]) {
+
+				i++;
+
+			}
+			else if(a[i] > b[j]) {
+
+				j++;
+
+			}
+			else {
+
+				out[size++] = a[i];
+				i++;
+				j++;
+
+			}
+
+		}
+
+		return size;
+
+	}
+
+
+	private static PostingList toPostingList(int[] ids) {
+
+		PostingList list = new PostingList(ids.length);
+
+		for(int i = 0; i < ids.length; i++) {
+
+			list.add(ids[i], 1);
+
+		}
+
+		return list;
+
+	}
+
+
+	private static int[] generate(Random random, int density) {
+
+		int[] ids = new int[DOC_COUNT];
+		int size = 0;
+
+		for(int docId = 0; docId < DOC_COUNT; docId++) {
+
+			if(random.nextInt(density) == 0) {
+
+				ids[size++] = docId;
+
+			}
+
+		}
+
+		return Arrays.copyOf(ids, size);
+
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Measures the CompletionDictionary on a synthetic vocabulary of 500,000
+ * stems with Zipf distributed document frequencies: its size compared with
+ * an estimate for a HashMap<String, Integer> of the same stems, looking up
+ * the document frequency of a stem and completing prefixes of 0 to 3
+ * characters to the 10 most frequent stems. Also part of EngineBenchmarks.
+ *
+ * Run: java CompletionBenchmark
+ *
+ * */
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+
+public class CompletionBenchmark {
+
+	private static final int VOCABULARY_SIZE = 500000;
+	private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzäöüß";
+	private static final String[] PREFIXES = {"", "k", "ka", "kat"};
+
+
+	public static void main(String[] args) {
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+
+		run(bench);
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	static void run(Benchmark bench) {
+
+		Random random = new Random(42);
+		HashSet<String> vocabulary = new HashSet<String>();
+
+		while(vocabulary.size() < VOCABULARY_SIZE) {
+
+			StringBuilder stem = new StringBuilder();
+			int length = 3 + random.nextInt(10);
+
+			for(int i = 0; i < length; i++) {
+
+				stem.append(LETTERS.charAt(random.nextInt(i == 0 ? 26 : LETTERS.length())));
+
+			}
+
+			vocabulary.add(stem.toString());
+
+		}
+
+		String[] stems = vocabulary.toArray(new String[0]);
+		int[] docFreqs = new int[stems.length];
+
+		/* the i-th stem in random order is the i-th most frequent one */
+
+		for(int i = 0; i < stems.length; i++) {
+
+			docFreqs[i] = Math.max(1, 1000000 / (i + 1));
+
+		}
+
+		CompletionDictionary dictionary = CompletionDictionary.build(stems, docFreqs);
+
+		/*
+		 * a HashMap entry takes a node (32 bytes), a String (24) with its
+		 * byte array (16 + length, aligned to 8), an Integer (16) and about
+		 * 8 bytes of the table
+		 * */
+
+		long hashMapSize = 0;
+
+		for(int i = 0; i < stems.length; i++) {
+
+			int bytes = stems[i].getBytes(StandardCharsets.ISO_8859_1).length;
+			hashMapSize += 32 + 24 + ((16 + bytes + 7) & ~7) + 16 + 8;
+
+		}
+
+		System.out.printf("%-28s %-8s %14.2f bytes/stem (HashMap estimate: %.2f)%n", "completion.size",
+				"500K", (double) dictionary.sizeInBytes() / stems.length, (double) hashMapSize / stems.length);
+
+		bench.run("completion.lookup", "500K", 0, new Benchmark.Operation() {
+
+			private int i;
+
+			public long run() {
+
+				this.i = (this.i + 7919) % stems.length;
+
+				return dictionary.getDocumentFrequency(stems[this.i]);
+
+			}
+
+		});
+
+		for(int p = 0; p < PREFIXES.length; p++) {
+
+			String prefix = PREFIXES[p];
+
+			bench.run("completion.complete", "\"" + prefix + "\"", 0, new Benchmark.Operation() {
+
+				public long run() {
+
+					return dictionary.complete(prefix, 10).length;
+
+				}
+
+			});
+
+		}
+
+	}
+
+}
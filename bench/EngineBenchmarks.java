@@ -0,0 +1,382 @@
+/*
+ * Benchmarks of the hot paths of the engine: constructing a Document (from
+ * a String and streamed from a Reader), tokenizing its content, stemming
+ * single words, filling a WordCountsArray, ingesting batches of documents
+ * with one and with all cores, ranking with and without a recency boost,
+ * searching a ConcurrentIndex while idle and during a bulk load, serving
+ * searches over HTTP (see SearchServerLoadTest),
+ * decoding compressed posting lists, intersecting, subtracting and merging
+ * the doc id lists of Boolean queries, completing prefixes of stems,
+ * validating and importing authors and computing the age of a Date. The
+ * content based benchmarks run on synthetic German text (see
+ * GermanTextGenerator) of 1 KB up to 10 MB.
+ *
+ * Run: java EngineBenchmarks [filter] [sizes...]
+ *
+ * 	filter	only runs benchmarks whose name contains it ("all" for all)
+ * 	sizes	document sizes such as 1KB or 10MB (default: 1KB 10KB 100KB 1MB 10MB)
+ *
+ * Every change to the engine should be judged by the ns/op, ops/s and B/op
+ * (allocated bytes per operation) these benchmarks report.
+ *
+ * */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class EngineBenchmarks {
+
+	private static final String[] DEFAULT_SIZES = {"1KB", "10KB", "100KB", "1MB", "10MB"};
+
+
+	public static void main(String[] args) {
+
+		String filter = (args.length > 0 && !args[0].equals("all")) ? args[0] : "";
+		String[] sizes = DEFAULT_SIZES;
+
+		if(args.length > 1) {
+
+			sizes = new String[args.length - 1];
+			System.arraycopy(args, 1, sizes, 0, sizes.length);
+
+		}
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+		Date releaseDate = new Date(1, 1, 2020);
+		Author author = new Author("Max", "Mustermann", new Date(1, 1, 1980), "Wien", "max@example.com");
+
+		for(int s = 0; s < sizes.length; s++) {
+
+			String size = sizes[s];
+			String text = new GermanTextGenerator(42).generate(parseSize(size));
+
+			if("document.new".contains(filter)) {
+
+				bench.run("document.new", size, text.length(), new Benchmark.Operation() {
+
+					public long run() {
+
+						return new Document("Title", text, "de", "", releaseDate, author).getWordCounts().size();
+
+					}
+
+				});
+
+			}
+
+			if("document.read".contains(filter)) {
+
+				bench.run("document.read", size, text.length(), new Benchmark.Operation() {
+
+					public long run() {
+
+						try {
+
+							return Document.read("Title", new StringReader(text), "de", "", releaseDate, author)
+									.getWordCounts().size();
+
+						}
+						catch(IOException e) {
+
+							throw new UncheckedIOException(e);
+
+						}
+
+					}
+
+				});
+
+			}
+
+			if("tokenize".contains(filter)) {
+
+				Tokenizer tokenizer = new Tokenizer();
+
+				bench.run("tokenize", size, text.length(), new Benchmark.Operation() {
+
+					public long run() {
+
+						long tokens = 0;
+						tokenizer.reset(text);
+
+						while(tokenizer.next()) {
+
+							tokens++;
+
+						}
+
+						return tokens;
+
+					}
+
+				});
+
+			}
+
+			if("wordCountsArray.add".contains(filter)) {
+
+				String[] stems = Document.stems(text);
+
+				bench.run("wordCountsArray.add", size, text.length(), new Benchmark.Operation() {
+
+					public long run() {
+
+						WordCountsArray wca = new WordCountsArray(0);
+
+						for(int i = 0; i < stems.length; i++) {
+
+							wca.add(stems[i], 1);
+
+						}
+
+						return wca.size();
+
+					}
+
+				});
+
+			}
+
+			if("bulk.ingest".contains(filter)) {
+
+				RawDocument[] batch = new RawDocument[64];
+
+				for(int i = 0; i < batch.length; i++) {
+
+					batch[i] = new RawDocument("Title", text, "de", "", releaseDate, author);
+
+				}
+
+				int[] parallelism = {1, Runtime.getRuntime().availableProcessors()};
+
+				for(int p = 0; p < parallelism.length; p++) {
+
+					ForkJoinPool pool = new ForkJoinPool(parallelism[p]);
+					BulkIngestor ingestor = new BulkIngestor(pool);
+
+					bench.run("bulk.ingest x" + parallelism[p], size, (long) text.length() * batch.length,
+							new Benchmark.Operation() {
+
+						public long run() {
+
+							return ingestor.ingest(batch).length;
+
+						}
+
+					});
+
+					pool.shutdown();
+
+				}
+
+			}
+
+		}
+
+		if("stem.findSuffix/cutSuffix stem.suffixTrie".contains(filter)) {
+
+			StemmerBenchmark.run(bench);
+
+		}
+
+		if("search search.recency".contains(filter)) {
+
+			InvertedIndex index = new InvertedIndex();
+			GermanTextGenerator generator = new GermanTextGenerator(7);
+			Random random = new Random(7);
+
+			for(int i = 0; i < 20000; i++) {
+
+				Date released = new Date(1 + random.nextInt(28), 1 + random.nextInt(12), 1990 + random.nextInt(35));
+				index.addDocument(new Document("Title", generator.generate(1024), "de", "", released, author));
+
+			}
+
+			String[] queries = generator.generateWords(256);
+			RankingEngine engine = new RankingEngine(index);
+
+			bench.run("search", "20K docs", 0, new Benchmark.Operation() {
+
+				private int i;
+
+				public long run() {
+
+					return engine.search(queries[this.i++ & 255] + " " + queries[this.i++ & 255], 10).length;
+
+				}
+
+			});
+
+			RankingEngine boosted = new RankingEngine(index);
+			boosted.setRecencyBoost(RecencyBoost.exponential(365));
+
+			bench.run("search.recency", "20K docs", 0, new Benchmark.Operation() {
+
+				private int i;
+
+				public long run() {
+
+					return boosted.search(queries[this.i++ & 255] + " " + queries[this.i++ & 255], 10).length;
+
+				}
+
+			});
+
+		}
+
+		if("concurrent.search".contains(filter)) {
+
+			ConcurrentIndex index = new ConcurrentIndex();
+			GermanTextGenerator generator = new GermanTextGenerator(11);
+
+			for(int i = 0; i < 20000; i++) {
+
+				index.addDocument(new Document("Title", generator.generate(1024), "de", "", releaseDate, author));
+
+			}
+
+			index.refresh();
+
+			String[] queries = generator.generateWords(256);
+			Benchmark.Operation search = new Benchmark.Operation() {
+
+				private int i;
+
+				public long run() {
+
+					return index.search(queries[this.i++ & 255] + " " + queries[this.i++ & 255], 10).length;
+
+				}
+
+			};
+
+			bench.run("concurrent.search", "idle", 0, search);
+
+			/* a writer that keeps adding and refreshing while the queries run */
+
+			Thread loader = new Thread(() -> {
+
+				GermanTextGenerator loaderText = new GermanTextGenerator(13);
+
+				while(!Thread.currentThread().isInterrupted()) {
+
+					for(int i = 0; i < 100; i++) {
+
+						index.addDocument(new Document("Title", loaderText.generate(1024), "de", "", releaseDate, author));
+
+					}
+
+					index.refresh();
+
+				}
+
+			});
+
+			loader.setDaemon(true);
+			loader.start();
+
+			bench.run("concurrent.search", "loading", 0, search);
+
+			loader.interrupt();
+
+		}
+
+		if("server.search".contains(filter)) {
+
+			try {
+
+				SearchServerLoadTest.run(256, 20000, 10000);
+
+			}
+			catch(Exception e) {
+
+				throw new RuntimeException(e);
+
+			}
+
+		}
+
+		if("postings.size postings.read postings.decode postings.heap postings.advance".contains(filter)) {
+
+			PostingsBenchmark.run(bench);
+
+		}
+
+		if("boolean.and boolean.not boolean.or".contains(filter)) {
+
+			BooleanQueryBenchmark.run(bench);
+
+		}
+
+		if("completion.size completion.lookup completion.complete".contains(filter)) {
+
+			CompletionBenchmark.run(bench);
+
+		}
+
+		if("author.validate.legacy author.import".contains(filter)) {
+
+			AuthorBenchmark.run(bench);
+
+		}
+
+		if("date.getAgeInDaysAt".contains(filter)) {
+
+			Date[] dates = new Date[1024];
+			Random random = new Random(42);
+
+			for(int i = 0; i < dates.length; i++) {
+
+				dates[i] = new Date(1 + random.nextInt(28), 1 + random.nextInt(12), 1970 + random.nextInt(60));
+
+			}
+
+			bench.run("date.getAgeInDaysAt", "", 0, new Benchmark.Operation() {
+
+				private int i;
+
+				public long run() {
+
+					int index = this.i++;
+					return dates[index & 1023].getAgeInDaysAt(dates[(index >>> 10) & 1023]);
+
+				}
+
+			});
+
+		}
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	/*
+	 * Parses sizes such as 512, 1KB or 10MB into a number of characters.
+	 *
+	 * */
+
+	static int parseSize(String size) {
+
+		String s = size.trim().toUpperCase();
+
+		if(s.endsWith("MB")) {
+
+			return Integer.parseInt(s.substring(0, s.length() - 2)) * 1024 * 1024;
+
+		}
+
+		if(s.endsWith("KB")) {
+
+			return Integer.parseInt(s.substring(0, s.length() - 2)) * 1024;
+
+		}
+
+		return Integer.parseInt(s);
+
+	}
+
+}
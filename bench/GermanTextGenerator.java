@@ -0,0 +1,135 @@
+/*
+ * Generates synthetic German text of a given size for the benchmarks. The
+ * text consists of sentences made of common short words (articles,
+ * prepositions, ...) and of longer words built from a stem and one of the
+ * Document.SUFFIXES, so that the stemmer finds suffixes about as often as
+ * in real text. Sentences end with a dot, question or exclamation mark,
+ * words are followed by commas now and then and paragraphs are separated
+ * by line breaks. The same seed always gives the same text.
+ *
+ * */
+
+import java.util.Random;
+
+public class GermanTextGenerator {
+
+	private static final String[] SHORT_WORDS = {"der", "die", "das", "und", "in", "den", "von", "zu", "mit",
+			"sich", "des", "auf", "für", "ist", "im", "dem", "nicht", "ein", "eine", "als", "auch", "es", "an",
+			"aus", "bei", "nach", "wird", "über", "so", "zum", "aber", "vor", "nur", "noch", "wie", "oder"};
+
+	private static final String[] STEMS = {"Wissen", "Forsch", "Zeit", "Frei", "Kind", "spiel", "Land", "Bild",
+			"Arbeit", "Schön", "Ordn", "Bewert", "Entwickl", "Gesell", "Freund", "Möglich", "Wirt", "Bedeut",
+			"Erfahr", "Regier", "Versamml", "Gemein", "Herr", "Bürger", "Verantwort", "Sicher", "Gesund", "Zukunft",
+			"Wahr", "Einheit", "Meinung", "Sprach", "Schul", "Stadt", "Kult", "Natur", "Geschicht", "Rechn"};
+
+	private Random random;
+
+
+	public GermanTextGenerator(long seed) {
+
+		this.random = new Random(seed);
+
+	}
+
+
+	/*
+	 * Returns a text of exactly the given number of characters.
+	 *
+	 * */
+
+	public String generate(int chars) {
+
+		StringBuilder sb = new StringBuilder(chars + 32);
+		int wordsInSentence = 0;
+		int sentencesInParagraph = 0;
+
+		while(sb.length() < chars) {
+
+			String word = this.nextWord();
+
+			if(wordsInSentence == 0) {
+
+				sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+
+			}
+			else {
+
+				sb.append(word);
+
+			}
+
+			wordsInSentence++;
+
+			if(wordsInSentence > 4 && this.random.nextInt(8) == 0) {
+
+				int end = this.random.nextInt(10);
+				sb.append((end == 0) ? '?' : (end == 1) ? '!' : '.');
+				wordsInSentence = 0;
+
+				if(++sentencesInParagraph > 5 && this.random.nextInt(4) == 0) {
+
+					sb.append('\n');
+					sentencesInParagraph = 0;
+					continue;
+
+				}
+
+			}
+			else if(this.random.nextInt(12) == 0) {
+
+				sb.append(',');
+
+			}
+
+			sb.append(' ');
+
+		}
+
+		sb.setLength(chars);
+
+		return sb.toString();
+
+	}
+
+
+	/*
+	 * Returns single words, e.g. as input for the stemmer.
+	 *
+	 * */
+
+	public String[] generateWords(int n) {
+
+		String[] words = new String[n];
+
+		for(int i = 0; i < n; i++) {
+
+			words[i] = this.nextWord();
+
+		}
+
+		return words;
+
+	}
+
+
+	private String nextWord() {
+
+		if(this.random.nextInt(2) == 0) {
+
+			return SHORT_WORDS[this.random.nextInt(SHORT_WORDS.length)];
+
+		}
+
+		String stem = STEMS[this.random.nextInt(STEMS.length)];
+
+		if(this.random.nextInt(3) == 0) {
+
+			return stem;
+
+		}
+
+		return stem + Document.SUFFIXES[this.random.nextInt(Document.SUFFIXES.length)];
+
+	}
+
+}
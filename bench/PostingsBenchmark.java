@@ -0,0 +1,165 @@
+/*
+ * Measures the CompressedPostingList: how many bytes a posting takes, how
+ * fast a PostingsCursor decodes a whole list (also that of the in-heap
+ * PostingList, which keeps the same blocks), and how fast advance skips
+ * through it, compared with reading plain int arrays. The lists are
+ * synthetic, with doc ids drawn at a density of 1 in 2 (a very
+ * common stem) up to 1 in 1000 (a rare one). Also part of EngineBenchmarks.
+ *
+ * Run: java PostingsBenchmark
+ *
+ * */
+
+import java.util.Random;
+
+public class PostingsBenchmark {
+
+	private static final int DOC_COUNT = 1 << 20;
+	private static final int[] DENSITIES = {2, 10, 1000};
+
+
+	public static void main(String[] args) {
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+
+		run(bench);
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	static void run(Benchmark bench) {
+
+		for(int d = 0; d < DENSITIES.length; d++) {
+
+			String param = "1/" + DENSITIES[d];
+			PostingList list = generate(new Random(42), DENSITIES[d]);
+			CompressedPostingList compressed = CompressedPostingList.encode(list);
+			PostingsCursor cursor = compressed.cursor();
+			int[] docIds = new int[list.size()];
+			int[] frequencies = new int[list.size()];
+			int n = 0;
+
+			for(int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+
+				docIds[n] = doc;
+				frequencies[n] = cursor.freq();
+				n++;
+
+			}
+
+			System.out.printf("%-28s %-8s %14.2f bytes/posting (%d postings)%n", "postings.size", param,
+					(double) compressed.sizeInBytes() / list.size(), list.size());
+
+			bench.run("postings.read", param, 8L * list.size(), new Benchmark.Operation() {
+
+				public long run() {
+
+					long sum = 0;
+
+					for(int i = 0; i < docIds.length; i++) {
+
+						sum += docIds[i] + frequencies[i];
+
+					}
+
+					return sum;
+
+				}
+
+			});
+
+			bench.run("postings.decode", param, 8L * list.size(), new Benchmark.Operation() {
+
+				public long run() {
+
+					long sum = 0;
+					cursor.reset(compressed);
+
+					for(int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+
+						sum += doc + cursor.freq();
+
+					}
+
+					return sum;
+
+				}
+
+			});
+
+			bench.run("postings.heap", param, 8L * list.size(), new Benchmark.Operation() {
+
+				public long run() {
+
+					long sum = 0;
+					cursor.reset(list);
+
+					for(int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+
+						sum += doc + cursor.freq();
+
+					}
+
+					return sum;
+
+				}
+
+			});
+
+			bench.run("postings.advance", param, 0, new Benchmark.Operation() {
+
+				public long run() {
+
+					long sum = 0;
+					cursor.reset(compressed);
+
+					/* every 5000th doc id, like the intersection with a rare stem */
+
+					for(int target = 0; target < DOC_COUNT; target += 5000) {
+
+						int doc = cursor.advance(target);
+
+						if(doc == PostingsCursor.NO_MORE_DOCS) {
+
+							break;
+
+						}
+
+						sum += doc;
+
+					}
+
+					return sum;
+
+				}
+
+			});
+
+		}
+
+	}
+
+
+	private static PostingList generate(Random random, int density) {
+
+		PostingList list = new PostingList(DOC_COUNT / density);
+
+		for(int docId = 0; docId < DOC_COUNT; docId++) {
+
+			if(random.nextInt(density) == 0) {
+
+				/* mostly small frequencies, like real text */
+
+				list.add(docId, 1 + (int) (-Math.log(1 - random.nextDouble()) * 2));
+
+			}
+
+		}
+
+		return list;
+
+	}
+
+}
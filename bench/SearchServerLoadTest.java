@@ -0,0 +1,161 @@
+/*
+ * Load test of the SearchServer: starts a server over a ConcurrentIndex of
+ * synthetic German documents and sends it search requests from many
+ * concurrent connections (java.net.http.HttpClient, asynchronously, so
+ * the client does not need a thread per connection), and reports the
+ * throughput and the p50, p99, p99.9 and maximum latency. Also part of
+ * EngineBenchmarks.
+ *
+ * Run: java SearchServerLoadTest [connections] [requests] [documents]
+ *
+ * 	connections	requests in flight at any time (default 256)
+ * 	requests	number of requests in total (default 20000)
+ * 	documents	size of the index (default 10000)
+ *
+ * */
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchServerLoadTest {
+
+	public static void main(String[] args) throws Exception {
+
+		int connections = (args.length > 0) ? Integer.parseInt(args[0]) : 256;
+		int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+		int documents = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+
+		run(connections, requests, documents);
+
+	}
+
+
+	static void run(int connections, int requests, int documents) throws Exception {
+
+		GermanTextGenerator generator = new GermanTextGenerator(17);
+		Author author = new Author("Max", "Mustermann", new Date(1, 1, 1980), "Wien", "max@example.com");
+		ConcurrentIndex index = new ConcurrentIndex();
+
+		for(int i = 0; i < documents; i++) {
+
+			index.addDocument(new Document("Title " + i, generator.generate(1024), "de", "", new Date(1, 1, 2020),
+					author));
+
+		}
+
+		index.refresh();
+
+		String[] queries = generator.generateWords(1024);
+		SearchServer server = new SearchServer(index);
+		int port = server.start(0);
+		ExecutorService clientExecutor = SearchServer.newVirtualThreadExecutor();
+		HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+
+		if(clientExecutor != null) {
+
+			builder.executor(clientExecutor);
+
+		}
+
+		HttpClient client = builder.build();
+
+		try {
+
+			/* warm up */
+
+			send(client, port, queries, Math.min(connections, 64), Math.min(requests, 2000), new long[requests]);
+
+			long[] latencies = new long[requests];
+			long start = System.nanoTime();
+			int errors = send(client, port, queries, connections, requests, latencies);
+			long elapsed = System.nanoTime() - start;
+
+			Arrays.sort(latencies);
+
+			System.out.printf("%-28s %-8s %10.0f req/s  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms"
+					+ "  errors %d  (%s threads)%n", "server.search", connections + " conn",
+					requests / (elapsed / 1e9), percentile(latencies, 0.5), percentile(latencies, 0.99),
+					percentile(latencies, 0.999), latencies[requests - 1] / 1e6, errors,
+					server.isUsingVirtualThreads() ? "virtual" : "platform");
+
+		}
+		finally {
+
+			server.stop(0);
+
+			if(clientExecutor != null) {
+
+				clientExecutor.shutdown();
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Sends requests search requests with at most connections of them in
+	 * flight and stores the latency of each in latencies (ns). Returns the
+	 * number of failed requests.
+	 *
+	 * */
+
+	private static int send(HttpClient client, int port, String[] queries, int connections, int requests,
+			long[] latencies) throws InterruptedException {
+
+		Semaphore inFlight = new Semaphore(connections);
+		CountDownLatch done = new CountDownLatch(requests);
+		AtomicInteger errors = new AtomicInteger();
+
+		for(int i = 0; i < requests; i++) {
+
+			String query = queries[i % queries.length] + " " + queries[(i * 7 + 3) % queries.length];
+			URI uri = URI.create("http://localhost:" + port + "/search?k=10&q="
+					+ URLEncoder.encode(query, StandardCharsets.UTF_8));
+			int request = i;
+
+			inFlight.acquire();
+			long start = System.nanoTime();
+
+			client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofByteArray())
+					.whenComplete((response, failure) -> {
+
+				latencies[request] = System.nanoTime() - start;
+
+				if(failure != null || response.statusCode() != 200) {
+
+					errors.incrementAndGet();
+
+				}
+
+				inFlight.release();
+				done.countDown();
+
+			});
+
+		}
+
+		done.await();
+
+		return errors.get();
+
+	}
+
+
+	private static double percentile(long[] sorted, double p) {
+
+		return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+
+	}
+
+}
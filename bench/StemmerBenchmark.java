@@ -0,0 +1,130 @@
+/*
+ * Compares the suffix lookup of the stemmer before and after the SUFFIXES
+ * were compiled into a SuffixTrie: the old findSuffix/cutSuffix pair
+ * compared every word with all suffixes one after the other, the trie
+ * reads the word once from its end. Also part of EngineBenchmarks.
+ *
+ * Run: java StemmerBenchmark
+ *
+ * */
+
+public class StemmerBenchmark {
+
+	public static void main(String[] args) {
+
+		Benchmark bench = new Benchmark(3, 5, 1000);
+
+		run(bench);
+
+		System.out.println("(" + bench.getSink() + ")");
+
+	}
+
+
+	static void run(Benchmark bench) {
+
+		String[] words = new GermanTextGenerator(42).generateWords(1 << 16);
+		int mask = words.length - 1;
+
+		bench.run("stem.findSuffix/cutSuffix", "word", 0, new Benchmark.Operation() {
+
+			private int i;
+
+			public long run() {
+
+				return legacyStem(words[this.i++ & mask]).length();
+
+			}
+
+		});
+
+		bench.run("stem.suffixTrie", "word", 0, new Benchmark.Operation() {
+
+			private int i;
+
+			public long run() {
+
+				String word = words[this.i++ & mask];
+				return Document.stemEnd(word, 0, word.length());
+
+			}
+
+		});
+
+	}
+
+
+	/*
+	 * The stemmer as it was before, kept here as the baseline.
+	 *
+	 * */
+
+	static String legacyStem(String word) {
+
+		if(word.length() > 4) {
+
+			return legacyCutSuffix(word, legacyFindSuffix(word));
+
+		}
+
+		return word;
+
+	}
+
+
+	private static boolean legacySuffixesEqual(String w1, String w2, int n) {
+
+		int w1l = w1.length();
+		int w2l = w2.length();
+
+		if(w1l < n || w2l < n) { return false; }
+
+		for(int i = 1; i < n; i++) {
+
+			if(w1.charAt(w1l-i) != w2.charAt(w2l-i)) {
+
+				return false;
+
+			}
+
+		}
+
+		return true;
+
+	}
+
+
+	private static String legacyFindSuffix(String word) {
+
+		for(int i = 0; i < Document.SUFFIXES.length; i++) {
+
+			String suffix = Document.SUFFIXES[i];
+
+			if(legacySuffixesEqual(word, suffix, suffix.length())) {
+
+				return suffix;
+
+			}
+
+		}
+
+		return "";
+
+	}
+
+
+	private static String legacyCutSuffix(String word, String suffix) {
+
+		if(word.length() <= suffix.length()) return word;
+
+		if(legacySuffixesEqual(word, suffix, suffix.length())) {
+
+			return word.substring(0, word.length()-suffix.length());
+
+		}
+
+		return word;
+
+	}
+
+}
@@ -1,13 +1,16 @@
 /*
  * Each instance represents the Author of a Document or Review, or several.
  * 
- * Uses streams: to verify that firstName and lastName consist only of letters.
- * Uses RegEx: to verify email address.
+ * The names must consist of letters only, and the email address must match 
+ * AuthorValidator.EMAIL_REGEX; both are checked by AuthorValidator.
+ * 
+ * Authors are equal if their first name, last name and birthday are equal,
+ * and can be used as keys of hash tables (see AuthorIndex). The hash of 
+ * the names is cached and recomputed by their setters. An author must not
+ * be changed while it is a key.
  * 
  * */
 
-import java.util.regex.Pattern;
-
 public class Author {
 	
 	private String firstName;
@@ -15,26 +18,28 @@ public class Author {
 	private Date birthday;
 	private String residence;
 	private String email;
+	private int nameHash;
+	
+	public Author(String firstName, String lastName, Date birthday, String residence, String email) {
+		
+		this(firstName, lastName, birthday, residence, email, 
+				AuthorValidator.validate(firstName, lastName, birthday, residence, email));
+		
+	}
+	
 	
 	/* 
-	 * Regular expression and related classes to verify email: 
-	 * 	- for simplicity reasons, not all valid variations are accepted here 
-	 *	- sub-domains after the @-sign are supported
+	 * Creates an author whose fields have been validated already: invalid
+	 * holds the invalid fields (see AuthorValidator.validate), which are 
+	 * replaced by defaults.
 	 * 
 	 * */
 	
-	private static final String EMAIL_REGEX = "[\\w]+@[\\w]+(\\.[\\w]+)*(\\.[a-z]{2,})";
-	
-	
-	public Author(String firstName, String lastName, Date birthday, String residence, String email) {
+	Author(String firstName, String lastName, Date birthday, String residence, String email, int invalid) {
 		
-		if(!this.setFirstName(firstName)) {
-			this.firstName = "Unknown";
-		}
-		
-		if(!this.setLastName(lastName)) {
-			this.lastName = "Unknown";
-		}
+		this.firstName = ((invalid & AuthorValidator.FIRST_NAME) == 0) ? firstName : "Unknown";
+		this.lastName = ((invalid & AuthorValidator.LAST_NAME) == 0) ? lastName : "Unknown";
+		this.updateNameHash();
 		
 		/* 
 		 * if invalid parameter is passed into constructor, 
@@ -42,17 +47,9 @@ public class Author {
 		 * 
 		 * */
 		
-		if(!this.setBirthday(birthday)) {
-			this.birthday = new Date(1,1,1970);
-		}
-		
-		if(!this.setResidence(residence)) {
-			this.residence = "Unknown";
-		}
-		
-		if(!this.setEmail(email)) { 
-			this.email = "Unknown"; 
-		}
+		this.birthday = ((invalid & AuthorValidator.BIRTHDAY) == 0) ? birthday : new Date(1,1,1970);
+		this.residence = ((invalid & AuthorValidator.RESIDENCE) == 0) ? residence : "Unknown";
+		this.email = ((invalid & AuthorValidator.EMAIL) == 0) ? email : "Unknown";
 	}
 	
 	
@@ -78,17 +75,17 @@ public class Author {
 	
 	
 	/*
-	 * firstName and lastName should only contain letters:
-	 * String to char-stream to check if all match with 
-	 * isLetter() method from class Character
+	 * firstName and lastName should only contain letters (see 
+	 * AuthorValidator.isValidName).
 	 * 
 	 * */
 	
 	public boolean setFirstName(String firstName) {
 		
-		if(firstName != null && firstName.chars().allMatch(Character::isLetter)) {
+		if(AuthorValidator.isValidName(firstName)) {
 			
 			this.firstName = firstName;
+			this.updateNameHash();
 			return true;
 			
 		}
@@ -102,9 +99,10 @@ public class Author {
 	
 	public boolean setLastName(String lastName) {
 		
-		if(lastName != null && lastName.chars().allMatch(Character::isLetter)) {
+		if(AuthorValidator.isValidName(lastName)) {
 			
 			this.lastName = lastName;
+			this.updateNameHash();
 			return true;
 			
 		}
@@ -154,13 +152,15 @@ public class Author {
 
 	
 	/* 
-	 * Uses Java Regular Expression to validate email.
+	 * The email address must match AuthorValidator.EMAIL_REGEX; for 
+	 * simplicity reasons, not all valid variations are accepted, but 
+	 * sub-domains after the @-sign are supported.
 	 * 
 	 * */
 	
 	public boolean setEmail(String email) {
 		
-		if(email != null && Pattern.matches(EMAIL_REGEX, email)) {
+		if(AuthorValidator.isValidEmail(email)) {
 			
 			this.email = email;
 			return true;
@@ -202,6 +202,7 @@ public class Author {
 	public boolean equals(Author author) {
 		
 		if(author != null 
+				&& this.nameHash == author.nameHash
 				&& this.firstName.equals(author.getFirstName()) 
 				&& this.lastName.equals(author.getLastName())
 				&& this.birthday.equals(author.getBirthday())) 
@@ -218,4 +219,35 @@ public class Author {
 		
 	}
 	
+	
+	public boolean equals(Object object) {
+		
+		return (object instanceof Author) && this.equals((Author) object);
+		
+	}
+	
+	
+	/* 
+	 * The birthday is a mutable Date, so its hash (its epoch day) is read 
+	 * on every call instead of being cached here.
+	 * 
+	 * */
+	
+	public int hashCode() {
+		
+		return 31 * this.nameHash + this.birthday.hashCode();
+		
+	}
+	
+	
+	private void updateNameHash() {
+		
+		if(this.firstName != null && this.lastName != null) {
+			
+			this.nameHash = 31 * this.firstName.hashCode() + this.lastName.hashCode();
+			
+		}
+		
+	}
+	
 }
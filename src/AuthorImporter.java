@@ -0,0 +1,145 @@
+/*
+ * Creates the Authors of a whole batch of RawAuthors in parallel on a
+ * ForkJoinPool, the same way the BulkIngestor creates documents: the batch
+ * is split in halves until a part is small enough, and each part is
+ * validated (see AuthorValidator) and converted by one worker. Every field
+ * is validated once; the invalid ones are replaced by the same defaults
+ * the Author constructor uses, and reported as ImportFailures.
+ * 
+ * */
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class AuthorImporter {
+	
+	/* number of records below which a part of the batch is not split any further */
+	
+	private static final int THRESHOLD = 1024;
+	
+	private ForkJoinPool pool;
+	
+	
+	public AuthorImporter() {
+		
+		this(ForkJoinPool.commonPool());
+		
+	}
+	
+	
+	public AuthorImporter(ForkJoinPool pool) {
+		
+		this.pool = (pool == null) ? ForkJoinPool.commonPool() : pool;
+		
+	}
+	
+	
+	/* 
+	 * Returns the Authors created from batch, in the same order. Null 
+	 * entries of batch stay null. Every invalid field is added to failures
+	 * (unless failures is null), ordered by record.
+	 * 
+	 * */
+	
+	public Author[] importAuthors(RawAuthor[] batch, List<ImportFailure> failures) {
+		
+		if(batch == null) {
+			
+			return new Author[0];
+			
+		}
+		
+		Author[] authors = new Author[batch.length];
+		int[] invalid = new int[batch.length];
+		
+		this.pool.invoke(new ImportTask(batch, authors, invalid, 0, batch.length));
+		
+		/* all tasks are done, so their results are visible here */
+		
+		if(failures != null) {
+			
+			for(int i = 0; i < batch.length; i++) {
+				
+				if(invalid[i] != 0) {
+					
+					addFailures(failures, i, batch[i], invalid[i]);
+					
+				}
+				
+			}
+			
+		}
+		
+		return authors;
+		
+	}
+	
+	
+	private static void addFailures(List<ImportFailure> failures, int record, RawAuthor raw, int invalid) {
+		
+		Object[] values = {raw.getFirstName(), raw.getLastName(), raw.getBirthday(), raw.getResidence(), 
+				raw.getEmail()};
+		
+		for(int field = 0; field < values.length; field++) {
+			
+			if((invalid & (1 << field)) != 0) {
+				
+				failures.add(new ImportFailure(record, AuthorValidator.FIELD_NAMES[field], values[field]));
+				
+			}
+			
+		}
+		
+	}
+	
+	
+	private static class ImportTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private RawAuthor[] batch;
+		private Author[] authors;
+		private int[] invalid;
+		private int from;
+		private int to;
+		
+		
+		ImportTask(RawAuthor[] batch, Author[] authors, int[] invalid, int from, int to) {
+			
+			this.batch = batch;
+			this.authors = authors;
+			this.invalid = invalid;
+			this.from = from;
+			this.to = to;
+			
+		}
+		
+		
+		protected void compute() {
+			
+			if(this.to - this.from > THRESHOLD) {
+				
+				int middle = (this.from + this.to) >>> 1;
+				
+				invokeAll(new ImportTask(this.batch, this.authors, this.invalid, this.from, middle),
+						new ImportTask(this.batch, this.authors, this.invalid, middle, this.to));
+				
+				return;
+				
+			}
+			
+			for(int i = this.from; i < this.to; i++) {
+				
+				if(this.batch[i] == null) continue;
+				
+				this.invalid[i] = this.batch[i].validate();
+				this.authors[i] = this.batch[i].toAuthor(this.invalid[i]);
+				
+			}
+			
+		}
+		
+	}
+	
+}
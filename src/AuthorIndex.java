@@ -0,0 +1,178 @@
+/*
+ * Maps every Author of the documents of an InvertedIndex to the ids of
+ * their documents, so "all documents by X" is one hash lookup plus the
+ * number of results, instead of a scan over all documents. Authors are
+ * found by equality (first name, last name and birthday, see
+ * Author.equals), so any equal Author object can be used to look up.
+ *
+ * The doc ids of an author are kept in a compact int array. Documents are
+ * added to the index in the order of their ids, so the arrays are sorted
+ * without ever being sorted.
+ *
+ * The author index registers itself as a listener of the index and picks
+ * up the documents that are already in it when it is created. Authors
+ * must not be changed after their documents have been indexed. All
+ * methods are thread safe.
+ *
+ * */
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class AuthorIndex implements IndexListener {
+
+	private static final int[] EMPTY = new int[0];
+
+	private InvertedIndex index;
+	private HashMap<Author, DocIds> docIdsByAuthor;
+
+
+	private static class DocIds {
+
+		int[] ids = new int[2];
+		int size;
+
+		void add(int docId) {
+
+			if(this.size == this.ids.length) {
+
+				this.ids = Arrays.copyOf(this.ids, this.size * 2);
+
+			}
+
+			this.ids[this.size++] = docId;
+
+		}
+
+	}
+
+
+	public AuthorIndex(InvertedIndex index) {
+
+		this.index = index;
+		this.docIdsByAuthor = new HashMap<Author, DocIds>();
+
+		synchronized(this) {
+
+			index.addListener(this);
+
+			for(int docId = 0; docId < index.size(); docId++) {
+
+				this.add(docId, index.getDocument(docId).getAuthor());
+
+			}
+
+		}
+
+	}
+
+
+	public InvertedIndex getIndex() {
+
+		return this.index;
+
+	}
+
+
+	/*
+	 * Called by the index for every new document.
+	 *
+	 * */
+
+	public synchronized void documentAdded(InvertedIndex index, int docId, Document document) {
+
+		this.add(docId, document.getAuthor());
+
+	}
+
+
+	private void add(int docId, Author author) {
+
+		DocIds ids = this.docIdsByAuthor.get(author);
+
+		if(ids == null) {
+
+			ids = new DocIds();
+			this.docIdsByAuthor.put(author, ids);
+
+		}
+
+		/* a listener registered while documents are added may see one twice */
+
+		if(ids.size == 0 || ids.ids[ids.size - 1] < docId) {
+
+			ids.add(docId);
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the ids of the documents of author, in ascending order.
+	 *
+	 * */
+
+	public synchronized int[] getDocIds(Author author) {
+
+		DocIds ids = (author == null) ? null : this.docIdsByAuthor.get(author);
+
+		return (ids == null) ? EMPTY : Arrays.copyOf(ids.ids, ids.size);
+
+	}
+
+
+	/*
+	 * Returns the documents of author, in the order of their ids.
+	 *
+	 * */
+
+	public Document[] getDocuments(Author author) {
+
+		int[] ids = this.getDocIds(author);
+		Document[] documents = new Document[ids.length];
+
+		for(int i = 0; i < ids.length; i++) {
+
+			documents[i] = this.index.getDocument(ids[i]);
+
+		}
+
+		return documents;
+
+	}
+
+
+	/*
+	 * Returns the number of documents of author.
+	 *
+	 * */
+
+	public synchronized int count(Author author) {
+
+		DocIds ids = (author == null) ? null : this.docIdsByAuthor.get(author);
+
+		return (ids == null) ? 0 : ids.size;
+
+	}
+
+
+	/*
+	 * Returns the number of distinct authors.
+	 *
+	 * */
+
+	public synchronized int size() {
+
+		return this.docIdsByAuthor.size();
+
+	}
+
+
+	public synchronized Author[] getAuthors() {
+
+		return this.docIdsByAuthor.keySet().toArray(new Author[this.docIdsByAuthor.size()]);
+
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Okapi BM25: the score of a term grows with its frequency in the document,
+ * but saturates (controlled by k1), and is normalized by the length of the
+ * document relative to the average length (controlled by b).
+ * 
+ * */
+
+public class BM25Similarity implements Similarity {
+	
+	private float k1;
+	private float b;
+	
+	
+	/* 
+	 * Uses the common defaults k1 = 1.2 and b = 0.75.
+	 * 
+	 * */
+	
+	public BM25Similarity() {
+		
+		this(1.2f, 0.75f);
+		
+	}
+	
+	
+	public BM25Similarity(float k1, float b) {
+		
+		this.k1 = (k1 < 0) ? 0 : k1;
+		this.b = (b < 0) ? 0 : (b > 1) ? 1 : b;
+		
+	}
+	
+	
+	public float idf(int docFreq, int docCount) {
+		
+		return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+		
+	}
+	
+	
+	public float norm(int docLength, float avgDocLength) {
+		
+		if(avgDocLength <= 0) {
+			
+			return this.k1;
+			
+		}
+		
+		return this.k1 * (1 - this.b + this.b * docLength / avgDocLength);
+		
+	}
+	
+	
+	public float score(int termFreq, float idf, float norm) {
+		
+		return idf * termFreq * (this.k1 + 1) / (termFreq + norm);
+		
+	}
+	
+}
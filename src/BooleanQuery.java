@@ -0,0 +1,898 @@
+/*
+ * A Boolean query over word stems, such as "hund AND (katze OR maus) NOT
+ * vogel", and its execution against an InvertedIndex, which returns the
+ * ids of all matching documents in ascending order.
+ *
+ * Syntax: words are combined with AND, OR and NOT (upper case) and
+ * parentheses. Words without an operator between them are combined with
+ * AND, and AND binds more strongly than OR. Every word is stemmed exactly
+ * like the content of a document (see Document.stems). Words in double
+ * quotes form a PhraseQuery, optionally followed by its slop: "brauner
+ * fuchs"~2.
+ *
+ * Execution works on sorted doc ids:
+ *
+ * 	AND		the operands are intersected from the shortest to the longest,
+ * 			so the intermediate result is never longer than the rarest
+ * 			operand. Only that one is decoded into an array. Each id of the
+ * 			result is then searched in the posting list of the next stem
+ * 			with PostingsCursor.advance, which jumps over whole blocks of
+ * 			postings with the skip table and never decodes them, or, if
+ * 			the operand is not a plain stem, in its (sorted) ids by
+ * 			galloping (doubling the step from the last position, then a
+ * 			binary search). Both cost about O(m log(n / m)) for m and n
+ * 			ids instead of O(m + n).
+ * 	NOT		operands of an AND are subtracted from its result in the same
+ * 			way; a NOT on its own is the complement of its operand.
+ * 	OR		the operands are merged with a heap over their heads (k-way
+ * 			merge), O(n log k) for k lists with n ids in total.
+ *
+ * */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BooleanQuery {
+
+	private static final int TERM = 0;
+	private static final int AND = 1;
+	private static final int OR = 2;
+	private static final int NOT = 3;
+	private static final int PHRASE = 4;
+
+	private static final int[] EMPTY = new int[0];
+
+	private int type;
+	private String stem;
+	private BooleanQuery[] operands;
+	private PhraseQuery phrase;
+
+
+	private BooleanQuery(int type, String stem, BooleanQuery[] operands) {
+
+		this.type = type;
+		this.stem = stem;
+		this.operands = operands;
+
+	}
+
+
+	/*
+	 * Parses query. Throws an IllegalArgumentException if query is not a
+	 * valid Boolean query or contains no word.
+	 *
+	 * */
+
+	public static BooleanQuery parse(String query) {
+
+		if(query == null) {
+
+			throw new IllegalArgumentException("No query");
+
+		}
+
+		Parser parser = new Parser(query);
+		BooleanQuery result = parser.parseOr();
+
+		if(parser.position < parser.tokens.size()) {
+
+			throw new IllegalArgumentException("Unexpected " + parser.tokens.get(parser.position));
+
+		}
+
+		return result;
+
+	}
+
+
+	/*
+	 * Recursive descent over the tokens: words, phrases (with their quotes
+	 * and slop), "(", ")", "AND", "OR" and "NOT".
+	 *
+	 * */
+
+	private static class Parser {
+
+		ArrayList<String> tokens = new ArrayList<String>();
+		int position;
+
+
+		Parser(String query) {
+
+			int start = -1;
+
+			for(int i = 0; i <= query.length(); i++) {
+
+				char c = (i < query.length()) ? query.charAt(i) : ' ';
+
+				if(c == '"' && start < 0) {
+
+					i = this.addPhrase(query, i);
+					continue;
+
+				}
+
+				if(Character.isWhitespace(c) || c == '(' || c == ')') {
+
+					if(start >= 0) {
+
+						this.tokens.add(query.substring(start, i));
+						start = -1;
+
+					}
+
+					if(c == '(' || c == ')') {
+
+						this.tokens.add(String.valueOf(c));
+
+					}
+
+				}
+				else if(start < 0) {
+
+					start = i;
+
+				}
+
+			}
+
+		}
+
+
+		/*
+		 * Adds the phrase that starts with the quote at start, including
+		 * a slop such as ~2, as a single token and returns its last
+		 * position.
+		 *
+		 * */
+
+		private int addPhrase(String query, int start) {
+
+			int end = query.indexOf('"', start + 1);
+
+			if(end < 0) {
+
+				throw new IllegalArgumentException("Missing \"");
+
+			}
+
+			end++;
+
+			if(end < query.length() && query.charAt(end) == '~') {
+
+				end++;
+
+				while(end < query.length() && Character.isDigit(query.charAt(end))) {
+
+					end++;
+
+				}
+
+			}
+
+			this.tokens.add(query.substring(start, end));
+
+			return end - 1;
+
+		}
+
+
+		String peek() {
+
+			return (this.position < this.tokens.size()) ? this.tokens.get(this.position) : null;
+
+		}
+
+
+		BooleanQuery parseOr() {
+
+			ArrayList<BooleanQuery> operands = new ArrayList<BooleanQuery>();
+			operands.add(this.parseAnd());
+
+			while("OR".equals(this.peek())) {
+
+				this.position++;
+				operands.add(this.parseAnd());
+
+			}
+
+			return combine(OR, operands);
+
+		}
+
+
+		BooleanQuery parseAnd() {
+
+			ArrayList<BooleanQuery> operands = new ArrayList<BooleanQuery>();
+			operands.add(this.parseNot());
+
+			while(true) {
+
+				String token = this.peek();
+
+				if("AND".equals(token)) {
+
+					this.position++;
+
+				}
+				else if(token == null || token.equals(")") || token.equals("OR")) {
+
+					break;
+
+				}
+
+				operands.add(this.parseNot());
+
+			}
+
+			return combine(AND, operands);
+
+		}
+
+
+		BooleanQuery parseNot() {
+
+			if("NOT".equals(this.peek())) {
+
+				this.position++;
+
+				return new BooleanQuery(NOT, null, new BooleanQuery[] {this.parseNot()});
+
+			}
+
+			return this.parsePrimary();
+
+		}
+
+
+		BooleanQuery parsePrimary() {
+
+			String token = this.peek();
+
+			if(token == null) {
+
+				throw new IllegalArgumentException("Unexpected end of query");
+
+			}
+
+			this.position++;
+
+			if(token.equals("(")) {
+
+				BooleanQuery query = this.parseOr();
+
+				if(!")".equals(this.peek())) {
+
+					throw new IllegalArgumentException("Missing )");
+
+				}
+
+				this.position++;
+
+				return query;
+
+			}
+
+			if(token.equals(")") || token.equals("AND") || token.equals("OR")) {
+
+				throw new IllegalArgumentException("Unexpected " + token);
+
+			}
+
+			if(token.startsWith("\"")) {
+
+				return parsePhrase(token);
+
+			}
+
+			String[] stems = Document.stems(token);
+
+			if(stems.length == 0) {
+
+				throw new IllegalArgumentException("Not a word: " + token);
+
+			}
+
+			return new BooleanQuery(TERM, stems[0], null);
+
+		}
+
+
+		private static BooleanQuery parsePhrase(String token) {
+
+			int end = token.lastIndexOf('"');
+			int slop = 0;
+
+			if(end + 1 < token.length()) {
+
+				try {
+
+					slop = Integer.parseInt(token.substring(end + 2));
+
+				}
+				catch(NumberFormatException e) {
+
+					throw new IllegalArgumentException("Invalid slop: " + token);
+
+				}
+
+			}
+
+			BooleanQuery query = new BooleanQuery(PHRASE, null, null);
+			query.phrase = new PhraseQuery(token.substring(1, end), slop);
+
+			return query;
+
+		}
+
+
+		private static BooleanQuery combine(int type, ArrayList<BooleanQuery> operands) {
+
+			if(operands.size() == 1) {
+
+				return operands.get(0);
+
+			}
+
+			return new BooleanQuery(type, null, operands.toArray(new BooleanQuery[operands.size()]));
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the ids of all documents of index that match the query, in
+	 * ascending order.
+	 *
+	 * */
+
+	public int[] execute(InvertedIndex index) {
+
+		Ids ids = this.evaluate(index);
+
+		return Arrays.copyOf(ids.ids, ids.size);
+
+	}
+
+
+	/*
+	 * A sorted array of doc ids, of which the first size are valid, or the
+	 * posting list of a stem, which is only decoded if needed (then ids is
+	 * null).
+	 *
+	 * */
+
+	private static class Ids {
+
+		final int[] ids;
+		final int size;
+		final PostingList list;
+
+		Ids(int[] ids, int size) {
+			this.ids = ids;
+			this.size = size;
+			this.list = null;
+		}
+
+		Ids(PostingList list) {
+			this.ids = null;
+			this.size = list.size();
+			this.list = list;
+		}
+
+		Ids decode() {
+			return (this.list == null) ? this : new Ids(BooleanQuery.decode(this.list), this.size);
+		}
+
+	}
+
+
+	private Ids evaluate(InvertedIndex index) {
+
+		switch(this.type) {
+
+			case TERM: {
+
+				return this.evaluateTerm(index).decode();
+
+			}
+
+			case PHRASE: {
+
+				int[] ids = this.phrase.execute(index);
+
+				return new Ids(ids, ids.length);
+
+			}
+
+			case NOT: {
+
+				Ids excluded = this.operands[0].evaluate(index);
+
+				return complement(index.size(), excluded.ids, excluded.size);
+
+			}
+
+			case OR: {
+
+				int[][] lists = new int[this.operands.length][];
+				int[] sizes = new int[this.operands.length];
+
+				for(int i = 0; i < lists.length; i++) {
+
+					Ids ids = this.operands[i].evaluate(index);
+					lists[i] = ids.ids;
+					sizes[i] = ids.size;
+
+				}
+
+				int[] out = union(lists, sizes, lists.length);
+
+				return new Ids(out, out.length);
+
+			}
+
+			default:
+
+				return this.evaluateAnd(index);
+
+		}
+
+	}
+
+
+	/*
+	 * The posting list of a TERM, not decoded.
+	 *
+	 * */
+
+	private Ids evaluateTerm(InvertedIndex index) {
+
+		PostingList list = index.getPostings(this.stem);
+
+		return (list == null) ? new Ids(EMPTY, 0) : new Ids(list);
+
+	}
+
+
+	/*
+	 * Evaluates the operand of an AND; stems are left undecoded.
+	 *
+	 * */
+
+	private static Ids evaluateOperand(BooleanQuery operand, InvertedIndex index) {
+
+		return (operand.type == TERM) ? operand.evaluateTerm(index) : operand.evaluate(index);
+
+	}
+
+
+	private Ids evaluateAnd(InvertedIndex index) {
+
+		ArrayList<Ids> included = new ArrayList<Ids>();
+		ArrayList<Ids> excluded = new ArrayList<Ids>();
+
+		for(int i = 0; i < this.operands.length; i++) {
+
+			if(this.operands[i].type == NOT) {
+
+				excluded.add(evaluateOperand(this.operands[i].operands[0], index));
+
+			}
+			else {
+
+				included.add(evaluateOperand(this.operands[i], index));
+
+			}
+
+		}
+
+		if(included.isEmpty()) {
+
+			/* only NOTs: the complement of the union of their operands */
+
+			int[][] lists = new int[excluded.size()][];
+			int[] sizes = new int[excluded.size()];
+
+			for(int i = 0; i < lists.length; i++) {
+
+				lists[i] = excluded.get(i).decode().ids;
+				sizes[i] = excluded.get(i).size;
+
+			}
+
+			int[] union = union(lists, sizes, lists.length);
+
+			return complement(index.size(), union, union.length);
+
+		}
+
+		/* rarest first */
+
+		included.sort((a, b) -> Integer.compare(a.size, b.size));
+		Ids result = included.get(0).decode();
+
+		for(int i = 1; i < included.size() && result.size > 0; i++) {
+
+			Ids other = included.get(i);
+			int[] out = new int[result.size];
+			int size = (other.list != null) ? intersect(result.ids, result.size, other.list.cursor(), out)
+					: intersect(result.ids, result.size, other.ids, other.size, out);
+			result = new Ids(out, size);
+
+		}
+
+		for(int i = 0; i < excluded.size() && result.size > 0; i++) {
+
+			Ids other = excluded.get(i);
+			int[] out = new int[result.size];
+			int size = (other.list != null) ? difference(result.ids, result.size, other.list.cursor(), out)
+					: difference(result.ids, result.size, other.ids, other.size, out);
+			result = new Ids(out, size);
+
+		}
+
+		return result;
+
+	}
+
+
+	/*
+	 * The ids from 0 to n - 1 that are not among the first size ids of
+	 * excluded.
+	 *
+	 * */
+
+	private static Ids complement(int n, int[] excluded, int excludedSize) {
+
+		int[] out = new int[n - excludedSize];
+		int size = 0;
+		int j = 0;
+
+		for(int docId = 0; docId < n; docId++) {
+
+			if(j < excludedSize && excluded[j] == docId) {
+
+				j++;
+
+			}
+			else {
+
+				out[size++] = docId;
+
+			}
+
+		}
+
+		return new Ids(out, size);
+
+	}
+
+
+	/*
+	 * Returns the first position from start on at which list (of size n)
+	 * holds a value of at least target, or n: gallops forward with steps
+	 * of 1, 2, 4, ... and then searches the last step binary.
+	 *
+	 * */
+
+	static int gallop(int[] list, int start, int n, int target) {
+
+		int low = start;
+		int step = 1;
+		int high = start;
+
+		while(high < n && list[high] < target) {
+
+			low = high + 1;
+			high = start + step;
+			step <<= 1;
+
+		}
+
+		high = Math.min(high, n);
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(list[middle] < target) {
+
+				low = middle + 1;
+
+			}
+			else {
+
+				high = middle;
+
+			}
+
+		}
+
+		return low;
+
+	}
+
+
+	/*
+	 * Writes the ids that are in both a (of size na) and b (of size nb)
+	 * to out and returns their number. a should be the shorter list.
+	 *
+	 * */
+
+	static int intersect(int[] a, int na, int[] b, int nb, int[] out) {
+
+		int size = 0;
+		int j = 0;
+
+		for(int i = 0; i < na && j < nb; i++) {
+
+			j = gallop(b, j, nb, a[i]);
+
+			if(j < nb && b[j] == a[i]) {
+
+				out[size++] = a[i];
+				j++;
+
+			}
+
+		}
+
+		return size;
+
+	}
+
+
+	/*
+	 * Writes the ids of a (of size na) that are also in the list of cursor
+	 * to out and returns their number. The cursor must be at the start of
+	 * its list; it advances to each id of a, so the blocks of postings
+	 * between two ids of a are skipped without being decoded.
+	 *
+	 * */
+
+	static int intersect(int[] a, int na, PostingsCursor cursor, int[] out) {
+
+		int size = 0;
+
+		for(int i = 0; i < na; i++) {
+
+			int docId = cursor.advance(a[i]);
+
+			if(docId == PostingsCursor.NO_MORE_DOCS) {
+
+				break;
+
+			}
+
+			if(docId == a[i]) {
+
+				out[size++] = a[i];
+
+			}
+
+		}
+
+		return size;
+
+	}
+
+
+	/*
+	 * Writes the ids of a (of size na) that are not in b (of size nb) to
+	 * out and returns their number.
+	 *
+	 * */
+
+	static int difference(int[] a, int na, int[] b, int nb, int[] out) {
+
+		int size = 0;
+		int j = 0;
+
+		for(int i = 0; i < na; i++) {
+
+			if(j < nb) {
+
+				j = gallop(b, j, nb, a[i]);
+
+			}
+
+			if(j >= nb || b[j] != a[i]) {
+
+				out[size++] = a[i];
+
+			}
+
+		}
+
+		return size;
+
+	}
+
+
+	/*
+	 * Writes the ids of a (of size na) that are not in the list of cursor
+	 * to out and returns their number, like intersect(a, na, cursor, out).
+	 *
+	 * */
+
+	static int difference(int[] a, int na, PostingsCursor cursor, int[] out) {
+
+		int size = 0;
+
+		for(int i = 0; i < na; i++) {
+
+			if(cursor.advance(a[i]) != a[i]) {
+
+				out[size++] = a[i];
+
+			}
+
+		}
+
+		return size;
+
+	}
+
+
+	/*
+	 * Returns all doc ids of list, in ascending order.
+	 *
+	 * */
+
+	static int[] decode(PostingList list) {
+
+		int[] ids = new int[list.size()];
+		PostingsCursor cursor = list.cursor();
+		int n = 0;
+
+		for(int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+
+			ids[n++] = docId;
+
+		}
+
+		return ids;
+
+	}
+
+
+	/*
+	 * Merges the first k sorted lists (lists[i] has sizes[i] valid ids)
+	 * into one sorted list without duplicates, with a min-heap that holds
+	 * the next id of each list.
+	 *
+	 * */
+
+	static int[] union(int[][] lists, int[] sizes, int k) {
+
+		int total = 0;
+
+		for(int i = 0; i < k; i++) {
+
+			total += sizes[i];
+
+		}
+
+		int[] out = new int[total];
+		int size = 0;
+
+		/* heap of list numbers, ordered by the id each list is at */
+
+		int[] heap = new int[k];
+		int[] positions = new int[k];
+		int heapSize = 0;
+
+		for(int i = 0; i < k; i++) {
+
+			if(sizes[i] > 0) {
+
+				heap[heapSize++] = i;
+
+			}
+
+		}
+
+		for(int i = heapSize / 2 - 1; i >= 0; i--) {
+
+			siftDown(heap, heapSize, i, lists, positions);
+
+		}
+
+		while(heapSize > 0) {
+
+			int list = heap[0];
+			int docId = lists[list][positions[list]];
+
+			if(size == 0 || out[size - 1] != docId) {
+
+				out[size++] = docId;
+
+			}
+
+			if(++positions[list] == sizes[list]) {
+
+				heap[0] = heap[--heapSize];
+
+			}
+
+			siftDown(heap, heapSize, 0, lists, positions);
+
+		}
+
+		return Arrays.copyOf(out, size);
+
+	}
+
+
+	private static void siftDown(int[] heap, int heapSize, int i, int[][] lists, int[] positions) {
+
+		while(true) {
+
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+
+			if(left < heapSize && head(heap[left], lists, positions) < head(heap[smallest], lists, positions)) {
+
+				smallest = left;
+
+			}
+
+			if(right < heapSize && head(heap[right], lists, positions) < head(heap[smallest], lists, positions)) {
+
+				smallest = right;
+
+			}
+
+			if(smallest == i) {
+
+				return;
+
+			}
+
+			int tmp = heap[i];
+			heap[i] = heap[smallest];
+			heap[smallest] = tmp;
+			i = smallest;
+
+		}
+
+	}
+
+
+	private static int head(int list, int[][] lists, int[] positions) {
+
+		return lists[list][positions[list]];
+
+	}
+
+
+	public String toString() {
+
+		switch(this.type) {
+
+			case TERM: return this.stem;
+			case PHRASE: return this.phrase.toString();
+			case NOT: return "NOT " + this.operands[0];
+
+			default:
+
+				StringBuilder s = new StringBuilder("(");
+
+				for(int i = 0; i < this.operands.length; i++) {
+
+					if(i > 0) s.append((this.type == AND) ? " AND " : " OR ");
+
+					s.append(this.operands[i]);
+
+				}
+
+				return s.append(')').toString();
+
+		}
+
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Creates the Documents of a whole batch of RawDocuments in parallel on a
+ * ForkJoinPool. The batch is split in halves until a part is small enough,
+ * and each part is tokenized and stemmed by one worker. Every worker thread
+ * also adds the stems of its documents to a term count table of its own,
+ * so the workers never share a table while they run. Once all documents
+ * are created, the tables are merged into the term counts of the batch.
+ * 
+ * */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class BulkIngestor {
+	
+	/* number of documents below which a part of the batch is not split any further */
+	
+	private static final int THRESHOLD = 8;
+	
+	private ForkJoinPool pool;
+	
+	
+	public BulkIngestor() {
+		
+		this(ForkJoinPool.commonPool());
+		
+	}
+	
+	
+	public BulkIngestor(ForkJoinPool pool) {
+		
+		this.pool = (pool == null) ? ForkJoinPool.commonPool() : pool;
+		
+	}
+	
+	
+	/* 
+	 * Returns the Documents created from batch, in the same order. Null 
+	 * entries of batch stay null.
+	 * 
+	 * */
+	
+	public Document[] ingest(RawDocument[] batch) {
+		
+		return this.ingest(batch, null);
+		
+	}
+	
+	
+	/* 
+	 * Same as ingest(batch), but also adds how often each stem occurs in the
+	 * whole batch to termCounts, unless termCounts is null.
+	 * 
+	 * */
+	
+	public Document[] ingest(RawDocument[] batch, WordCountsArray termCounts) {
+		
+		if(batch == null) {
+			
+			return new Document[0];
+			
+		}
+		
+		Document[] documents = new Document[batch.length];
+		ConcurrentHashMap<Thread, WordCountsArray> tables = null;
+		
+		if(termCounts != null) {
+			
+			tables = new ConcurrentHashMap<Thread, WordCountsArray>();
+			
+		}
+		
+		this.pool.invoke(new IngestTask(batch, documents, tables, 0, batch.length));
+		
+		/* all tasks are done, so their tables are complete and visible here */
+		
+		if(tables != null) {
+			
+			for(WordCountsArray table : tables.values()) {
+				
+				termCounts.addAll(table);
+				
+			}
+			
+		}
+		
+		return documents;
+		
+	}
+	
+	
+	/* 
+	 * Ingests batch and adds all resulting documents to index. Returns the 
+	 * id of the first document; the others follow in the order of batch
+	 * (null entries are skipped).
+	 * 
+	 * */
+	
+	public int ingestInto(RawDocument[] batch, InvertedIndex index) {
+		
+		Document[] documents = this.ingest(batch);
+		int first = index.size();
+		
+		for(int i = 0; i < documents.length; i++) {
+			
+			index.addDocument(documents[i]);
+			
+		}
+		
+		return first;
+		
+	}
+	
+	
+	private static class IngestTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private RawDocument[] batch;
+		private Document[] documents;
+		private ConcurrentHashMap<Thread, WordCountsArray> tables;
+		private int from;
+		private int to;
+		
+		
+		IngestTask(RawDocument[] batch, Document[] documents, ConcurrentHashMap<Thread, WordCountsArray> tables, 
+				int from, int to) {
+			
+			this.batch = batch;
+			this.documents = documents;
+			this.tables = tables;
+			this.from = from;
+			this.to = to;
+			
+		}
+		
+		
+		protected void compute() {
+			
+			if(this.to - this.from > THRESHOLD) {
+				
+				int middle = (this.from + this.to) >>> 1;
+				
+				invokeAll(new IngestTask(this.batch, this.documents, this.tables, this.from, middle),
+						new IngestTask(this.batch, this.documents, this.tables, middle, this.to));
+				
+				return;
+				
+			}
+			
+			/* the table of the current worker thread */
+			
+			WordCountsArray table = null;
+			
+			if(this.tables != null) {
+				
+				table = this.tables.computeIfAbsent(Thread.currentThread(), t -> new WordCountsArray(1024));
+				
+			}
+			
+			for(int i = this.from; i < this.to; i++) {
+				
+				if(this.batch[i] == null) continue;
+				
+				this.documents[i] = this.batch[i].toDocument();
+				
+				if(table != null) {
+					
+					table.addAll(this.documents[i].getWordCounts());
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+}
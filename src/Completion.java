@@ -0,0 +1,36 @@
+/*
+ * A completion of a prefix (see CompletionDictionary): a stem that starts
+ * with the prefix and the number of documents that contain it.
+ * 
+ * */
+
+public class Completion {
+	
+	private String stem;
+	private int documentFrequency;
+	
+	
+	public Completion(String stem, int documentFrequency) {
+		
+		this.stem = stem;
+		this.documentFrequency = documentFrequency;
+		
+	}
+	
+	
+	public String getStem() {
+		return this.stem;
+	}
+	
+	public int getDocumentFrequency() {
+		return this.documentFrequency;
+	}
+	
+	
+	public String toString() {
+		
+		return this.stem + " (" + this.documentFrequency + ")";
+		
+	}
+	
+}
@@ -0,0 +1,655 @@
+/*
+ * The stems of an index in sorted order, compressed by front coding, for
+ * search-as-you-type: complete(prefix, n) returns the n stems starting with
+ * prefix that the most documents contain.
+ *
+ * The stems are sorted by their UTF-8 bytes and cut into blocks of
+ * BLOCK_SIZE (16). The first stem of a block is stored whole, every other
+ * one as the length of the prefix it shares with the stem before it and
+ * the remaining bytes, all lengths as variable-byte integers. Sorted stems
+ * share long prefixes, so the dictionary takes a fraction of the memory of
+ * a HashMap from String to the document frequency (see sizeInBytes):
+ * there are no objects per stem, only one byte array for all stems and
+ * three int arrays.
+ *
+ * A stem is found by a binary search over the first stems of the blocks,
+ * followed by decoding at most one block. All stems with a prefix form a
+ * range of positions (ords), so two such searches find them. The document
+ * frequencies are kept in an array by ord, and the largest document
+ * frequency of every block in a max tree over the blocks (each node holds
+ * the maximum of its two children). complete(prefix, n) walks the tree
+ * best first, always expanding the node with the largest maximum that
+ * overlaps the range, and stops as soon as no node left can beat the n
+ * best stems found so far. Frequent completions of even the shortest
+ * prefixes come back after looking at a handful of blocks. Only the n
+ * stems returned are decoded into Strings.
+ *
+ * A CompletionDictionary is immutable; build a new one when the index has
+ * grown.
+ *
+ * */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class CompletionDictionary {
+
+	static final int BLOCK_SIZE = 16;
+
+	private byte[] data;
+	private int[] blockOffsets;
+	private int[] maxTree;
+	private int leafCount;
+	private int[] docFreqs;
+	private int size;
+	private int maxTermLength;
+
+
+	private CompletionDictionary(byte[][] terms, int[] docFreqs, int size) {
+
+		int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+		this.size = size;
+		this.docFreqs = Arrays.copyOf(docFreqs, size);
+		this.blockOffsets = new int[blockCount];
+		this.leafCount = Integer.highestOneBit(Math.max(1, blockCount - 1)) << 1;
+		this.maxTree = new int[2 * this.leafCount];
+
+		int capacity = 0;
+
+		for(int ord = 0; ord < size; ord++) {
+
+			capacity += terms[ord].length + 10;
+			this.maxTermLength = Math.max(this.maxTermLength, terms[ord].length);
+
+		}
+
+		byte[] out = new byte[capacity];
+		int position = 0;
+
+		for(int ord = 0; ord < size; ord++) {
+
+			int block = ord / BLOCK_SIZE;
+			byte[] term = terms[ord];
+			int shared = 0;
+
+			if(ord % BLOCK_SIZE == 0) {
+
+				this.blockOffsets[block] = position;
+
+			}
+			else {
+
+				byte[] previous = terms[ord - 1];
+				int n = Math.min(previous.length, term.length);
+
+				while(shared < n && previous[shared] == term[shared]) {
+
+					shared++;
+
+				}
+
+				position = writeVInt(out, position, shared);
+
+			}
+
+			position = writeVInt(out, position, term.length - shared);
+			System.arraycopy(term, shared, out, position, term.length - shared);
+			position += term.length - shared;
+
+			this.maxTree[this.leafCount + block] = Math.max(this.maxTree[this.leafCount + block], docFreqs[ord]);
+
+		}
+
+		for(int node = this.leafCount - 1; node > 0; node--) {
+
+			this.maxTree[node] = Math.max(this.maxTree[2 * node], this.maxTree[2 * node + 1]);
+
+		}
+
+		this.data = Arrays.copyOf(out, position);
+
+	}
+
+
+	/*
+	 * Builds the dictionary of all stems of index, with their document
+	 * frequencies.
+	 *
+	 * */
+
+	public static CompletionDictionary build(InvertedIndex index) {
+
+		int termLimit = index.getDictionary().size();
+		String[] stems = new String[index.getVocabularySize()];
+		int[] docFreqs = new int[stems.length];
+		int n = 0;
+
+		for(int termId = 0; termId < termLimit && n < stems.length; termId++) {
+
+			PostingList list = index.getPostings(termId);
+
+			if(list != null) {
+
+				stems[n] = index.getTerm(termId);
+				docFreqs[n] = list.size();
+				n++;
+
+			}
+
+		}
+
+		return build(Arrays.copyOf(stems, n), Arrays.copyOf(docFreqs, n));
+
+	}
+
+
+	/*
+	 * Builds the dictionary of stems, where docFreqs[i] is the document
+	 * frequency of stems[i]. The stems need not be sorted, but must be
+	 * distinct.
+	 *
+	 * */
+
+	public static CompletionDictionary build(String[] stems, int[] docFreqs) {
+
+		byte[][] bytes = new byte[stems.length][];
+		Integer[] order = new Integer[stems.length];
+
+		for(int i = 0; i < stems.length; i++) {
+
+			bytes[i] = stems[i].getBytes(StandardCharsets.UTF_8);
+			order[i] = i;
+
+		}
+
+		Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(bytes[a], bytes[b]));
+
+		byte[][] terms = new byte[stems.length][];
+		int[] sortedDocFreqs = new int[stems.length];
+
+		for(int ord = 0; ord < stems.length; ord++) {
+
+			terms[ord] = bytes[order[ord]];
+			sortedDocFreqs[ord] = docFreqs[order[ord]];
+
+		}
+
+		return new CompletionDictionary(terms, sortedDocFreqs, stems.length);
+
+	}
+
+
+	private static int writeVInt(byte[] out, int position, int value) {
+
+		while((value & ~0x7F) != 0) {
+
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+
+		}
+
+		out[position++] = (byte) value;
+
+		return position;
+
+	}
+
+
+	/*
+	 * Returns the number of stems.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.size;
+
+	}
+
+
+	/*
+	 * Returns the number of documents containing stem, or 0 if stem is not
+	 * in the dictionary.
+	 *
+	 * */
+
+	public int getDocumentFrequency(String stem) {
+
+		int ord = this.getOrd(stem);
+
+		return (ord < 0) ? 0 : this.docFreqs[ord];
+
+	}
+
+
+	/*
+	 * Returns the position of stem in the sorted order, or -1 if stem is
+	 * not in the dictionary.
+	 *
+	 * */
+
+	public int getOrd(String stem) {
+
+		if(stem == null) {
+
+			return -1;
+
+		}
+
+		byte[] key = stem.getBytes(StandardCharsets.UTF_8);
+		int ord = this.firstOrd(key, false);
+
+		return (ord < this.size && this.compareTerm(ord, key) == 0) ? ord : -1;
+
+	}
+
+
+	/*
+	 * Returns the stem at position ord in the sorted order, or null if
+	 * there is no such position.
+	 *
+	 * */
+
+	public String getTerm(int ord) {
+
+		if(ord < 0 || ord >= this.size) {
+
+			return null;
+
+		}
+
+		byte[] term = new byte[this.maxTermLength];
+		int length = this.decode(ord, term);
+
+		return new String(term, 0, length, StandardCharsets.UTF_8);
+
+	}
+
+
+	/*
+	 * Returns the number of stems that start with prefix.
+	 *
+	 * */
+
+	public int count(String prefix) {
+
+		byte[] key = (prefix == null) ? new byte[0] : prefix.getBytes(StandardCharsets.UTF_8);
+
+		return this.firstOrd(key, true) - this.firstOrd(key, false);
+
+	}
+
+
+	/*
+	 * Returns the n stems starting with prefix that have the highest
+	 * document frequencies, highest first. Among equal frequencies, the
+	 * stem that comes first in the sorted order wins.
+	 *
+	 * */
+
+	public Completion[] complete(String prefix, int n) {
+
+		byte[] key = (prefix == null) ? new byte[0] : prefix.getBytes(StandardCharsets.UTF_8);
+		int from = this.firstOrd(key, false);
+		int to = this.firstOrd(key, true);
+
+		if(n < 1 || from >= to) {
+
+			return new Completion[0];
+
+		}
+
+		TopKHeap heap = new TopKHeap(n);
+		int firstBlock = from / BLOCK_SIZE;
+		int lastBlock = (to - 1) / BLOCK_SIZE;
+
+		/*
+		 * the nodes of the max tree still to visit, the one with the
+		 * largest maximum first: ~max in the upper, the node in the lower
+		 * half, so the smallest value is the next node
+		 * */
+
+		long[] queue = new long[16];
+		int queued = 0;
+		queue[queued++] = ((long) ~this.maxTree[1] << 32) | 1;
+
+		while(queued > 0) {
+
+			long next = queue[0];
+			queue[0] = queue[--queued];
+			siftDown(queue, queued);
+
+			int node = (int) next;
+
+			if(this.maxTree[node] < heap.threshold()) {
+
+				break;
+
+			}
+
+			/* the blocks below node */
+
+			int level = 31 - Integer.numberOfLeadingZeros(node);
+			int span = this.leafCount >> level;
+			int first = (node - (1 << level)) * span;
+
+			if(first > lastBlock || first + span <= firstBlock) {
+
+				continue;
+
+			}
+
+			if(span > 1) {
+
+				if(queued + 2 > queue.length) {
+
+					queue = Arrays.copyOf(queue, queue.length * 2);
+
+				}
+
+				queued = push(queue, queued, ((long) ~this.maxTree[2 * node] << 32) | (2 * node));
+				queued = push(queue, queued, ((long) ~this.maxTree[2 * node + 1] << 32) | (2 * node + 1));
+				continue;
+
+			}
+
+			int start = Math.max(from, first * BLOCK_SIZE);
+			int end = Math.min(to, first * BLOCK_SIZE + BLOCK_SIZE);
+
+			for(int ord = start; ord < end; ord++) {
+
+				heap.offer(ord, this.docFreqs[ord]);
+
+			}
+
+		}
+
+		int[] ords = heap.drain(null);
+		Completion[] completions = new Completion[ords.length];
+
+		for(int i = 0; i < ords.length; i++) {
+
+			completions[i] = new Completion(this.getTerm(ords[i]), this.docFreqs[ords[i]]);
+
+		}
+
+		return completions;
+
+	}
+
+
+	/*
+	 * Adds value to the min-heap of the first size entries of queue and
+	 * returns the new size. queue must have room for it.
+	 *
+	 * */
+
+	private static int push(long[] queue, int size, long value) {
+
+		int i = size;
+
+		while(i > 0 && queue[(i - 1) / 2] > value) {
+
+			queue[i] = queue[(i - 1) / 2];
+			i = (i - 1) / 2;
+
+		}
+
+		queue[i] = value;
+
+		return size + 1;
+
+	}
+
+
+	/*
+	 * Restores the min-heap of the first size entries of queue after its
+	 * root has been replaced.
+	 *
+	 * */
+
+	private static void siftDown(long[] queue, int size) {
+
+		int i = 0;
+		long value = queue[0];
+
+		while(2 * i + 1 < size) {
+
+			int child = 2 * i + 1;
+
+			if(child + 1 < size && queue[child + 1] < queue[child]) {
+
+				child++;
+
+			}
+
+			if(queue[child] >= value) {
+
+				break;
+
+			}
+
+			queue[i] = queue[child];
+			i = child;
+
+		}
+
+		queue[i] = value;
+
+	}
+
+
+	/*
+	 * Returns the size of the dictionary in bytes: the encoded stems and
+	 * the arrays of offsets and frequencies, without object headers.
+	 *
+	 * */
+
+	public long sizeInBytes() {
+
+		return this.data.length + 4L * (this.blockOffsets.length + this.maxTree.length + this.docFreqs.length);
+
+	}
+
+
+	/*
+	 * Returns the first ord whose stem is at least key, or, if prefix is
+	 * true, the first ord whose stem neither starts with key nor comes
+	 * before it. Returns size if there is no such ord.
+	 *
+	 * */
+
+	private int firstOrd(byte[] key, boolean prefix) {
+
+		/* the first block whose first stem is past key */
+
+		int low = 0;
+		int high = this.blockOffsets.length;
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(this.isPast(middle, key, prefix)) {
+
+				high = middle;
+
+			}
+			else {
+
+				low = middle + 1;
+
+			}
+
+		}
+
+		if(low == 0) {
+
+			return 0;
+
+		}
+
+		/* the ord is in the block before it, or the first ord of that block */
+
+		int block = low - 1;
+		int end = Math.min(this.size, low * BLOCK_SIZE);
+		byte[] term = new byte[this.maxTermLength];
+		int position = this.blockOffsets[block];
+		int length = 0;
+
+		for(int ord = block * BLOCK_SIZE; ord < end; ord++) {
+
+			int shared = 0;
+
+			if(ord > block * BLOCK_SIZE) {
+
+				shared = readVInt(position);
+				position += vIntSize(shared);
+
+			}
+
+			int suffix = readVInt(position);
+			position += vIntSize(suffix);
+			System.arraycopy(this.data, position, term, shared, suffix);
+			position += suffix;
+			length = shared + suffix;
+
+			if(compare(term, length, key, prefix) > (prefix ? 0 : -1)) {
+
+				return ord;
+
+			}
+
+		}
+
+		return end;
+
+	}
+
+
+	/*
+	 * Returns true if the first stem of block is past key in the sense of
+	 * firstOrd.
+	 *
+	 * */
+
+	private boolean isPast(int block, byte[] key, boolean prefix) {
+
+		int position = this.blockOffsets[block];
+		int length = readVInt(position);
+		position += vIntSize(length);
+
+		return compare(this.data, position, length, key, prefix) > (prefix ? 0 : -1);
+
+	}
+
+
+	private int compareTerm(int ord, byte[] key) {
+
+		byte[] term = new byte[this.maxTermLength];
+		int length = this.decode(ord, term);
+
+		return compare(term, length, key, false);
+
+	}
+
+
+	/*
+	 * Writes the bytes of the stem at ord to term and returns its length.
+	 *
+	 * */
+
+	private int decode(int ord, byte[] term) {
+
+		int block = ord / BLOCK_SIZE;
+		int position = this.blockOffsets[block];
+		int length = 0;
+
+		for(int i = block * BLOCK_SIZE; i <= ord; i++) {
+
+			int shared = 0;
+
+			if(i > block * BLOCK_SIZE) {
+
+				shared = readVInt(position);
+				position += vIntSize(shared);
+
+			}
+
+			int suffix = readVInt(position);
+			position += vIntSize(suffix);
+			System.arraycopy(this.data, position, term, shared, suffix);
+			position += suffix;
+			length = shared + suffix;
+
+		}
+
+		return length;
+
+	}
+
+
+	private static int compare(byte[] term, int length, byte[] key, boolean prefix) {
+
+		return compare(term, 0, length, key, prefix);
+
+	}
+
+
+	/*
+	 * Compares the length bytes of term from start on with key, unsigned.
+	 * If prefix is true, only the first key.length bytes of the term are
+	 * compared, so every term that starts with key is equal to it.
+	 *
+	 * */
+
+	private static int compare(byte[] term, int start, int length, byte[] key, boolean prefix) {
+
+		if(prefix && length > key.length) {
+
+			length = key.length;
+
+		}
+
+		return Arrays.compareUnsigned(term, start, start + length, key, 0, key.length);
+
+	}
+
+
+	private int readVInt(int position) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = this.data[position++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+
+		}
+		while(b < 0);
+
+		return value;
+
+	}
+
+
+	private static int vIntSize(int value) {
+
+		int size = 1;
+
+		while((value & ~0x7F) != 0) {
+
+			value >>>= 7;
+			size++;
+
+		}
+
+		return size;
+
+	}
+
+}
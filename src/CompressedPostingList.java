@@ -0,0 +1,217 @@
+/*
+ * A posting list in compressed form. The postings are cut into blocks of
+ * BLOCK_SIZE (128) postings. Within a block, the doc ids are stored as the
+ * differences (deltas) to the previous doc id and the frequencies minus 1,
+ * both as variable-byte integers: 7 bits per byte, the highest bit marks
+ * that another byte follows. Common stems have small deltas, so most
+ * postings take two bytes instead of eight.
+ *
+ * In front of the blocks, a skip table holds the last doc id and the byte
+ * offset of every block, so a PostingsCursor can jump over whole blocks
+ * without decoding them, e.g. while intersecting posting lists.
+ *
+ * Layout: docFreq (int), blockCount (int), blockCount x (last doc id (int),
+ * offset of the block (int, relative to the end of the skip table)), then
+ * the blocks: all doc deltas of the block, then all frequencies - 1.
+ *
+ * The data is held in a ByteBuffer, which is either a heap buffer (see
+ * encode) or part of a memory mapped Segment. The list is immutable. The
+ * positions of a PostingList are not stored.
+ *
+ * */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class CompressedPostingList {
+
+	static final int BLOCK_SIZE = 128;
+
+	private ByteBuffer data;
+	private int docFreq;
+	private int blockCount;
+
+
+	/*
+	 * Wraps data that has been written by encode. The position of data is
+	 * the start of the list.
+	 *
+	 * */
+
+	public CompressedPostingList(ByteBuffer data) {
+
+		this.data = data.slice();
+		this.docFreq = this.data.getInt(0);
+		this.blockCount = this.data.getInt(4);
+
+	}
+
+
+	/*
+	 * Compresses list.
+	 *
+	 * */
+
+	public static CompressedPostingList encode(PostingList list) {
+
+		return new CompressedPostingList(ByteBuffer.wrap(encodeToBytes(list)));
+
+	}
+
+
+	/*
+	 * Compresses list into a new byte array in the format described above.
+	 * The blocks that list has encoded already are copied as they are, only
+	 * its tail is encoded.
+	 *
+	 * */
+
+	static byte[] encodeToBytes(PostingList list) {
+
+		int docFreq = list.size();
+		int blockCount = list.getBlockCount();
+		int encoded = list.getEncodedBlockCount();
+		int skipTableSize = 8 + 8 * blockCount;
+		int tailSize = list.getTailSize();
+
+		/* at most 5 bytes per int */
+
+		byte[] out = new byte[skipTableSize + list.getDataSize() + tailSize * 10];
+		ByteBuffer skip = ByteBuffer.wrap(out);
+
+		skip.putInt(docFreq);
+		skip.putInt(blockCount);
+
+		for(int block = 0; block < encoded; block++) {
+
+			skip.putInt(list.getBlockLastDocId(block));
+			skip.putInt(list.getBlockStart(block));
+
+		}
+
+		System.arraycopy(list.getData(), 0, out, skipTableSize, list.getDataSize());
+		int position = skipTableSize + list.getDataSize();
+
+		if(tailSize > 0) {
+
+			int[] docIds = list.getTailDocIds();
+			int[] frequencies = list.getTailFrequencies();
+			int previous = (encoded == 0) ? -1 : list.getBlockLastDocId(encoded - 1);
+
+			skip.putInt(docIds[tailSize - 1]);
+			skip.putInt(position - skipTableSize);
+
+			for(int i = 0; i < tailSize; i++) {
+
+				position = PostingList.writeVInt(out, position, docIds[i] - previous);
+				previous = docIds[i];
+
+			}
+
+			for(int i = 0; i < tailSize; i++) {
+
+				position = PostingList.writeVInt(out, position, frequencies[i] - 1);
+
+			}
+
+		}
+
+		return Arrays.copyOf(out, position);
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the list.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.docFreq;
+
+	}
+
+
+	/*
+	 * Returns the size of the compressed list in bytes, including the
+	 * skip table.
+	 *
+	 * */
+
+	public int sizeInBytes() {
+
+		return this.data.capacity();
+
+	}
+
+
+	int getBlockCount() {
+
+		return this.blockCount;
+
+	}
+
+
+	int getBlockLastDocId(int block) {
+
+		return this.data.getInt(8 + 8 * block);
+
+	}
+
+
+	/*
+	 * Position of the first byte of the block in data.
+	 *
+	 * */
+
+	int getBlockStart(int block) {
+
+		return 8 + 8 * this.blockCount + this.data.getInt(12 + 8 * block);
+
+	}
+
+
+	ByteBuffer getData() {
+
+		return this.data;
+
+	}
+
+
+	/*
+	 * Returns a new cursor at the start of this list.
+	 *
+	 * */
+
+	public PostingsCursor cursor() {
+
+		PostingsCursor cursor = new PostingsCursor();
+		cursor.reset(this);
+
+		return cursor;
+
+	}
+
+
+	/*
+	 * Decodes the whole list into a PostingList.
+	 *
+	 * */
+
+	public PostingList toPostingList() {
+
+		PostingList list = new PostingList(this.docFreq);
+		PostingsCursor cursor = this.cursor();
+
+		while(cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+
+			list.add(cursor.docId(), cursor.freq());
+
+		}
+
+		return list;
+
+	}
+
+}
@@ -0,0 +1,546 @@
+/*
+ * An index that can be searched while documents are being added by many
+ * threads. It consists of segments, each an InvertedIndex that is never
+ * changed again once it has been built, and readers only ever see an
+ * immutable Snapshot of the segments. So queries run without any lock,
+ * and a bulk load does not slow them down (apart from sharing the CPUs).
+ *
+ * Writers append their documents to one of several buffers (stripes),
+ * chosen by thread, so concurrent writers rarely wait for each other, and
+ * addDocuments appends a whole batch at once. The documents are not
+ * searchable until refresh() is called: it takes the buffered documents,
+ * builds a new segment from them and publishes a new snapshot with it in
+ * a volatile field. A document must not be changed after it was added.
+ *
+ * To keep the number of segments small, refresh merges the newest segment
+ * with the one before as long as that one is at most MERGE_RATIO times as
+ * large, so the sizes of the segments fall geometrically and there are
+ * O(log n) of them. Doc ids are global: the documents of a segment get
+ * consecutive ids starting at the docBase of the segment, and merging
+ * neighbours keeps all ids.
+ *
+ * Queries are scored with the statistics of the whole snapshot (number of
+ * documents, document frequencies, average length), so a document gets
+ * the same score no matter in which segment it is. Like a RankingEngine,
+ * the index can boost newer documents and documents with good ratings (by
+ * global doc id); the boosts are part of the snapshot, so setting them
+ * publishes a new snapshot with the same segments.
+ *
+ * */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ConcurrentIndex {
+
+	static final int MERGE_RATIO = 2;
+
+	private Stripe[] stripes;
+	private Similarity similarity;
+	private RecencyBoost recencyBoost;
+	private RatingAggregates ratings;
+	private float ratingWeight;
+	private volatile Snapshot snapshot;
+
+
+	private static class Stripe {
+
+		ArrayList<Document> documents = new ArrayList<Document>();
+
+	}
+
+
+	/*
+	 * An immutable view of the searchable documents.
+	 *
+	 * */
+
+	public static class Snapshot {
+
+		private final InvertedIndex[] segments;
+		private final int[] docBases;
+		private final int size;
+		private final long totalLength;
+		private final Similarity similarity;
+		private final RecencyBoost recencyBoost;
+		private final RatingAggregates ratings;
+		private final float ratingWeight;
+
+
+		Snapshot(InvertedIndex[] segments, Similarity similarity, RecencyBoost recencyBoost,
+				RatingAggregates ratings, float ratingWeight) {
+
+			this.segments = segments;
+			this.docBases = new int[segments.length];
+			this.similarity = similarity;
+			this.recencyBoost = recencyBoost;
+			this.ratings = ratings;
+			this.ratingWeight = ratingWeight;
+
+			int size = 0;
+			long totalLength = 0;
+
+			for(int i = 0; i < segments.length; i++) {
+
+				this.docBases[i] = size;
+				size += segments[i].size();
+				totalLength += segments[i].getTotalLength();
+
+			}
+
+			this.size = size;
+			this.totalLength = totalLength;
+
+		}
+
+
+		/*
+		 * Returns the number of documents in the snapshot.
+		 *
+		 * */
+
+		public int size() {
+
+			return this.size;
+
+		}
+
+
+		public int getSegmentCount() {
+
+			return this.segments.length;
+
+		}
+
+
+		InvertedIndex[] getSegments() {
+
+			return this.segments;
+
+		}
+
+
+		public float getAverageDocumentLength() {
+
+			return (this.size == 0) ? 0 : (float) ((double) this.totalLength / this.size);
+
+		}
+
+
+		/*
+		 * Returns the document with the given (global) id, or null if
+		 * there is no such document.
+		 *
+		 * */
+
+		public Document getDocument(int docId) {
+
+			if(docId < 0 || docId >= this.size) {
+
+				return null;
+
+			}
+
+			int segment = this.segmentOf(docId);
+
+			return this.segments[segment].getDocument(docId - this.docBases[segment]);
+
+		}
+
+
+		private int segmentOf(int docId) {
+
+			int segment = Arrays.binarySearch(this.docBases, docId);
+
+			/* segments are never empty, so the docBases are distinct */
+
+			return (segment < 0) ? -segment - 2 : segment;
+
+		}
+
+
+		/*
+		 * Returns the number of documents containing stem.
+		 *
+		 * */
+
+		public int getDocumentFrequency(String stem) {
+
+			int docFreq = 0;
+
+			for(int i = 0; i < this.segments.length; i++) {
+
+				docFreq += this.segments[i].getDocumentFrequency(stem);
+
+			}
+
+			return docFreq;
+
+		}
+
+
+		/*
+		 * Returns the k best documents for query, best first, like
+		 * RankingEngine.search, with the boosts of the snapshot.
+		 *
+		 * */
+
+		public SearchResult[] search(String query, int k) {
+
+			String[] stems = Document.stems(query);
+			int[] termIds = new int[stems.length];
+			float[] idfs = new float[stems.length];
+			int n = 0;
+
+			for(int i = 0; i < stems.length; i++) {
+
+				int docFreq = this.getDocumentFrequency(stems[i]);
+
+				if(docFreq > 0) {
+
+					termIds[n] = TermDictionary.getGlobal().getId(stems[i]);
+					idfs[n] = this.similarity.idf(docFreq, this.size);
+					n++;
+
+				}
+
+			}
+
+			TopKHeap heap = new TopKHeap(k);
+
+			if(n > 0) {
+
+				float[] norms = RankingEngine.normCache(this.similarity, this.getAverageDocumentLength());
+				RecencyBoost boost = this.recencyBoost;
+				float[] recency = (boost == null) ? null : boost.getFactors(boost.getQueryDay());
+				PostingsCursor[] cursors = new PostingsCursor[n];
+				float[] listIdfs = new float[n];
+
+				for(int s = 0; s < this.segments.length; s++) {
+
+					/* the stems that occur in this segment */
+
+					int m = 0;
+
+					for(int t = 0; t < n; t++) {
+
+						PostingList list = this.segments[s].getPostings(termIds[t]);
+
+						if(list != null) {
+
+							cursors[m] = list.cursor();
+							listIdfs[m] = idfs[t];
+							m++;
+
+						}
+
+					}
+
+					if(m > 0) {
+
+						RankingEngine.collect(this.segments[s].getLengthCodes(), this.docBases[s], cursors, listIdfs, m,
+								norms, this.similarity, heap, null, 0, this.segments[s].getReleaseDays(), recency,
+								this.ratings, this.ratingWeight);
+
+					}
+
+				}
+
+			}
+
+			float[] scores = new float[heap.size()];
+			int[] docIds = heap.drain(scores);
+			SearchResult[] results = new SearchResult[docIds.length];
+
+			for(int i = 0; i < docIds.length; i++) {
+
+				results[i] = new SearchResult(docIds[i], this.getDocument(docIds[i]), scores[i]);
+
+			}
+
+			return results;
+
+		}
+
+	}
+
+
+	public ConcurrentIndex() {
+
+		this(Runtime.getRuntime().availableProcessors(), null);
+
+	}
+
+
+	/*
+	 * Creates an index with (at least) the given number of write buffers,
+	 * scoring with similarity (BM25 if null).
+	 *
+	 * */
+
+	public ConcurrentIndex(int stripes, Similarity similarity) {
+
+		int n = 1;
+
+		while(n < stripes && n < 1024) {
+
+			n <<= 1;
+
+		}
+
+		this.stripes = new Stripe[n];
+
+		for(int i = 0; i < n; i++) {
+
+			this.stripes[i] = new Stripe();
+
+		}
+
+		this.similarity = (similarity == null) ? new BM25Similarity() : similarity;
+		this.snapshot = new Snapshot(new InvertedIndex[0], this.similarity, null, null, 0);
+
+	}
+
+
+	private Stripe stripe() {
+
+		return this.stripes[TermDictionary.mix((int) Thread.currentThread().getId()) & (this.stripes.length - 1)];
+
+	}
+
+
+	/*
+	 * Buffers document; it becomes searchable with the next refresh().
+	 *
+	 * */
+
+	public void addDocument(Document document) {
+
+		if(document == null) {
+
+			return;
+
+		}
+
+		Stripe stripe = this.stripe();
+
+		synchronized(stripe) {
+
+			stripe.documents.add(document);
+
+		}
+
+	}
+
+
+	/*
+	 * Buffers all documents of batch (null entries are skipped) at once.
+	 *
+	 * */
+
+	public void addDocuments(Document[] batch) {
+
+		if(batch == null) {
+
+			return;
+
+		}
+
+		Stripe stripe = this.stripe();
+
+		synchronized(stripe) {
+
+			for(int i = 0; i < batch.length; i++) {
+
+				if(batch[i] != null) {
+
+					stripe.documents.add(batch[i]);
+
+				}
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the number of buffered documents that are not searchable
+	 * yet.
+	 *
+	 * */
+
+	public int getPendingCount() {
+
+		int pending = 0;
+
+		for(int i = 0; i < this.stripes.length; i++) {
+
+			synchronized(this.stripes[i]) {
+
+				pending += this.stripes[i].documents.size();
+
+			}
+
+		}
+
+		return pending;
+
+	}
+
+
+	/*
+	 * Makes all buffered documents searchable: builds a segment from them,
+	 * merges segments (see above) and publishes the new snapshot. Returns
+	 * the number of documents that were added. Searches that are running
+	 * meanwhile continue on the old snapshot.
+	 *
+	 * */
+
+	public synchronized int refresh() {
+
+		ArrayList<Document> documents = new ArrayList<Document>();
+
+		for(int i = 0; i < this.stripes.length; i++) {
+
+			ArrayList<Document> buffered;
+
+			synchronized(this.stripes[i]) {
+
+				buffered = this.stripes[i].documents;
+				this.stripes[i].documents = new ArrayList<Document>();
+
+			}
+
+			documents.addAll(buffered);
+
+		}
+
+		if(documents.isEmpty()) {
+
+			return 0;
+
+		}
+
+		InvertedIndex segment = new InvertedIndex();
+
+		for(int i = 0; i < documents.size(); i++) {
+
+			segment.addDocument(documents.get(i));
+
+		}
+
+		InvertedIndex[] old = this.snapshot.getSegments();
+		InvertedIndex[] segments = Arrays.copyOf(old, old.length + 1);
+		int count = segments.length;
+		segments[count - 1] = segment;
+
+		while(count >= 2 && segments[count - 2].size() <= MERGE_RATIO * segments[count - 1].size()) {
+
+			segments[count - 2] = merge(segments[count - 2], segments[count - 1]);
+			count--;
+
+		}
+
+		this.snapshot = new Snapshot(Arrays.copyOf(segments, count), this.similarity, this.recencyBoost,
+				this.ratings, this.ratingWeight);
+
+		return documents.size();
+
+	}
+
+
+	/*
+	 * Returns a new segment with the documents of a followed by those of
+	 * b. The documents are not analyzed again: the posting lists of b are
+	 * appended to those of a (see InvertedIndex.merge).
+	 *
+	 * */
+
+	private static InvertedIndex merge(InvertedIndex a, InvertedIndex b) {
+
+		return InvertedIndex.merge(a, b);
+
+	}
+
+
+	/*
+	 * Boosts newer documents with recencyBoost from now on (see
+	 * RankingEngine.setRecencyBoost), or switches boosting off again if it
+	 * is null. Publishes a new snapshot with the same segments.
+	 *
+	 * */
+
+	public synchronized void setRecencyBoost(RecencyBoost recencyBoost) {
+
+		this.recencyBoost = recencyBoost;
+		this.publishBoosts();
+
+	}
+
+
+	/*
+	 * Multiplies the score of every hit with ratings.boost(docId, weight)
+	 * from now on, by global doc id (see RankingEngine.setRatingBoost), or
+	 * switches the boost off again if ratings is null. Publishes a new
+	 * snapshot with the same segments.
+	 *
+	 * */
+
+	public synchronized void setRatingBoost(RatingAggregates ratings, float weight) {
+
+		this.ratings = ratings;
+		this.ratingWeight = weight;
+		this.publishBoosts();
+
+	}
+
+
+	private void publishBoosts() {
+
+		this.snapshot = new Snapshot(this.snapshot.getSegments(), this.similarity, this.recencyBoost, this.ratings,
+				this.ratingWeight);
+
+	}
+
+
+	/*
+	 * Returns the current snapshot. Reading from one snapshot gives
+	 * consistent results, even if refresh() is called meanwhile.
+	 *
+	 * */
+
+	public Snapshot getSnapshot() {
+
+		return this.snapshot;
+
+	}
+
+
+	/*
+	 * Returns the number of searchable documents.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.snapshot.size();
+
+	}
+
+
+	public Document getDocument(int docId) {
+
+		return this.snapshot.getDocument(docId);
+
+	}
+
+
+	public SearchResult[] search(String query, int k) {
+
+		return this.snapshot.search(query, k);
+
+	}
+
+}
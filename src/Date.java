@@ -2,6 +2,11 @@
  * Each instance represents a Date, such as the birthday 
  * of an Author or the release date of a Document/Review.
  * 
+ * The number of days since the 1st of January 1970 (the epoch day) is
+ * kept in a field and recomputed whenever the date changes, so comparing
+ * dates and computing ages is a subtraction of two ints. The epoch day
+ * is also the hash of a date.
+ * 
  * */
 
 import java.util.Calendar;
@@ -11,15 +16,22 @@ public class Date {
 	private int day;
 	private int month;
 	private int year;
+	private int epochDay;
+	
+	/* days of a non-leap year before the first of each month */
+	
+	private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
 	
 	
 	public Date(int day, int month, int year) {
 		
-		/* set day to first if invalid input */
+		/* 
+		 * year and month first: whether the day is valid depends on them
+		 * (e.g. the 29th of February) 
+		 * 
+		 * */
 		
-		if(!this.setDay(day)) {
-			this.day = 1;
-		}
+		this.setYear(year);
 		
 		/* set month to January if invalid input */
 		
@@ -27,7 +39,13 @@ public class Date {
 			this.month = 1;
 		}
 		
-		this.setYear(year);
+		/* set day to first if invalid input */
+		
+		if(!this.setDay(day)) {
+			this.day = 1;
+		}
+		
+		this.updateEpochDay();
 	}
 	
 	
@@ -36,6 +54,7 @@ public class Date {
 		this.day = cal.get(Calendar.DAY_OF_MONTH);
 		this.month = cal.get(Calendar.MONTH) + 1; // MONTH starts with January which is 0
 		this.year = cal.get(Calendar.YEAR);
+		this.updateEpochDay();
 	}
 	
 	
@@ -53,6 +72,16 @@ public class Date {
 	}
 	
 	
+	/* 
+	 * Returns the number of days since the 1st of January 1970.
+	 * 
+	 * */
+	
+	public int getEpochDay() {
+		return this.epochDay;
+	}
+	
+	
 	/* 
 	 * Change day only if input is valid for given month.
 	 * 
@@ -61,6 +90,7 @@ public class Date {
 	public boolean setDay(int day) {
 		if(day > 0 && day <= this.daysInMonth(this.month)) {
 			this.day = day;
+			this.updateEpochDay();
 			return true;
 		} 
 		else { return false; }
@@ -78,6 +108,7 @@ public class Date {
 		if(month > 0 && month < 13 && this.day <= this.daysInMonth(month)) {
 			
 			this.month = month;
+			this.updateEpochDay();
 			return true;
 			
 		}
@@ -97,6 +128,7 @@ public class Date {
 	
 	public void setYear(int year) {
 		this.year = (year < 1970) ? 1970 : year;
+		this.updateEpochDay();
 	}
 	
 	
@@ -142,24 +174,36 @@ public class Date {
 	}
 	
 	
-	private int daysSince1970() {
+	/* 
+	 * Computes the epoch day of this date. Like daysInMonth, every year 
+	 * divisible by 4 is a leap year, which holds from 1901 to 2099.
+	 * 
+	 * */
+	
+	private void updateEpochDay() {
 		
 		int daysFullYears = (this.year - 1970) * 365;
-		daysFullYears += (this.year - 1972) / 4; // counts extra days for completed leap years
+		daysFullYears += (this.year - 1969) / 4; // counts extra days for completed leap years
 		
-		/* counts days for all completed months */
+		/* counts days for all completed months (month is 0 while the constructor runs) */
 		
 		int daysFullMonths = 0;
 		
-		for(int i = 1; i < this.month; i++) { 
+		if(this.month > 1) {
 			
-			daysFullMonths += this.daysInMonth(i);
+			daysFullMonths = DAYS_BEFORE_MONTH[this.month - 1];
+			
+			if(this.month > 2 && this.year % 4 == 0) {
+				
+				daysFullMonths++;
+				
+			}
 			
 		}
 		
-		int days =  this.day - 1; // counts days in current month
+		int days = this.day - 1; // counts days in current month
 		
-		return daysFullYears + daysFullMonths + days;
+		this.epochDay = daysFullYears + daysFullMonths + days;
 	}
 	
 	
@@ -170,7 +214,7 @@ public class Date {
 	
 	public int getAgeInDaysAt(Date today) {
 		
-		return today.daysSince1970() - this.daysSince1970();
+		return today.epochDay - this.epochDay;
 		
 	}
 	
@@ -193,7 +237,7 @@ public class Date {
 	
 	public boolean equals(Date date) {
 		
-		if(date != null && this.daysSince1970() == date.daysSince1970()) {
+		if(date != null && this.epochDay == date.epochDay) {
 			
 			return true;
 			
@@ -205,4 +249,18 @@ public class Date {
 		}
 		
 	}
+	
+	
+	public boolean equals(Object object) {
+		
+		return (object instanceof Date) && this.equals((Date) object);
+		
+	}
+	
+	
+	public int hashCode() {
+		
+		return this.epochDay;
+		
+	}
 }
@@ -0,0 +1,475 @@
+/*
+ * The release dates of the documents of an InvertedIndex, sorted, for
+ * filters such as "released between X and Y". The column holds the epoch
+ * day (see Date.getEpochDay) and the doc id of every document, ordered by
+ * day and, for equal days, by doc id. All documents released in a range of
+ * days therefore lie next to each other in the column, so a range is found
+ * with two binary searches and its documents are read in one sweep:
+ * O(log n + matches).
+ *
+ * The binary search first runs over a small block index (the first day of
+ * every BLOCK_SIZE positions), which fits into a few cache lines, and then
+ * within one block.
+ *
+ * Documents are usually added in the order of their release, in which case
+ * the column is in doc id order as well (see isInDocOrder), position and
+ * doc id are the same and a range of days is a contiguous range of doc
+ * ids.
+ *
+ * When documents have been added to the index, extend() sorts only the
+ * new ones and merges them into a copy of the column, in O(n + d log d)
+ * for d new documents, instead of sorting all n again. If they continue
+ * the release order, they are simply appended.
+ *
+ * getBitSet returns a bitmap that only spans the doc ids of the range,
+ * starting at the smallest of them (see getMinDocId), so a narrow range
+ * of a large index takes few words.
+ *
+ * A DateRangeIndex is a snapshot of the first size() documents of the
+ * index and immutable, so it can be shared by many threads.
+ *
+ * */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class DateRangeIndex {
+
+	static final int BLOCK_SIZE = 128;
+
+	private int size;
+	private int[] days;
+	private int[] docIds;
+	private int[] blockFirstDays;
+	private boolean docOrder;
+
+
+	/*
+	 * Builds the column from releaseDays, indexed by doc id, of n documents.
+	 *
+	 * */
+
+	DateRangeIndex(int[] releaseDays, int n) {
+
+		this.size = n;
+		this.days = new int[n];
+		this.docIds = new int[n];
+		this.docOrder = true;
+
+		for(int i = 1; i < n && this.docOrder; i++) {
+
+			this.docOrder = releaseDays[i - 1] <= releaseDays[i];
+
+		}
+
+		if(this.docOrder) {
+
+			System.arraycopy(releaseDays, 0, this.days, 0, n);
+
+			for(int i = 0; i < n; i++) {
+
+				this.docIds[i] = i;
+
+			}
+
+		}
+		else {
+
+			/* sorts day and doc id together, as one long each */
+
+			long[] pairs = new long[n];
+
+			for(int i = 0; i < n; i++) {
+
+				pairs[i] = ((long) releaseDays[i] << 32) | i;
+
+			}
+
+			Arrays.sort(pairs);
+
+			for(int i = 0; i < n; i++) {
+
+				this.days[i] = (int) (pairs[i] >> 32);
+				this.docIds[i] = (int) pairs[i];
+
+			}
+
+		}
+
+		this.buildBlocks();
+
+	}
+
+
+	private DateRangeIndex(int size, int[] days, int[] docIds, boolean docOrder) {
+
+		this.size = size;
+		this.days = days;
+		this.docIds = docIds;
+		this.docOrder = docOrder;
+		this.buildBlocks();
+
+	}
+
+
+	private void buildBlocks() {
+
+		this.blockFirstDays = new int[(this.size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+		for(int block = 0; block < this.blockFirstDays.length; block++) {
+
+			this.blockFirstDays[block] = this.days[block * BLOCK_SIZE];
+
+		}
+
+	}
+
+
+	/*
+	 * Returns a column of the first n documents of releaseDays (indexed by
+	 * doc id), of which this one holds the first size() already: the
+	 * new documents are sorted by day and merged into a copy of this
+	 * column (see above). Returns this column if n is not larger than
+	 * size().
+	 *
+	 * */
+
+	DateRangeIndex extend(int[] releaseDays, int n) {
+
+		if(n <= this.size) {
+
+			return this;
+
+		}
+
+		int d = n - this.size;
+		long[] delta = new long[d];
+		boolean sorted = true;
+
+		for(int i = 0; i < d; i++) {
+
+			delta[i] = ((long) releaseDays[this.size + i] << 32) | (this.size + i);
+			sorted = sorted && (i == 0 || delta[i - 1] <= delta[i]);
+
+		}
+
+		if(!sorted) {
+
+			Arrays.sort(delta);
+
+		}
+
+		boolean docOrder = this.docOrder && sorted
+				&& (this.size == 0 || this.days[this.size - 1] <= (int) (delta[0] >> 32));
+		int[] days = Arrays.copyOf(this.days, n);
+		int[] docIds = Arrays.copyOf(this.docIds, n);
+
+		/* merged from the end, so the old entries can stay in place until they move */
+
+		int i = this.size - 1;
+		int j = d - 1;
+
+		for(int position = n - 1; j >= 0; position--) {
+
+			int day = (int) (delta[j] >> 32);
+
+			/* new documents have larger doc ids, so they go after old ones of the same day */
+
+			if(i >= 0 && this.days[i] > day) {
+
+				days[position] = this.days[i];
+				docIds[position] = this.docIds[i];
+				i--;
+
+			}
+			else {
+
+				days[position] = day;
+				docIds[position] = (int) delta[j];
+				j--;
+
+			}
+
+		}
+
+		return new DateRangeIndex(n, days, docIds, docOrder);
+
+	}
+
+
+	/*
+	 * Builds the column for all documents currently in index.
+	 *
+	 * */
+
+	public static DateRangeIndex build(InvertedIndex index) {
+
+		return new DateRangeIndex(index.getReleaseDays(), index.size());
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the column.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.size;
+
+	}
+
+
+	/*
+	 * Returns true if the documents are sorted by release date already,
+	 * so that getDocId(position) == position.
+	 *
+	 * */
+
+	public boolean isInDocOrder() {
+
+		return this.docOrder;
+
+	}
+
+
+	public int getDocId(int position) {
+
+		return this.docIds[position];
+
+	}
+
+
+	public int getDay(int position) {
+
+		return this.days[position];
+
+	}
+
+
+	/*
+	 * Returns the first position whose day is at least day, or size() if
+	 * there is none.
+	 *
+	 * */
+
+	public int lowerBound(int day) {
+
+		/* the last block that starts before day; position 0 if there is none */
+
+		int low = 0;
+		int high = this.blockFirstDays.length - 1;
+		int block = -1;
+
+		while(low <= high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(this.blockFirstDays[middle] < day) {
+
+				block = middle;
+				low = middle + 1;
+
+			}
+			else {
+
+				high = middle - 1;
+
+			}
+
+		}
+
+		if(block < 0) {
+
+			return 0;
+
+		}
+
+		/* the answer lies after the first position of this block */
+
+		low = block * BLOCK_SIZE + 1;
+		high = Math.min(low - 1 + BLOCK_SIZE, this.size);
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(this.days[middle] < day) {
+
+				low = middle + 1;
+
+			}
+			else {
+
+				high = middle;
+
+			}
+
+		}
+
+		return low;
+
+	}
+
+
+	/*
+	 * Returns the first position whose day is after day, or size() if
+	 * there is none.
+	 *
+	 * */
+
+	public int upperBound(int day) {
+
+		return (day == Integer.MAX_VALUE) ? this.size : this.lowerBound(day + 1);
+
+	}
+
+
+	/*
+	 * Returns the first position of the documents released on or after
+	 * from. A null date is open.
+	 *
+	 * */
+
+	public int start(Date from) {
+
+		return (from == null) ? 0 : this.lowerBound(from.getEpochDay());
+
+	}
+
+
+	/*
+	 * Returns the position after the last document released on or before
+	 * to. A null date is open.
+	 *
+	 * */
+
+	public int end(Date to) {
+
+		return (to == null) ? this.size : this.upperBound(to.getEpochDay());
+
+	}
+
+
+	/*
+	 * Returns the number of documents released from from to to,
+	 * including both.
+	 *
+	 * */
+
+	public int count(Date from, Date to) {
+
+		return Math.max(0, this.end(to) - this.start(from));
+
+	}
+
+
+	/*
+	 * Returns the ids of the documents released from from to to, including
+	 * both, in ascending order.
+	 *
+	 * */
+
+	public int[] getDocIds(Date from, Date to) {
+
+		int start = this.start(from);
+		int end = Math.max(start, this.end(to));
+		int[] ids = Arrays.copyOfRange(this.docIds, start, end);
+
+		if(!this.docOrder) {
+
+			Arrays.sort(ids);
+
+		}
+
+		return ids;
+
+	}
+
+
+	/*
+	 * Returns the smallest id of the documents released from from to to,
+	 * including both, or 0 if there is none.
+	 *
+	 * */
+
+	public int getMinDocId(Date from, Date to) {
+
+		int start = this.start(from);
+		int end = this.end(to);
+
+		if(start >= end) {
+
+			return 0;
+
+		}
+
+		if(this.docOrder) {
+
+			return start;
+
+		}
+
+		int min = Integer.MAX_VALUE;
+
+		for(int i = start; i < end; i++) {
+
+			min = Math.min(min, this.docIds[i]);
+
+		}
+
+		return min;
+
+	}
+
+
+	/*
+	 * Returns the documents released from from to to, including both, as a
+	 * bitmap in which bit i stands for the doc id getMinDocId(from, to) +
+	 * i, so it is only as large as the range of doc ids it covers.
+	 *
+	 * */
+
+	public BitSet getBitSet(Date from, Date to) {
+
+		int start = this.start(from);
+		int end = this.end(to);
+
+		if(start >= end) {
+
+			return new BitSet(0);
+
+		}
+
+		if(this.docOrder) {
+
+			BitSet bits = new BitSet(end - start);
+			bits.set(0, end - start);
+
+			return bits;
+
+		}
+
+		int base = this.getMinDocId(from, to);
+		int max = 0;
+
+		for(int i = start; i < end; i++) {
+
+			max = Math.max(max, this.docIds[i]);
+
+		}
+
+		BitSet bits = new BitSet(max - base + 1);
+
+		for(int i = start; i < end; i++) {
+
+			bits.set(this.docIds[i] - base);
+
+		}
+
+		return bits;
+
+	}
+
+}
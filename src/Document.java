@@ -3,6 +3,17 @@
  * 
  * */
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 public class Document {
 	
 	private String title;
@@ -11,6 +22,11 @@ public class Document {
 	private Date releaseDate;
 	private Author author;
 	private WordCountsArray wca;
+	private TermPositions positions;
+	
+	/* the positions of the words of the content, encoded while it is added (see recordToken) */
+	
+	private TermPositions.Builder positionsBuilder;
 	
 	/* 
 	 * Each document contains a text variable that represents the content of the document. In order for the
@@ -26,6 +42,27 @@ public class Document {
 			"keit", "kunde", "legen", "lein", "lich", "ling", "logie", "los", "mal", "meter", "mut", "nis", "or", 
 			"sam", "schaft", "tum", "ung", "voll", "wert", "würdig"};
 	
+	/* SUFFIXES compiled into a reverse trie, used by findSuffix */
+	
+	private static final SuffixTrie SUFFIX_TRIE = new SuffixTrie(SUFFIXES);
+	
+	/* null while ingestion metrics are switched off, see setIngestionMetrics */
+	
+	private static volatile IngestionMetrics metrics;
+	
+	/* indices of the values measured per document while metrics are switched on */
+	
+	private static final int TOKENS = 0;
+	private static final int SUFFIX_HITS = 1;
+	private static final int TOKENIZE_NANOS = 2;
+	private static final int STEM_NANOS = 3;
+	private static final int COUNT_NANOS = 4;
+	private static final int MEASUREMENTS = 5;
+	
+	/* number of characters read at once by read(title, reader, ...) */
+	
+	static final int CHUNK_SIZE = 16384;
+	
 	
 	public Document(String title, String content, String language, String summary, Date releaseDate, Author author) {
 		
@@ -34,6 +71,7 @@ public class Document {
 		/* needs to initialize wca before content can be added to it */
 		
 		this.wca = new WordCountsArray(0);
+		this.positions = TermPositions.EMPTY;
 		this.addContent(content);
 		
 		if(!this.setLanguage(language)) this.language = "Unknown";
@@ -49,6 +87,25 @@ public class Document {
 	}
 	
 	
+	/*
+	 * Creates a document whose content has already been analyzed into wca
+	 * and positions (which may be TermPositions.EMPTY), e.g. when it is
+	 * restored from a Segment.
+	 * 
+	 * */
+	
+	static Document restore(String title, WordCountsArray wca, TermPositions positions, String language, 
+			String summary, Date releaseDate, Author author) {
+		
+		Document document = new Document(title, null, language, summary, releaseDate, author);
+		document.wca = wca;
+		document.positions = positions;
+		
+		return document;
+		
+	}
+	
+	
 	public String getTitle() {
 		return this.title;
 	}
@@ -74,6 +131,30 @@ public class Document {
 	}
 	
 	
+	/*
+	 * Returns the positions of the words of the content until the document
+	 * is added to an InvertedIndex. From then on the posting lists hold the
+	 * only copy of them (see InvertedIndex.getPositions), and this returns
+	 * TermPositions.EMPTY.
+	 * 
+	 * */
+	
+	public TermPositions getPositions() {
+		return this.positions;
+	}
+	
+	
+	/*
+	 * Drops the positions, once the InvertedIndex has copied them into
+	 * its posting lists.
+	 * 
+	 * */
+	
+	void releasePositions() {
+		this.positions = TermPositions.EMPTY;
+	}
+	
+	
 	public boolean setTitle(String title) {
 		
 		if(title == null) {
@@ -177,248 +258,435 @@ public class Document {
 	}
 	
 	
-	/* 
-	 * The method takes the text of the document and splits it into single words.
-	 * Returned is a string array containing these words, whereas a word appearing
-	 * multiple times throughout the content, is added to the array for each 
-	 * occurrence. Dots, commas, colons, semicolons and brackets excluded.
-	 *  
-	 *  */
+	/*
+	 * Returns the length of the longest element of the SUFFIXES array that
+	 * is a suffix of the word between start and end, or 0 if there is none.
+	 * The suffixes are compiled into SUFFIX_TRIE, so the word is read only
+	 * once from its end instead of being compared with every suffix.
+	 * 
+	 * */
 	
-	private static String[] tokenize(String content) {
+	private static int findSuffix(CharSequence text, int start, int end) {
 		
-		if(content.length() < 1) return null;
-
-		int startLastWord = 0;
-		int currentIndex = 0;
+		return SUFFIX_TRIE.longestSuffix(text, start, end);
 		
-		String[] words = new String[countWords(content)];
+	}
+	
+	
+	/*
+	 * Returns the end of the word between start and end once a suffix of
+	 * the given length is cut off. The word is never cut down to nothing.
+	 * 
+	 * */
+	
+	private static int cutSuffix(int start, int end, int suffixLength) {
+		
+		if(end - start <= suffixLength) return end;
+		
+		return end - suffixLength;
+		
+	}
+	
+	
+	/*
+	 * Returns the end of the stem of the word made up of the characters of
+	 * text between start and end, so that stems can be computed straight
+	 * from the Tokenizer offsets.
+	 * 
+	 * */
+	
+	static int stemEnd(CharSequence text, int start, int end) {
 		
+		/* cut ending off only if word is longer than 4 chars */
 		
-		for(int j = 0; j < content.length(); j++) {
+		if(end - start > 4) {
 			
-			if(content.charAt(j) == ' ') {
-				
-				/* skip opening bracket or quote*/
-				
-				if(content.charAt(startLastWord) == '(' || content.charAt(startLastWord) == '"') {
-					
-					startLastWord++; 
-					
-				}
-				
-				char beforeSpace = content.charAt(j-1);
-				
-				if(beforeSpace == ',' || beforeSpace == '.' || beforeSpace == ':' || beforeSpace == ';' ||
-						beforeSpace == ')' || beforeSpace == '"' || beforeSpace == '?' || beforeSpace == '!') {
-					
-					words[currentIndex++] = content.substring(startLastWord, j-1);
-					
-				}
-				else {
-					
-					words[currentIndex++] = content.substring(startLastWord, j);
-					
-				}
-				
-				startLastWord = j+1;
-				
-			}
+			return cutSuffix(start, end, findSuffix(text, start, end));
 			
 		}
 		
-		/* 
-		 * Save last word, which is not followed by a space and therefore not
-		 * captured by the for-loop before. Also, the text can end with a dot 
-		 * '.', a question mark '?', an exclamation mark '!' or with the last
-		 * letter of a word. Don't store the signs.
-		 *  
-		 *  */
+		return end;
 		
-		char lastChar = content.charAt(content.length()-1);
+	}
+	
+	
+	/*
+	 * Reduces a single word to its stem, exactly as it is done for the
+	 * content of a document. Also used by the search side, so that query
+	 * words are looked up under the same stems that were indexed.
+	 * 
+	 * */
+	
+	static String stem(String word) {
 		
-		if(lastChar == '.' || lastChar == '?' || lastChar == '!') {
+		return word.substring(0, stemEnd(word, 0, word.length()));
+		
+	}
+	
+	
+	/*
+	 * Splits text into words and stems them, exactly as it is done for the
+	 * content of a document, e.g. to process a search query. Unlike the 
+	 * content, repeated words are returned once for each occurrence, in
+	 * the order in which they occur.
+	 * 
+	 * */
+	
+	static String[] stems(String text) {
+		
+		if(text == null) return new String[0];
+		
+		Tokenizer tokenizer = new Tokenizer(text);
+		int n = 0;
+		
+		while(tokenizer.next()) {
 			
-			words[currentIndex] = content.substring(startLastWord, content.length()-1);
+			n++;
 			
 		}
-		else {
+		
+		String[] stems = new String[n];
+		tokenizer.reset(text);
+		
+		for(int i = 0; tokenizer.next(); i++) {
 			
-			words[currentIndex] = content.substring(startLastWord, content.length());
+			stems[i] = text.substring(tokenizer.start(), stemEnd(text, tokenizer.start(), tokenizer.end()));
 			
 		}
 		
-		return words;
+		return stems;
 		
 	}
 	
 	
-	private static int countWords(String content) {
+	/*
+	 * The method takes the text of the document, i.e. the content, as parameter.
+	 * It splits the text into separate words (see Tokenizer) and removes the 
+	 * suffix for each word. The resulting word stems are then added to the 
+	 * class's WordCountsArray attribute (wca). This happens in a single pass
+	 * over the content, using the offsets of the words, so that a String is
+	 * only created for a stem that is new to the document.
+	 * 
+	 * */
+	
+	private void addContent(String content) {
+		
+		if(content == null) return;
 		
-		int count = 0;
+		Tokenizer tokenizer = new Tokenizer(content);
+		IngestionMetrics metrics = Document.metrics;
 		
-		for(int i = 0; i < content.length(); i++) {
+		if(metrics != null) {
 			
-			/* 
-			 * Spaces separate words, even when after a '.' or a ','.
-			 * The following counts the words in content.
-			 * 
-			 * */
+			long[] measurements = new long[MEASUREMENTS];
+			int stemsBefore = this.wca.size();
 			
-			if(content.charAt(i) == ' ') {
-				count++;
-			}
+			this.addTokensMeasured(content, tokenizer, measurements);
+			this.recordMeasurements(metrics, measurements, stemsBefore);
+			this.encodePositions();
+			return;
 			
 		}
 		
-		/* last word is not followed by a space */
-		
-		count++;
-		
-		return count;
+		this.addTokens(content, tokenizer);
+		this.encodePositions();
 		
 	}
 	
 	
-	/* 
-	 * Returns true, if and only if the last n characters of the strings
-	 * w1 and w2 are identical.
+	/*
+	 * Same as addContent(content), but reads the content from reader in 
+	 * chunks of CHUNK_SIZE characters, so that the content never has to be
+	 * in memory as a whole. A chunk is only tokenized up to its last 
+	 * whitespace; the beginning of a word that is cut off at the end of a
+	 * chunk is moved to the front of the buffer and completed by the next
+	 * chunk. Only a single word longer than the buffer makes it grow.
 	 * 
 	 * */
 	
-	private static boolean suffixesEqual(String w1, String w2, int n) {
+	private void addContent(Reader reader) throws IOException {
+		
+		if(reader == null) return;
 		
-		int w1l = w1.length();
-		int w2l = w2.length();
+		char[] buffer = new char[CHUNK_SIZE];
+		CharBuffer text = CharBuffer.wrap(buffer);
+		Tokenizer tokenizer = new Tokenizer();
 		
-		if(w1l < n || w2l < n) { return false; }
+		IngestionMetrics metrics = Document.metrics;
+		long[] measurements = (metrics == null) ? null : new long[MEASUREMENTS];
+		int stemsBefore = this.wca.size();
 		
-		for(int i = 1; i < n; i++) {
+		int length = 0;
+		int read;
+		
+		while((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+			
+			length += read;
+			
+			/* everything up to the last whitespace consists of complete words */
+			
+			int complete = length;
+			
+			while(complete > 0 && !Character.isWhitespace(buffer[complete-1])) {
+				
+				complete--;
+				
+			}
 			
-			if(w1.charAt(w1l-i) == w2.charAt(w2l-i)) {
+			if(complete == 0) {
+				
+				if(length == buffer.length) {
+					
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					text = CharBuffer.wrap(buffer);
+					
+				}
 				
 				continue;
 				
 			}
 			
-			return false;
+			tokenizer.reset(text, 0, complete);
+			
+			if(measurements == null) {
+				
+				this.addTokens(text, tokenizer);
+				
+			}
+			else {
+				
+				this.addTokensMeasured(text, tokenizer, measurements);
+				
+			}
+			
+			System.arraycopy(buffer, complete, buffer, 0, length - complete);
+			length -= complete;
 			
 		}
 		
-		return true;
+		/* the last word, which is not followed by a whitespace */
+		
+		tokenizer.reset(text, 0, length);
+		
+		if(measurements == null) {
+			
+			this.addTokens(text, tokenizer);
+			
+		}
+		else {
+			
+			this.addTokensMeasured(text, tokenizer, measurements);
+			this.recordMeasurements(metrics, measurements, stemsBefore);
+			
+		}
+		
+		this.encodePositions();
 		
 	}
 	
 	
 	/*
-	 * Checks whether one of the elements in the SUFFIXES array is
-	 * a suffix of the passed string parameter. If this is the case,
-	 * the method returns the corresponding suffix. Otherwise, it 
-	 * returns an empty string ("").
+	 * Stems all words the tokenizer finds in text, counts them and records
+	 * their positions.
 	 * 
 	 * */
 	
-	private static String findSuffix(String word) {
+	private void addTokens(CharSequence text, Tokenizer tokenizer) {
 		
-		String suffix = "";
-		boolean isSuffix = false;
+		int start;
 		
-		for(int i = 0; i < SUFFIXES.length; i++) {
+		while(tokenizer.next()) {
 			
-			suffix = SUFFIXES[i];
-			isSuffix = suffixesEqual(word, suffix, suffix.length());
+			start = tokenizer.start();
+			this.recordToken(this.wca.addToken(text, start, stemEnd(text, start, tokenizer.end())));
 			
-			if(isSuffix) {
-				
-				return suffix;
-				
-			}
+		}
+		
+	}
+	
+	
+	/*
+	 * Records the position of the next word of the content, whose stem has
+	 * the given index in wca. The position is encoded right away (see
+	 * TermPositions.Builder), so a chunk leaves nothing but a few bytes
+	 * per word behind.
+	 * 
+	 * */
+	
+	private void recordToken(int index) {
+		
+		if(index < 0) return;
+		
+		if(this.positionsBuilder == null) {
+			
+			this.positionsBuilder = new TermPositions.Builder();
 			
 		}
 		
-		return "";
+		this.positionsBuilder.add(index);
 		
 	}
 	
 	
 	/*
-	 * Cuts the suffix and returns a string containing the passed word,
-	 * without the suffix. If the passed suffix is not a suffix of the
-	 * word parameter, the passed word is returned unchanged.
+	 * Collects the recorded positions into a TermPositions once the whole
+	 * content is processed.
 	 * 
 	 * */
 	
-	private static String cutSuffix(String word, String suffix) {
+	private void encodePositions() {
 		
-		if(word.length() <= suffix.length()) return word;
+		if(this.positionsBuilder != null) {
+			
+			this.positions = this.positionsBuilder.build(this.wca.size());
+			
+		}
 		
-		int suffixPos = 0;
+		this.positionsBuilder = null;
 		
-		if(suffixesEqual(word, suffix, suffix.length())) {
+	}
+	
+	
+	/*
+	 * Same as addTokens(text, tokenizer), but measures each stage and adds
+	 * the results to measurements (indices see MEASUREMENTS).
+	 * 
+	 * */
+	
+	private void addTokensMeasured(CharSequence text, Tokenizer tokenizer, long[] measurements) {
+		
+		long t0 = System.nanoTime();
+		
+		while(tokenizer.next()) {
 			
-			suffixPos = word.length()-suffix.length();
-			return word.substring(0, suffixPos);
+			long t1 = System.nanoTime();
 			
-		}
-		else {
+			int start = tokenizer.start();
+			int end = tokenizer.end();
+			int stemEnd = stemEnd(text, start, end);
+			
+			long t2 = System.nanoTime();
+			
+			this.recordToken(this.wca.addToken(text, start, stemEnd));
 			
-			return word;
+			long t3 = System.nanoTime();
+			
+			measurements[TOKENS]++;
+			if(stemEnd < end) measurements[SUFFIX_HITS]++;
+			
+			measurements[TOKENIZE_NANOS] += t1 - t0;
+			measurements[STEM_NANOS] += t2 - t1;
+			measurements[COUNT_NANOS] += t3 - t2;
+			t0 = t3;
 			
 		}
 		
+		/* the last call of next(), which found no more words */
+		
+		measurements[TOKENIZE_NANOS] += System.nanoTime() - t0;
+		
 	}
 	
 	
 	/*
-	 * The method takes the text of the document, i.e. the content, as parameter.
-	 * It splits the text into separate words and removes the suffix for each word.
-	 * The resulting word stems are then added to the class's WordCountsArray 
-	 * attribute (wca).
+	 * Adds the measurements of this document to metrics, once the whole
+	 * content is processed.
 	 * 
 	 * */
 	
-	private void addContent(String content) {
+	private void recordMeasurements(IngestionMetrics metrics, long[] measurements, int stemsBefore) {
 		
-		if(content == null) return;
+		metrics.record(measurements[TOKENS], this.wca.size() - stemsBefore, measurements[SUFFIX_HITS], 
+				measurements[TOKENIZE_NANOS], measurements[STEM_NANOS], measurements[COUNT_NANOS]);
 		
-		String[] tokens = tokenize(content);
+	}
+	
+	
+	/*
+	 * Creates a document like the constructor does, but reads the content
+	 * from reader in fixed-size chunks (see addContent(reader)), so that a
+	 * huge text never has to be loaded into one String. Peak memory stays
+	 * bounded by the chunk size plus the word counts of the document plus
+	 * its positions (see TermPositions). The positions still grow with the
+	 * content: they are encoded chunk by chunk, at one or two bytes per
+	 * word (up to twice that while they are collected), instead of the two
+	 * bytes per character of the text. Once the document is indexed, its
+	 * posting lists keep the positions for phrase queries in the same
+	 * encoding, and the document drops its own copy. The reader is read to
+	 * its end, but not closed.
+	 * 
+	 * */
+	
+	public static Document read(String title, Reader content, String language, String summary, Date releaseDate, 
+			Author author) throws IOException {
 		
-		if(tokens == null) return;
+		Document document = new Document(title, null, language, summary, releaseDate, author);
+		document.addContent(content);
 		
-		String currentWord;
-		String suffix;
+		return document;
 		
-		for(int i = 0; i < tokens.length; i++) {
-			
-			currentWord = tokens[i];
+	}
+	
+	
+	/*
+	 * Same as read(title, reader, ...) for content that is read from a
+	 * channel, e.g. a FileChannel, and decoded with the given charset
+	 * (UTF-8 if null). Characters spanning two chunks of bytes are decoded
+	 * correctly.
+	 * 
+	 * */
+	
+	public static Document read(String title, ReadableByteChannel content, Charset charset, String language, 
+			String summary, Date releaseDate, Author author) throws IOException {
+		
+		Reader reader = null;
+		
+		if(content != null) {
 			
-			/* cut ending off only if word is longer than 4 chars */
+			CharsetDecoder decoder = ((charset == null) ? StandardCharsets.UTF_8 : charset).newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
 			
-			if(currentWord.length() > 4) {
-				
-				suffix = findSuffix(currentWord);
-				
-				currentWord = cutSuffix(currentWord, suffix);
-				
-				
-			}
-
-			this.wca.add(currentWord, 1);
-			System.out.println(i + ": " + this.wca.getWord(i));
+			reader = Channels.newReader(content, decoder, CHUNK_SIZE);
 			
 		}
 		
-		System.out.println(this.wca.size());
+		return read(title, reader, language, summary, releaseDate, author);
 		
 	}
 	
 	
+	/*
+	 * Switches the measurement of ingestion on for all documents created
+	 * from now on, or off again if metrics is null (the default).
+	 * 
+	 * */
+	
+	public static void setIngestionMetrics(IngestionMetrics metrics) {
+		
+		Document.metrics = metrics;
+		
+	}
+	
+	
+	public static IngestionMetrics getIngestionMetrics() {
+		
+		return Document.metrics;
+		
+	}
+	
+	
+	/* 
+	 * Returns true if author, title and release date are equal.
+	 * 
+	 * */
+	
 	public boolean equals(Document document) {
 		
 		if(document != null 
-				&& this.author.equals(document.getAuthor()) 
 				&& this.title.equals(document.getTitle())
-				&& this.releaseDate.equals(document.getReleaseDate())) 
+				&& this.releaseDate.equals(document.getReleaseDate())
+				&& this.author.equals(document.getAuthor())) 
 		{
 			
 			return true;
@@ -433,11 +701,29 @@ public class Document {
 	}
 	
 	
+	public boolean equals(Object object) {
+		
+		return (object instanceof Document) && this.equals((Document) object);
+		
+	}
 	
 	
+	/* 
+	 * Combines the hashes of title, release date and author, like 
+	 * equals(document). None of them is computed here: String caches its
+	 * hash, the hash of a Date is its epoch day, and that of an Author
+	 * combines a name hash with the epoch day of the birthday, both fields
+	 * that the setters keep up to date. So the hash is cheap, but it is not
+	 * fixed: it changes with the title, the release date and the author
+	 * (and with their setters), so a document must not be changed while it
+	 * is a key of a HashMap or an element of a HashSet.
+	 * 
+	 * */
 	
-	
-	
-	
+	public int hashCode() {
+		
+		return 31 * (31 * this.title.hashCode() + this.releaseDate.hashCode()) + this.author.hashCode();
+		
+	}
 	
 }
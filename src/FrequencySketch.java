@@ -0,0 +1,135 @@
+/*
+ * Estimates how often keys have been seen recently, in little memory: a
+ * count-min sketch with 4 rows of 4-bit counters, packed 16 to a long. A
+ * key increments one counter per row and its frequency is the smallest of
+ * its 4 counters, so collisions can only make a key look more frequent.
+ *
+ * To forget old popularity, all counters are halved after 10 increments
+ * per counter slot (aging), so the estimates follow the recent traffic.
+ * Used by QueryCache to decide which query is worth keeping.
+ *
+ * */
+
+public class FrequencySketch {
+
+	private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xCBF29CE4};
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private long[] table;
+	private int mask;
+	private int sampleSize;
+	private int additions;
+
+
+	/*
+	 * Creates a sketch for about expectedKeys distinct keys.
+	 *
+	 * */
+
+	public FrequencySketch(int expectedKeys) {
+
+		int size = 16;
+
+		while(size < expectedKeys && size < (1 << 24)) {
+
+			size <<= 1;
+
+		}
+
+		this.table = new long[size];
+		this.mask = size - 1;
+		this.sampleSize = 10 * size;
+		this.additions = 0;
+
+	}
+
+
+	/*
+	 * Returns the estimated frequency of the key with the given hash, 0 to
+	 * 15.
+	 *
+	 * */
+
+	public int frequency(int hash) {
+
+		int frequency = 15;
+
+		for(int row = 0; row < 4; row++) {
+
+			int h = TermDictionary.mix(hash ^ SEEDS[row]);
+			int shift = counterShift(row, h);
+			int count = (int) ((this.table[h & this.mask] >>> shift) & 15);
+
+			frequency = Math.min(frequency, count);
+
+		}
+
+		return frequency;
+
+	}
+
+
+	/*
+	 * Counts one occurrence of the key with the given hash.
+	 *
+	 * */
+
+	public void increment(int hash) {
+
+		boolean added = false;
+
+		for(int row = 0; row < 4; row++) {
+
+			int h = TermDictionary.mix(hash ^ SEEDS[row]);
+			int index = h & this.mask;
+			int shift = counterShift(row, h);
+
+			if(((this.table[index] >>> shift) & 15) != 15) {
+
+				this.table[index] += 1L << shift;
+				added = true;
+
+			}
+
+		}
+
+		if(added && ++this.additions == this.sampleSize) {
+
+			this.age();
+
+		}
+
+	}
+
+
+	/*
+	 * Halves all counters.
+	 *
+	 * */
+
+	private void age() {
+
+		for(int i = 0; i < this.table.length; i++) {
+
+			this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+
+		}
+
+		this.additions /= 2;
+
+	}
+
+
+	/*
+	 * Each row uses its own 4 of the 16 counters of a long, so the rows of
+	 * one key never share a counter.
+	 *
+	 * */
+
+	private static int counterShift(int row, int h) {
+
+		return ((row << 2) + ((h >>> 30) & 3)) << 2;
+
+	}
+
+}
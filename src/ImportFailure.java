@@ -0,0 +1,43 @@
+/*
+ * A field of a record that did not pass validation during an import (see
+ * AuthorImporter): the position of the record in its batch, the name of
+ * the field and its value.
+ * 
+ * */
+
+public class ImportFailure {
+	
+	private int record;
+	private String field;
+	private Object value;
+	
+	
+	public ImportFailure(int record, String field, Object value) {
+		
+		this.record = record;
+		this.field = field;
+		this.value = value;
+		
+	}
+	
+	
+	public int getRecord() {
+		return this.record;
+	}
+	
+	public String getField() {
+		return this.field;
+	}
+	
+	public Object getValue() {
+		return this.value;
+	}
+	
+	
+	public String toString() {
+		
+		return "record " + this.record + ": invalid " + this.field + " \"" + this.value + "\"";
+		
+	}
+	
+}
@@ -0,0 +1,13 @@
+/*
+ * Is notified by an InvertedIndex whenever a document has been added, e.g.
+ * to invalidate cached query results (see QueryCache). Listeners are called
+ * by the thread that adds the document, after the document has been
+ * indexed.
+ *
+ * */
+
+public interface IndexListener {
+
+	public void documentAdded(InvertedIndex index, int docId, Document document);
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Collects metrics of the ingestion path, i.e. of Document.addContent: the
+ * number of documents, tokens, new stems and suffix hits (tokens whose
+ * suffix was cut off), and the time spent in each stage - tokenize, stem
+ * and count (adding the stem to the WordCountsArray) - in nanoseconds.
+ * 
+ * Metrics are switched on with Document.setIngestionMetrics(metrics) and
+ * off again with Document.setIngestionMetrics(null). While switched off,
+ * ingestion does not measure anything. Documents add their values once 
+ * they are complete, and the counters are LongAdders, so documents that 
+ * are created in parallel do not block each other.
+ * 
+ * */
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class IngestionMetrics {
+	
+	private final LongAdder documents = new LongAdder();
+	private final LongAdder tokens = new LongAdder();
+	private final LongAdder stems = new LongAdder();
+	private final LongAdder suffixHits = new LongAdder();
+	private final LongAdder tokenizeNanos = new LongAdder();
+	private final LongAdder stemNanos = new LongAdder();
+	private final LongAdder countNanos = new LongAdder();
+	
+	
+	/* 
+	 * Adds the values measured for one document.
+	 * 
+	 * */
+	
+	void record(long tokens, long stems, long suffixHits, long tokenizeNanos, long stemNanos, long countNanos) {
+		
+		this.documents.increment();
+		this.tokens.add(tokens);
+		this.stems.add(stems);
+		this.suffixHits.add(suffixHits);
+		this.tokenizeNanos.add(tokenizeNanos);
+		this.stemNanos.add(stemNanos);
+		this.countNanos.add(countNanos);
+		
+	}
+	
+	
+	public long getDocuments() {
+		return this.documents.sum();
+	}
+	
+	public long getTokens() {
+		return this.tokens.sum();
+	}
+	
+	public long getStems() {
+		return this.stems.sum();
+	}
+	
+	public long getSuffixHits() {
+		return this.suffixHits.sum();
+	}
+	
+	public long getTokenizeNanos() {
+		return this.tokenizeNanos.sum();
+	}
+	
+	public long getStemNanos() {
+		return this.stemNanos.sum();
+	}
+	
+	public long getCountNanos() {
+		return this.countNanos.sum();
+	}
+	
+	
+	/* 
+	 * Sets all values back to 0.
+	 * 
+	 * */
+	
+	public void reset() {
+		
+		this.documents.reset();
+		this.tokens.reset();
+		this.stems.reset();
+		this.suffixHits.reset();
+		this.tokenizeNanos.reset();
+		this.stemNanos.reset();
+		this.countNanos.reset();
+		
+	}
+	
+	
+	public void exportTo(MetricsSink sink) {
+		
+		if(sink == null) return;
+		
+		sink.report("ingestion.documents", this.getDocuments());
+		sink.report("ingestion.tokens", this.getTokens());
+		sink.report("ingestion.stems", this.getStems());
+		sink.report("ingestion.suffixHits", this.getSuffixHits());
+		sink.report("ingestion.tokenizeNanos", this.getTokenizeNanos());
+		sink.report("ingestion.stemNanos", this.getStemNanos());
+		sink.report("ingestion.countNanos", this.getCountNanos());
+		
+	}
+	
+	
+	public String toString() {
+		
+		return "documents: " + this.getDocuments() + ", tokens: " + this.getTokens() + ", stems: " 
+				+ this.getStems() + ", suffix hits: " + this.getSuffixHits() + ", tokenize: " 
+				+ this.getTokenizeNanos() + " ns, stem: " + this.getStemNanos() + " ns, count: " 
+				+ this.getCountNanos() + " ns";
+		
+	}
+	
+}
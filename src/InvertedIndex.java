@@ -0,0 +1,709 @@
+/*
+ * The inverted index of the search engine. Each Document added to the index
+ * receives an id (its position in the index) and each word stem of its
+ * WordCountsArray is mapped to a PostingList, which contains the ids of all
+ * documents that contain the stem. Looking up a single stem therefore only
+ * touches the documents that actually contain it, instead of scanning the
+ * word counts of every document.
+ *
+ * For ranking, the index also keeps the length (number of words) of every
+ * document. Lengths are stored as one byte each (see encodeLength), which
+ * is precise enough for length normalization and lets a scorer compute
+ * the norms of all possible lengths once per query in a table of 256
+ * entries, instead of once per document.
+ *
+ * Stems are identified by their id in a TermDictionary (by default the
+ * global one, which the WordCountsArrays of the documents use as well), so
+ * the posting lists are simply an array indexed by term id. The word counts
+ * of every document are frozen into a TermVector over these ids when the
+ * document is added.
+ *
+ * The release date of every document is kept as its epoch day (see
+ * Date.getEpochDay) in a column indexed by doc id, from which a
+ * DateRangeIndex can be built for date filters. It is the release date at
+ * the time the document was added.
+ *
+ * The positions of the words of a document are copied from its
+ * TermPositions into the posting lists of its stems, still encoded, so a
+ * PhraseQuery reads them from the postings it visits anyway (see
+ * PostingsCursor.positions). The document drops its own TermPositions
+ * then, so the positions are only held once, in the postings.
+ *
+ * IndexListeners (e.g. a QueryCache) are notified of every added document.
+ *
+ * */
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+public class InvertedIndex {
+
+	private Document[] documents;
+	private IdentityHashMap<Document, Integer> docIds;
+	private int size;
+	private TermDictionary dictionary;
+	private PostingList[] postings;
+	private int vocabularySize;
+	private TermVector[] vectors;
+	private byte[] lengthCodes;
+	private int[] releaseDays;
+	private long totalLength;
+	private volatile IndexListener[] listeners;
+
+
+	public InvertedIndex() {
+
+		this(TermDictionary.getGlobal());
+
+	}
+
+
+	public InvertedIndex(TermDictionary dictionary) {
+
+		this.dictionary = (dictionary == null) ? TermDictionary.getGlobal() : dictionary;
+		this.documents = new Document[16];
+		this.docIds = new IdentityHashMap<Document, Integer>();
+		this.vectors = new TermVector[16];
+		this.lengthCodes = new byte[16];
+		this.releaseDays = new int[16];
+		this.size = 0;
+		this.totalLength = 0;
+		this.postings = new PostingList[16];
+		this.vocabularySize = 0;
+		this.listeners = new IndexListener[0];
+
+	}
+
+
+	/*
+	 * Adds the document to the index and returns its id. Returns -1 if
+	 * document is null.
+	 *
+	 * */
+
+	public int addDocument(Document document) {
+
+		if(document == null) {
+
+			return -1;
+
+		}
+
+		if(this.size == this.documents.length) {
+
+			increaseSize();
+
+		}
+
+		int docId = this.size;
+		this.documents[this.size++] = document;
+		this.docIds.put(document, docId);
+
+		WordCountsArray wca = document.getWordCounts();
+		TermPositions positions = document.getPositions();
+		boolean hasPositions = positions.size() == wca.size();
+		int[] ids = new int[wca.size()];
+		int[] counts = new int[wca.size()];
+		int length = 0;
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			ids[i] = this.addTerm(wca, i);
+			counts[i] = wca.getCount(i);
+			length += counts[i];
+
+			if(hasPositions) {
+
+				this.postings[ids[i]].add(docId, counts[i], positions.getData(), positions.getOffset(i),
+						positions.getOffset(i + 1));
+
+			}
+			else {
+
+				this.postings[ids[i]].add(docId, counts[i]);
+
+			}
+
+		}
+
+		this.vectors[docId] = new TermVector(ids, counts, ids.length);
+		document.releasePositions();
+
+		this.lengthCodes[docId] = (byte) encodeLength(length);
+		this.totalLength += length;
+		this.releaseDays[docId] = document.getReleaseDate().getEpochDay();
+
+		IndexListener[] listeners = this.listeners;
+
+		for(int i = 0; i < listeners.length; i++) {
+
+			listeners[i].documentAdded(this, docId, document);
+
+		}
+
+		return docId;
+
+	}
+
+
+	/*
+	 * Returns a new index with the documents of a followed by those of b,
+	 * which must use the same dictionary. The documents are not analyzed
+	 * again: the posting lists of b are appended to copies of those of a,
+	 * with the doc ids shifted by a.size(), and the columns are copied.
+	 * The lists of stems that b does not contain are shared, so neither a
+	 * nor the result may be added to afterwards. Listeners are not
+	 * notified.
+	 *
+	 * */
+
+	static InvertedIndex merge(InvertedIndex a, InvertedIndex b) {
+
+		if(a.dictionary != b.dictionary) {
+
+			throw new IllegalArgumentException("Indexes with different dictionaries");
+
+		}
+
+		InvertedIndex merged = new InvertedIndex(a.dictionary);
+		int size = a.size + b.size;
+		int length = Math.max(16, size);
+
+		merged.documents = Arrays.copyOf(a.documents, length);
+		merged.vectors = Arrays.copyOf(a.vectors, length);
+		merged.lengthCodes = Arrays.copyOf(a.lengthCodes, length);
+		merged.releaseDays = Arrays.copyOf(a.releaseDays, length);
+
+		System.arraycopy(b.documents, 0, merged.documents, a.size, b.size);
+		System.arraycopy(b.vectors, 0, merged.vectors, a.size, b.size);
+		System.arraycopy(b.lengthCodes, 0, merged.lengthCodes, a.size, b.size);
+		System.arraycopy(b.releaseDays, 0, merged.releaseDays, a.size, b.size);
+
+		merged.docIds.putAll(a.docIds);
+
+		for(int docId = 0; docId < b.size; docId++) {
+
+			merged.docIds.put(b.documents[docId], a.size + docId);
+
+		}
+
+		merged.size = size;
+		merged.totalLength = a.totalLength + b.totalLength;
+		merged.postings = Arrays.copyOf(a.postings, Math.max(a.postings.length, b.postings.length));
+		merged.vocabularySize = a.vocabularySize;
+
+		for(int termId = 0; termId < b.postings.length; termId++) {
+
+			PostingList list = b.postings[termId];
+
+			if(list == null) {
+
+				continue;
+
+			}
+
+			if(merged.postings[termId] == null) {
+
+				merged.postings[termId] = new PostingList(4);
+				merged.vocabularySize++;
+
+			}
+			else {
+
+				merged.postings[termId] = merged.postings[termId].copy();
+
+			}
+
+			merged.postings[termId].append(list, a.size);
+
+		}
+
+		return merged;
+
+	}
+
+
+	/*
+	 * Registers listener to be notified of every document added from now
+	 * on.
+	 *
+	 * */
+
+	public synchronized void addListener(IndexListener listener) {
+
+		if(listener == null) {
+
+			return;
+
+		}
+
+		IndexListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+		this.listeners = listeners;
+
+	}
+
+
+	public synchronized void removeListener(IndexListener listener) {
+
+		for(int i = 0; i < this.listeners.length; i++) {
+
+			if(this.listeners[i] == listener) {
+
+				IndexListener[] listeners = new IndexListener[this.listeners.length - 1];
+				System.arraycopy(this.listeners, 0, listeners, 0, i);
+				System.arraycopy(this.listeners, i + 1, listeners, i, listeners.length - i);
+				this.listeners = listeners;
+
+				return;
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the term id of the word at the given index of wca, after
+	 * creating an empty posting list for it if it is new to this index.
+	 *
+	 * */
+
+	private int addTerm(WordCountsArray wca, int index) {
+
+		int termId;
+
+		if(wca.getDictionary() == this.dictionary) {
+
+			termId = wca.getTermId(index);
+
+		}
+		else {
+
+			termId = this.dictionary.add(wca.getWord(index));
+
+		}
+
+		if(termId >= this.postings.length) {
+
+			int length = this.postings.length * 2;
+
+			while(length <= termId) {
+
+				length *= 2;
+
+			}
+
+			this.postings = Arrays.copyOf(this.postings, length);
+
+		}
+
+		if(this.postings[termId] == null) {
+
+			this.postings[termId] = new PostingList(4);
+			this.vocabularySize++;
+
+		}
+
+		return termId;
+
+	}
+
+
+	/*
+	 * Helper method for addDocument(document).
+	 *
+	 * */
+
+	private void increaseSize() {
+
+		Document[] tmp = new Document[this.documents.length * 2];
+		TermVector[] tmpVectors = new TermVector[this.documents.length * 2];
+		byte[] tmpLengths = new byte[this.documents.length * 2];
+		int[] tmpDays = new int[this.documents.length * 2];
+
+		System.arraycopy(this.documents, 0, tmp, 0, this.size);
+		System.arraycopy(this.vectors, 0, tmpVectors, 0, this.size);
+		System.arraycopy(this.lengthCodes, 0, tmpLengths, 0, this.size);
+		System.arraycopy(this.releaseDays, 0, tmpDays, 0, this.size);
+
+		this.documents = tmp;
+		this.vectors = tmpVectors;
+		this.lengthCodes = tmpLengths;
+		this.releaseDays = tmpDays;
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the index.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.size;
+
+	}
+
+
+	public Document getDocument(int docId) {
+
+		if(docId < 0 || docId >= this.size) {
+
+			return null;
+
+		}
+
+		return this.documents[docId];
+
+	}
+
+
+	/*
+	 * Returns the id of document (the same object, not an equal one), or
+	 * -1 if it has not been added to the index. If it has been added more
+	 * than once, the id of the last time is returned.
+	 *
+	 * */
+
+	public int getDocId(Document document) {
+
+		Integer docId = this.docIds.get(document);
+
+		return (docId == null) ? -1 : docId;
+
+	}
+
+
+	/*
+	 * Returns the posting list of the given stem, or null if no document
+	 * in the index contains the stem.
+	 *
+	 * */
+
+	public PostingList getPostings(String stem) {
+
+		return this.getPostings(this.getTermId(stem));
+
+	}
+
+
+	/*
+	 * Returns the posting list of the term with the given id, or null if
+	 * there is no such term.
+	 *
+	 * */
+
+	public PostingList getPostings(int termId) {
+
+		if(termId < 0 || termId >= this.postings.length) {
+
+			return null;
+
+		}
+
+		return this.postings[termId];
+
+	}
+
+
+	/*
+	 * Returns the term id of stem, or -1 if no document contains stem.
+	 *
+	 * */
+
+	public int getTermId(String stem) {
+
+		int termId = this.dictionary.getId(stem);
+
+		return (this.getPostings(termId) == null) ? -1 : termId;
+
+	}
+
+
+	/*
+	 * Returns the stem with the given term id, or null if no document in
+	 * this index contains it.
+	 *
+	 * */
+
+	public String getTerm(int termId) {
+
+		if(this.getPostings(termId) == null) {
+
+			return null;
+
+		}
+
+		return this.dictionary.getTerm(termId);
+
+	}
+
+
+	public TermDictionary getDictionary() {
+
+		return this.dictionary;
+
+	}
+
+
+	/*
+	 * Returns the frozen word counts of the document.
+	 *
+	 * */
+
+	public TermVector getTermVector(int docId) {
+
+		if(docId < 0 || docId >= this.size) {
+
+			return null;
+
+		}
+
+		return this.vectors[docId];
+
+	}
+
+
+	/*
+	 * Returns the positions at which stem occurs in the content of the
+	 * document, decoded from the posting list of stem, in ascending order.
+	 * Returns an empty array if the document does not contain stem.
+	 *
+	 * */
+
+	public int[] getPositions(int docId, String stem) {
+
+		PostingList list = this.getPostings(stem);
+
+		if(list == null || docId < 0) {
+
+			return new int[0];
+
+		}
+
+		PostingsCursor cursor = list.cursor();
+
+		return (cursor.advance(docId) == docId) ? cursor.positions() : new int[0];
+
+	}
+
+
+	/*
+	 * Creates the TermVector of word counts over the term ids of this
+	 * index, e.g. for a document that has not been added. Stems the index
+	 * does not contain are left out, as they cannot match any document.
+	 *
+	 * */
+
+	public TermVector toTermVector(WordCountsArray wca) {
+
+		int[] ids = new int[wca.size()];
+		int[] counts = new int[wca.size()];
+		int n = 0;
+
+		boolean sameDictionary = wca.getDictionary() == this.dictionary;
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			int termId = sameDictionary ? wca.getTermId(i) : this.dictionary.getId(wca.getWord(i));
+
+			if(this.getPostings(termId) != null) {
+
+				ids[n] = termId;
+				counts[n] = wca.getCount(i);
+				n++;
+
+			}
+
+		}
+
+		return new TermVector(ids, counts, n);
+
+	}
+
+
+	/*
+	 * Same as getPostings(stem), but takes an unprocessed word and stems it
+	 * the same way the content of a Document is stemmed.
+	 *
+	 * */
+
+	public PostingList lookup(String word) {
+
+		if(word == null) {
+
+			return null;
+
+		}
+
+		return this.getPostings(Document.stem(word));
+
+	}
+
+
+	/*
+	 * Returns the number of documents containing the given stem.
+	 *
+	 * */
+
+	public int getDocumentFrequency(String stem) {
+
+		PostingList list = this.getPostings(stem);
+
+		return (list == null) ? 0 : list.size();
+
+	}
+
+
+	/*
+	 * Returns the number of different stems in the index.
+	 *
+	 * */
+
+	public int getVocabularySize() {
+
+		return this.vocabularySize;
+
+	}
+
+
+	/*
+	 * Returns the encoded length of the document (see encodeLength), or 0
+	 * if docId is invalid.
+	 *
+	 * */
+
+	public int getLengthCode(int docId) {
+
+		if(docId < 0 || docId >= this.size) {
+
+			return 0;
+
+		}
+
+		return this.lengthCodes[docId] & 0xFF;
+
+	}
+
+
+	/*
+	 * Returns the number of words of the document, rounded the same way
+	 * as by encodeLength.
+	 *
+	 * */
+
+	public int getDocumentLength(int docId) {
+
+		return decodeLength(this.getLengthCode(docId));
+
+	}
+
+
+	/*
+	 * The encoded lengths of all documents, by doc id. Only the first
+	 * size() entries are valid. Returns the array itself, so it must not
+	 * be changed.
+	 *
+	 * */
+
+	byte[] getLengthCodes() {
+
+		return this.lengthCodes;
+
+	}
+
+
+	/*
+	 * Returns the release date of the document with the given id as epoch
+	 * day, or Integer.MIN_VALUE if there is no such document.
+	 *
+	 * */
+
+	public int getReleaseDay(int docId) {
+
+		if(docId < 0 || docId >= this.size) {
+
+			return Integer.MIN_VALUE;
+
+		}
+
+		return this.releaseDays[docId];
+
+	}
+
+
+	/*
+	 * The release days of all documents, by doc id, like getLengthCodes.
+	 *
+	 * */
+
+	int[] getReleaseDays() {
+
+		return this.releaseDays;
+
+	}
+
+
+	public long getTotalLength() {
+
+		return this.totalLength;
+
+	}
+
+
+	public float getAverageDocumentLength() {
+
+		return (this.size == 0) ? 0 : (float) ((double) this.totalLength / this.size);
+
+	}
+
+
+	/*
+	 * Encodes a document length into one byte (as an int between 0 and
+	 * 255). Lengths below 64 are stored exactly, larger ones with three bits
+	 * of precision, i.e. rounded down by at most 12.5 percent.
+	 *
+	 * */
+
+	static int encodeLength(int length) {
+
+		if(length < 64) {
+
+			return (length < 0) ? 0 : length;
+
+		}
+
+		int exponent = 31 - Integer.numberOfLeadingZeros(length);
+
+		if(exponent > 29) {
+
+			return 255;
+
+		}
+
+		int mantissa = (length >>> (exponent - 3)) & 7;
+
+		return 64 + (exponent - 6) * 8 + mantissa;
+
+	}
+
+
+	static int decodeLength(int code) {
+
+		if(code < 64) {
+
+			return code;
+
+		}
+
+		int exponent = 6 + (code - 64) / 8;
+		int mantissa = (code - 64) % 8;
+
+		return (8 + mantissa) << (exponent - 3);
+
+	}
+
+}
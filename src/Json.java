@@ -0,0 +1,365 @@
+/*
+ * The little JSON the SearchServer needs: appending quoted strings to a
+ * StringBuilder, and parsing request bodies into Maps (objects), Lists
+ * (arrays), Strings, Doubles (numbers), Booleans and null. Parse errors
+ * are reported as IllegalArgumentException. Objects and arrays may be
+ * nested at most MAX_DEPTH levels deep, so a body like "[[[[..." cannot
+ * overflow the stack of the recursive parser.
+ *
+ * */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Json {
+
+	static final int MAX_DEPTH = 256;
+
+	private String text;
+	private int position;
+	private int depth;
+
+
+	private Json(String text) {
+
+		this.text = text;
+		this.position = 0;
+
+	}
+
+
+	/*
+	 * Appends s as a JSON string (in quotes, escaped), or null.
+	 *
+	 * */
+
+	public static StringBuilder appendString(StringBuilder out, String s) {
+
+		if(s == null) {
+
+			return out.append("null");
+
+		}
+
+		out.append('"');
+
+		for(int i = 0; i < s.length(); i++) {
+
+			char c = s.charAt(i);
+
+			switch(c) {
+
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if(c < 0x20) {
+						out.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						out.append(c);
+					}
+
+			}
+
+		}
+
+		return out.append('"');
+
+	}
+
+
+	/*
+	 * Parses text, which must contain exactly one JSON value.
+	 *
+	 * */
+
+	public static Object parse(String text) {
+
+		if(text == null) {
+
+			throw new IllegalArgumentException("No JSON");
+
+		}
+
+		Json json = new Json(text);
+		Object value = json.readValue();
+		json.skipWhitespace();
+
+		if(json.position != text.length()) {
+
+			throw json.error("Unexpected text after the value");
+
+		}
+
+		return value;
+
+	}
+
+
+	private Object readValue() {
+
+		this.skipWhitespace();
+
+		if(this.position >= this.text.length()) {
+
+			throw this.error("Unexpected end");
+
+		}
+
+		char c = this.text.charAt(this.position);
+
+		if((c == '{' || c == '[') && this.depth == MAX_DEPTH) {
+
+			throw this.error("Too deeply nested");
+
+		}
+
+		switch(c) {
+
+			case '{': return this.readObject();
+			case '[': return this.readArray();
+			case '"': return this.readString();
+			case 't': return this.readLiteral("true", Boolean.TRUE);
+			case 'f': return this.readLiteral("false", Boolean.FALSE);
+			case 'n': return this.readLiteral("null", null);
+			default: return this.readNumber();
+
+		}
+
+	}
+
+
+	private Map<String, Object> readObject() {
+
+		Map<String, Object> object = new LinkedHashMap<String, Object>();
+		this.position++;
+		this.skipWhitespace();
+
+		if(this.peek() == '}') {
+
+			this.position++;
+			return object;
+
+		}
+
+		this.depth++;
+
+		while(true) {
+
+			this.skipWhitespace();
+
+			if(this.peek() != '"') {
+
+				throw this.error("Expected a key");
+
+			}
+
+			String key = this.readString();
+			this.skipWhitespace();
+			this.expect(':');
+			object.put(key, this.readValue());
+			this.skipWhitespace();
+
+			if(this.peek() == ',') {
+
+				this.position++;
+
+			}
+			else {
+
+				this.expect('}');
+				this.depth--;
+				return object;
+
+			}
+
+		}
+
+	}
+
+
+	private List<Object> readArray() {
+
+		List<Object> array = new ArrayList<Object>();
+		this.position++;
+		this.skipWhitespace();
+
+		if(this.peek() == ']') {
+
+			this.position++;
+			return array;
+
+		}
+
+		this.depth++;
+
+		while(true) {
+
+			array.add(this.readValue());
+			this.skipWhitespace();
+
+			if(this.peek() == ',') {
+
+				this.position++;
+
+			}
+			else {
+
+				this.expect(']');
+				this.depth--;
+				return array;
+
+			}
+
+		}
+
+	}
+
+
+	private String readString() {
+
+		StringBuilder s = new StringBuilder();
+		this.position++;
+
+		while(true) {
+
+			if(this.position >= this.text.length()) {
+
+				throw this.error("Unterminated string");
+
+			}
+
+			char c = this.text.charAt(this.position++);
+
+			if(c == '"') {
+
+				return s.toString();
+
+			}
+
+			if(c != '\\') {
+
+				s.append(c);
+				continue;
+
+			}
+
+			if(this.position >= this.text.length()) {
+
+				throw this.error("Unterminated string");
+
+			}
+
+			char escaped = this.text.charAt(this.position++);
+
+			switch(escaped) {
+
+				case '"': case '\\': case '/': s.append(escaped); break;
+				case 'b': s.append('\b'); break;
+				case 'f': s.append('\f'); break;
+				case 'n': s.append('\n'); break;
+				case 'r': s.append('\r'); break;
+				case 't': s.append('\t'); break;
+				case 'u':
+					if(this.position + 4 > this.text.length()) {
+						throw this.error("Invalid escape");
+					}
+					try {
+						s.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+					}
+					catch(NumberFormatException e) {
+						throw this.error("Invalid escape");
+					}
+					this.position += 4;
+					break;
+				default: throw this.error("Invalid escape");
+
+			}
+
+		}
+
+	}
+
+
+	private Double readNumber() {
+
+		int start = this.position;
+
+		while(this.position < this.text.length() && "+-0123456789.eE".indexOf(this.text.charAt(this.position)) >= 0) {
+
+			this.position++;
+
+		}
+
+		try {
+
+			return Double.valueOf(this.text.substring(start, this.position));
+
+		}
+		catch(NumberFormatException e) {
+
+			throw this.error("Invalid value");
+
+		}
+
+	}
+
+
+	private Object readLiteral(String literal, Object value) {
+
+		if(!this.text.startsWith(literal, this.position)) {
+
+			throw this.error("Invalid value");
+
+		}
+
+		this.position += literal.length();
+
+		return value;
+
+	}
+
+
+	private void skipWhitespace() {
+
+		while(this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+
+			this.position++;
+
+		}
+
+	}
+
+
+	private char peek() {
+
+		return (this.position < this.text.length()) ? this.text.charAt(this.position) : 0;
+
+	}
+
+
+	private void expect(char c) {
+
+		if(this.peek() != c) {
+
+			throw this.error("Expected '" + c + "'");
+
+		}
+
+		this.position++;
+
+	}
+
+
+	private IllegalArgumentException error(String message) {
+
+		return new IllegalArgumentException(message + " at position " + this.position);
+
+	}
+
+}
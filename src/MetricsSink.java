@@ -0,0 +1,13 @@
+/*
+ * Receives the values of a metrics object, e.g. IngestionMetrics, so that
+ * they can be exported (to a log file, a monitoring system, ...) without the
+ * metrics having to know where they go. Each value is reported with a name
+ * such as "ingestion.tokens".
+ * 
+ * */
+
+public interface MetricsSink {
+	
+	public void report(String name, long value);
+	
+}
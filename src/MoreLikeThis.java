@@ -0,0 +1,201 @@
+/*
+ * Finds the documents of an InvertedIndex that are most similar to a given
+ * document, e.g. for recommendations or to check for duplicates. Documents
+ * are compared by the cosine similarity of their TermVectors.
+ *
+ * Comparing a document with every other document would touch the whole
+ * index, so the candidates are pruned first: only the most characteristic
+ * terms of the document (highest weight * IDF, at most maxQueryTerms of
+ * them) are looked up, and only the documents in their posting lists are
+ * compared. A document that shares none of these terms is very unlikely
+ * to be among the most similar ones.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class MoreLikeThis {
+
+	private InvertedIndex index;
+	private int maxQueryTerms;
+
+
+	public MoreLikeThis(InvertedIndex index) {
+
+		this(index, 25);
+
+	}
+
+
+	public MoreLikeThis(InvertedIndex index, int maxQueryTerms) {
+
+		this.index = index;
+		this.maxQueryTerms = (maxQueryTerms < 1) ? 1 : maxQueryTerms;
+
+	}
+
+
+	/*
+	 * Returns the k documents most similar to the document with the given
+	 * id, most similar first. The document itself is not part of the result.
+	 *
+	 * */
+
+	public SearchResult[] similarTo(int docId, int k) {
+
+		TermVector vector = this.index.getTermVector(docId);
+
+		if(vector == null) {
+
+			return new SearchResult[0];
+
+		}
+
+		return this.similarTo(vector, docId, k);
+
+	}
+
+
+	/*
+	 * Same as similarTo(docId, k) for a document that does not have to be
+	 * part of the index, e.g. to check a new document for duplicates before
+	 * it is added.
+	 *
+	 * */
+
+	public SearchResult[] similarTo(Document document, int k) {
+
+		if(document == null) {
+
+			return new SearchResult[0];
+
+		}
+
+		return this.similarTo(this.index.toTermVector(document.getWordCounts()), -1, k);
+
+	}
+
+
+	private SearchResult[] similarTo(TermVector vector, int exclude, int k) {
+
+		int[] queryTerms = this.selectQueryTerms(vector);
+		int[] candidates = this.candidates(queryTerms);
+
+		TopKHeap heap = new TopKHeap(k);
+
+		for(int i = 0; i < candidates.length; i++) {
+
+			if(candidates[i] != exclude) {
+
+				heap.offer(candidates[i], vector.cosine(this.index.getTermVector(candidates[i])));
+
+			}
+
+		}
+
+		float[] scores = new float[heap.size()];
+		int[] docIds = heap.drain(scores);
+		SearchResult[] results = new SearchResult[docIds.length];
+
+		for(int i = 0; i < docIds.length; i++) {
+
+			results[i] = new SearchResult(docIds[i], this.index.getDocument(docIds[i]), scores[i]);
+
+		}
+
+		return results;
+
+	}
+
+
+	/*
+	 * Returns the ids of the (at most maxQueryTerms) terms of vector with
+	 * the highest weight * IDF. Terms that occur in every document do not
+	 * tell documents apart and are never selected.
+	 *
+	 * */
+
+	private int[] selectQueryTerms(TermVector vector) {
+
+		TopKHeap heap = new TopKHeap(this.maxQueryTerms);
+		int docCount = this.index.size();
+
+		for(int i = 0; i < vector.size(); i++) {
+
+			int docFreq = this.index.getPostings(vector.getTermId(i)).size();
+			float idf = (float) Math.log((double) docCount / docFreq);
+
+			if(idf > 0) {
+
+				/* the heap keeps the positions in the vector */
+
+				heap.offer(i, vector.getWeight(i) * idf);
+
+			}
+
+		}
+
+		int[] positions = heap.drain(null);
+		int[] termIds = new int[positions.length];
+
+		for(int i = 0; i < positions.length; i++) {
+
+			termIds[i] = vector.getTermId(positions[i]);
+
+		}
+
+		return termIds;
+
+	}
+
+
+	/*
+	 * Returns the ids of all documents that contain at least one of the
+	 * terms, sorted and without duplicates.
+	 *
+	 * */
+
+	private int[] candidates(int[] termIds) {
+
+		int total = 0;
+
+		for(int i = 0; i < termIds.length; i++) {
+
+			total += this.index.getPostings(termIds[i]).size();
+
+		}
+
+		int[] docIds = new int[total];
+		int n = 0;
+
+		for(int i = 0; i < termIds.length; i++) {
+
+			PostingsCursor cursor = this.index.getPostings(termIds[i]).cursor();
+
+			for(int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+
+				docIds[n++] = docId;
+
+			}
+
+		}
+
+		Arrays.sort(docIds);
+
+		int unique = 0;
+
+		for(int i = 0; i < n; i++) {
+
+			if(unique == 0 || docIds[unique - 1] != docIds[i]) {
+
+				docIds[unique++] = docIds[i];
+
+			}
+
+		}
+
+		return Arrays.copyOf(docIds, unique);
+
+	}
+
+}
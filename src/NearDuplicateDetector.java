@@ -0,0 +1,428 @@
+/*
+ * Finds documents whose content is (almost) the same as that of a document
+ * in an InvertedIndex, e.g. texts that are published again under another
+ * title, so they can be dropped before they fill the index with copies.
+ *
+ * Every document gets a 64-bit SimHash fingerprint of its stems: each stem
+ * is hashed to 64 bits, and bit i of the fingerprint is set if the stems
+ * whose hash has bit i set outweigh those whose hash does not (weights are
+ * 1 + ln(count), as in TermVector). Similar contents give fingerprints
+ * that differ in only a few bits; two documents are near-duplicates if
+ * their fingerprints differ in at most maxDistance (at most 3) bits.
+ *
+ * To find them without comparing a fingerprint with all others, the
+ * fingerprints are split into 4 bands of 16 bits, and each band is a key
+ * into its own table (locality sensitive hashing). Two fingerprints that
+ * differ in at most 3 bits agree completely in at least one band, so only
+ * the documents in the 4 buckets of a fingerprint have to be compared,
+ * and none is missed.
+ *
+ * A fingerprint of a few stems says little: an empty content (or a
+ * document restored from a Segment without word counts) has fingerprint
+ * 0, and two documents with one or two stems collide as easily. Documents
+ * with fewer than MIN_STEMS distinct stems are therefore never
+ * fingerprinted into the tables, never reported as duplicates and always
+ * added to the index.
+ *
+ * The detector registers itself as a listener of the index, so every
+ * document added to the index is fingerprinted, also those that are added
+ * without addDocument. All methods are thread safe.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class NearDuplicateDetector implements IndexListener {
+
+	static final int BANDS = 4;
+	static final int BAND_BITS = 16;
+	static final int MAX_DISTANCE = BANDS - 1;
+	static final int MIN_STEMS = 8;
+
+	private InvertedIndex index;
+	private int maxDistance;
+
+	/* by doc id */
+
+	private long[] fingerprints;
+	private int[] duplicates;
+	private int size;
+
+	/*
+	 * per band, the last doc id in each bucket, and for each doc id the
+	 * previous one in its bucket (-1 ends a bucket)
+	 *
+	 * */
+
+	private int[][] heads;
+	private int[][] next;
+
+
+	public NearDuplicateDetector(InvertedIndex index) {
+
+		this(index, MAX_DISTANCE);
+
+	}
+
+
+	/*
+	 * Creates a detector for the documents of index. maxDistance is the
+	 * number of bits in which fingerprints of near-duplicates may differ,
+	 * at most 3.
+	 *
+	 * */
+
+	public NearDuplicateDetector(InvertedIndex index, int maxDistance) {
+
+		this.index = index;
+		this.maxDistance = Math.max(0, Math.min(MAX_DISTANCE, maxDistance));
+		this.fingerprints = new long[16];
+		this.duplicates = new int[16];
+		this.heads = new int[BANDS][1 << BAND_BITS];
+		this.next = new int[BANDS][16];
+
+		for(int band = 0; band < BANDS; band++) {
+
+			Arrays.fill(this.heads[band], -1);
+
+		}
+
+		synchronized(this) {
+
+			index.addListener(this);
+
+			for(int docId = this.size; docId < index.size(); docId++) {
+
+				this.register(docId, index.getDocument(docId));
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the SimHash fingerprint of the stems of document.
+	 *
+	 * */
+
+	public static long fingerprint(Document document) {
+
+		return fingerprint(document.getWordCounts());
+
+	}
+
+
+	public static long fingerprint(WordCountsArray wca) {
+
+		float[] weights = new float[64];
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			long hash = hash64(wca.getWord(i));
+			float weight = 1 + (float) Math.log(wca.getCount(i));
+
+			for(int bit = 0; bit < 64; bit++) {
+
+				weights[bit] += ((hash >>> bit) & 1) != 0 ? weight : -weight;
+
+			}
+
+		}
+
+		long fingerprint = 0;
+
+		for(int bit = 0; bit < 64; bit++) {
+
+			if(weights[bit] > 0) {
+
+				fingerprint |= 1L << bit;
+
+			}
+
+		}
+
+		return fingerprint;
+
+	}
+
+
+	/*
+	 * FNV-1a over the chars of word, followed by the finalizer of
+	 * MurmurHash3, so that every bit depends on every char.
+	 *
+	 * */
+
+	static long hash64(String word) {
+
+		long hash = 0xCBF29CE484222325L;
+
+		for(int i = 0; i < word.length(); i++) {
+
+			hash ^= word.charAt(i);
+			hash *= 0x100000001B3L;
+
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+
+	}
+
+
+	public static int distance(long a, long b) {
+
+		return Long.bitCount(a ^ b);
+
+	}
+
+
+	/*
+	 * Adds document to the index unless it is a near-duplicate of a
+	 * document that is already there. Returns the id of the new document,
+	 * or the id of the document it duplicates (whose duplicate count is
+	 * increased, see getDuplicateCount). Returns -1 if document is null.
+	 *
+	 * */
+
+	public synchronized int addDocument(Document document) {
+
+		if(document == null) {
+
+			return -1;
+
+		}
+
+		int original = this.findDuplicate(document);
+
+		if(original >= 0) {
+
+			this.duplicates[original]++;
+
+			return original;
+
+		}
+
+		return this.index.addDocument(document);
+
+	}
+
+
+	/*
+	 * Returns the id of an indexed document that is a near-duplicate of
+	 * document, or -1 if there is none or document has fewer than
+	 * MIN_STEMS distinct stems.
+	 *
+	 * */
+
+	public int findDuplicate(Document document) {
+
+		return !isFingerprinted(document) ? -1 : this.findDuplicate(fingerprint(document));
+
+	}
+
+
+	/*
+	 * Returns true if document has enough distinct stems for a meaningful
+	 * fingerprint.
+	 *
+	 * */
+
+	static boolean isFingerprinted(Document document) {
+
+		return document != null && document.getWordCounts().size() >= MIN_STEMS;
+
+	}
+
+
+	/*
+	 * Returns the id of the first indexed document whose fingerprint
+	 * differs from fingerprint in at most maxDistance bits, or -1.
+	 *
+	 * */
+
+	public synchronized int findDuplicate(long fingerprint) {
+
+		int best = -1;
+
+		for(int band = 0; band < BANDS; band++) {
+
+			int docId = this.heads[band][bandKey(fingerprint, band)];
+
+			while(docId >= 0) {
+
+				if((best < 0 || docId < best) && distance(fingerprint, this.fingerprints[docId]) <= this.maxDistance) {
+
+					best = docId;
+
+				}
+
+				docId = this.next[band][docId];
+
+			}
+
+		}
+
+		return best;
+
+	}
+
+
+	/*
+	 * Returns the ids of all indexed documents that are near-duplicates of
+	 * document, in ascending order (none if document has fewer than
+	 * MIN_STEMS distinct stems).
+	 *
+	 * */
+
+	public synchronized int[] findDuplicates(Document document) {
+
+		if(!isFingerprinted(document)) {
+
+			return new int[0];
+
+		}
+
+		long fingerprint = fingerprint(document);
+		int[] found = new int[8];
+		int n = 0;
+
+		for(int band = 0; band < BANDS; band++) {
+
+			for(int docId = this.heads[band][bandKey(fingerprint, band)]; docId >= 0; docId = this.next[band][docId]) {
+
+				if(distance(fingerprint, this.fingerprints[docId]) <= this.maxDistance) {
+
+					if(n == found.length) {
+
+						found = Arrays.copyOf(found, n * 2);
+
+					}
+
+					found[n++] = docId;
+
+				}
+
+			}
+
+		}
+
+		/* a document can be in the bucket of more than one band */
+
+		Arrays.sort(found, 0, n);
+		int unique = 0;
+
+		for(int i = 0; i < n; i++) {
+
+			if(unique == 0 || found[unique - 1] != found[i]) {
+
+				found[unique++] = found[i];
+
+			}
+
+		}
+
+		return Arrays.copyOf(found, unique);
+
+	}
+
+
+	/*
+	 * Returns how many near-duplicates of the document with the given id
+	 * have been dropped by addDocument.
+	 *
+	 * */
+
+	public synchronized int getDuplicateCount(int docId) {
+
+		return (docId < 0 || docId >= this.size) ? 0 : this.duplicates[docId];
+
+	}
+
+
+	/*
+	 * Returns the fingerprint of the indexed document with the given id,
+	 * 0 if it has fewer than MIN_STEMS distinct stems.
+	 *
+	 * */
+
+	public synchronized long getFingerprint(int docId) {
+
+		return (docId < 0 || docId >= this.size) ? 0 : this.fingerprints[docId];
+
+	}
+
+
+	/*
+	 * Called by the index for every new document.
+	 *
+	 * */
+
+	public synchronized void documentAdded(InvertedIndex index, int docId, Document document) {
+
+		if(docId == this.size) {
+
+			this.register(docId, document);
+
+		}
+
+	}
+
+
+	/*
+	 * Stores the fingerprint of the document with the given id and puts it
+	 * into its bucket of every band, unless it has too few stems.
+	 *
+	 * */
+
+	private void register(int docId, Document document) {
+
+		if(docId == this.fingerprints.length) {
+
+			this.fingerprints = Arrays.copyOf(this.fingerprints, docId * 2);
+			this.duplicates = Arrays.copyOf(this.duplicates, docId * 2);
+
+			for(int band = 0; band < BANDS; band++) {
+
+				this.next[band] = Arrays.copyOf(this.next[band], docId * 2);
+
+			}
+
+		}
+
+		this.size = docId + 1;
+
+		if(!isFingerprinted(document)) {
+
+			this.fingerprints[docId] = 0;
+			return;
+
+		}
+
+		long fingerprint = fingerprint(document);
+		this.fingerprints[docId] = fingerprint;
+
+		for(int band = 0; band < BANDS; band++) {
+
+			int key = bandKey(fingerprint, band);
+			this.next[band][docId] = this.heads[band][key];
+			this.heads[band][key] = docId;
+
+		}
+
+	}
+
+
+	private static int bandKey(long fingerprint, int band) {
+
+		return (int) (fingerprint >>> (band * BAND_BITS)) & ((1 << BAND_BITS) - 1);
+
+	}
+
+}
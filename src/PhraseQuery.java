@@ -0,0 +1,400 @@
+/*
+ * A query for words that occur next to each other in a document, in the
+ * given order ("schneller brauner fuchs"), or close to each other, if the
+ * query has a slop greater than 0.
+ *
+ * The slop is the number of moves the words of the phrase may be away from
+ * their places in the phrase, in total: with a slop of 1, "brauner fuchs"
+ * also matches "brauner alter fuchs", and with a slop of 2 also "fuchs
+ * brauner". Formally, a document matches if it has a position p[i] for
+ * every word i of the phrase such that the values p[i] - i lie within a
+ * window of at most slop + 1 consecutive numbers. A slop of 0 finds the
+ * exact phrase. A word that occurs more than once in the phrase needs a
+ * different position of the document for every occurrence.
+ *
+ * Matching intersects the posting lists of the stems with a PostingsCursor
+ * each: the cursor of the rarest stem proposes a document, and the others
+ * advance to it (skipping whole blocks, see PostingsCursor.advance); if one
+ * of them lands behind it, the rarest cursor advances there in turn. So
+ * only the documents that contain all stems are looked at, and only for
+ * those are the positions of the stems decoded from the postings. If all
+ * words of the phrase differ, the smallest window over the positions is
+ * searched by moving through the position lists side by side, always
+ * advancing the one with the smallest value. Otherwise every value p - i
+ * is tried as the start of the window, and the words take the first free
+ * position from there on.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class PhraseQuery {
+
+	private String[] stems;
+	private int slop;
+
+
+	/*
+	 * Creates a query for the words of phrase, stemmed like the content of
+	 * a document. Throws an IllegalArgumentException if phrase has no words
+	 * or slop is negative.
+	 *
+	 * */
+
+	public PhraseQuery(String phrase, int slop) {
+
+		this.stems = Document.stems(phrase);
+
+		if(this.stems.length == 0) {
+
+			throw new IllegalArgumentException("No words in phrase: " + phrase);
+
+		}
+
+		if(slop < 0) {
+
+			throw new IllegalArgumentException("Negative slop: " + slop);
+
+		}
+
+		this.slop = slop;
+
+	}
+
+
+	public String[] getStems() {
+
+		return this.stems.clone();
+
+	}
+
+
+	public int getSlop() {
+
+		return this.slop;
+
+	}
+
+
+	/*
+	 * Returns the ids of all documents of index that contain the phrase,
+	 * in ascending order.
+	 *
+	 * */
+
+	public int[] execute(InvertedIndex index) {
+
+		/* the distinct stems, and the slot of every word of the phrase among them */
+
+		String[] distinct = new String[this.stems.length];
+		int[] slots = new int[this.stems.length];
+		int count = 0;
+
+		for(int i = 0; i < this.stems.length; i++) {
+
+			int slot = 0;
+
+			while(slot < count && !distinct[slot].equals(this.stems[i])) {
+
+				slot++;
+
+			}
+
+			if(slot == count) {
+
+				distinct[count++] = this.stems[i];
+
+			}
+
+			slots[i] = slot;
+
+		}
+
+		/* their cursors, rarest first */
+
+		PostingList[] lists = new PostingList[count];
+		int[] order = new int[count];
+
+		for(int i = 0; i < count; i++) {
+
+			lists[i] = index.getPostings(distinct[i]);
+
+			if(lists[i] == null) {
+
+				return new int[0];
+
+			}
+
+			int j = i;
+
+			while(j > 0 && lists[order[j - 1]].size() > lists[i].size()) {
+
+				order[j] = order[j - 1];
+				j--;
+
+			}
+
+			order[j] = i;
+
+		}
+
+		PostingsCursor[] cursors = new PostingsCursor[count];
+
+		for(int i = 0; i < count; i++) {
+
+			cursors[i] = lists[order[i]].cursor();
+
+		}
+
+		int[] matches = new int[lists[order[0]].size()];
+		int size = 0;
+		int[][] positions = new int[count][];
+		int[][] phrase = new int[this.stems.length][];
+		int docId = cursors[0].nextDoc();
+
+		while(docId != PostingsCursor.NO_MORE_DOCS) {
+
+			int i = 1;
+
+			while(i < count && cursors[i].advance(docId) == docId) {
+
+				i++;
+
+			}
+
+			if(i < count) {
+
+				docId = cursors[0].advance(cursors[i].docId());
+				continue;
+
+			}
+
+			for(int c = 0; c < count; c++) {
+
+				positions[order[c]] = cursors[c].positions();
+
+			}
+
+			for(int w = 0; w < phrase.length; w++) {
+
+				phrase[w] = positions[slots[w]];
+
+			}
+
+			if(smallestWindow(phrase, slots, this.slop) <= this.slop) {
+
+				matches[size++] = docId;
+
+			}
+
+			docId = cursors[0].nextDoc();
+
+		}
+
+		return Arrays.copyOf(matches, size);
+
+	}
+
+
+	/*
+	 * Returns the smallest difference between the largest and the smallest
+	 * of the values positions[i][j] - i, with one j for every list i, or
+	 * Integer.MAX_VALUE if there is none. Lists i with the same slots[i]
+	 * (the same stem) must take different positions. Stops as soon as it
+	 * finds a difference of at most limit. Every list must be sorted.
+	 *
+	 * */
+
+	static int smallestWindow(int[][] positions, int[] slots, int limit) {
+
+		for(int i = 0; i < slots.length; i++) {
+
+			for(int j = i + 1; j < slots.length; j++) {
+
+				if(slots[i] == slots[j]) {
+
+					return smallestDistinctWindow(positions, slots, limit);
+
+				}
+
+			}
+
+		}
+
+		return smallestWindow(positions, limit);
+
+	}
+
+
+	/*
+	 * Same as smallestWindow(positions, slots, limit) for lists that
+	 * may take the same positions.
+	 *
+	 * */
+
+	static int smallestWindow(int[][] positions, int limit) {
+
+		int n = positions.length;
+		int[] next = new int[n];
+		int max = Integer.MIN_VALUE;
+
+		for(int i = 0; i < n; i++) {
+
+			if(positions[i].length == 0) {
+
+				return Integer.MAX_VALUE;
+
+			}
+
+			max = Math.max(max, positions[i][0] - i);
+
+		}
+
+		int best = Integer.MAX_VALUE;
+
+		while(true) {
+
+			/* the list at the smallest value */
+
+			int min = 0;
+
+			for(int i = 1; i < n; i++) {
+
+				if(positions[i][next[i]] - i < positions[min][next[min]] - min) {
+
+					min = i;
+
+				}
+
+			}
+
+			best = Math.min(best, max - (positions[min][next[min]] - min));
+
+			if(best <= limit || ++next[min] == positions[min].length) {
+
+				return best;
+
+			}
+
+			max = Math.max(max, positions[min][next[min]] - min);
+
+		}
+
+	}
+
+
+	/*
+	 * Tries every value positions[i][j] - i as the start of the window. The
+	 * lists take their first position at or after the start, in order,
+	 * and after the positions taken by earlier lists of the same slot.
+	 * Taking the first free position is never worse: any other choice can
+	 * be swapped into this one without widening the window.
+	 *
+	 * */
+
+	private static int smallestDistinctWindow(int[][] positions, int[] slots, int limit) {
+
+		int n = positions.length;
+		int[] taken = new int[n];
+		int best = Integer.MAX_VALUE;
+
+		for(int first = 0; first < n; first++) {
+
+			for(int j = 0; j < positions[first].length; j++) {
+
+				int start = positions[first][j] - first;
+				int max = Integer.MIN_VALUE;
+				int i = 0;
+
+				while(i < n) {
+
+					/* the last position taken by a list of the same slot */
+
+					int after = Integer.MIN_VALUE;
+
+					for(int k = 0; k < i; k++) {
+
+						if(slots[k] == slots[i]) {
+
+							after = taken[k];
+
+						}
+
+					}
+
+					int from = (after == Integer.MIN_VALUE) ? start + i : Math.max(start + i, after + 1);
+					int p = firstAtLeast(positions[i], from);
+
+					if(p < 0) {
+
+						break;
+
+					}
+
+					taken[i] = p;
+					max = Math.max(max, p - i);
+					i++;
+
+				}
+
+				if(i == n) {
+
+					best = Math.min(best, max - start);
+
+					if(best <= limit) {
+
+						return best;
+
+					}
+
+				}
+
+			}
+
+		}
+
+		return best;
+
+	}
+
+
+	/*
+	 * Returns the first value of the sorted list that is at least target,
+	 * or -1 if there is none.
+	 *
+	 * */
+
+	private static int firstAtLeast(int[] list, int target) {
+
+		int low = 0;
+		int high = list.length;
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(list[middle] < target) {
+
+				low = middle + 1;
+
+			}
+			else {
+
+				high = middle;
+
+			}
+
+		}
+
+		return (low < list.length) ? list[low] : -1;
+
+	}
+
+
+	public String toString() {
+
+		return "\"" + String.join(" ", this.stems) + "\"" + ((this.slop > 0) ? "~" + this.slop : "");
+
+	}
+
+}
@@ -0,0 +1,661 @@
+/*
+ * Each instance represents the posting list of one word stem: the ids of all
+ * documents that contain the stem, together with the stem's frequency (term
+ * frequency) within each of these documents. Document ids are stored in
+ * ascending order, because documents are added to the InvertedIndex one
+ * after the other.
+ *
+ * The postings are kept compressed, in the same blocks as in a
+ * CompressedPostingList: as soon as BLOCK_SIZE (128) postings have been
+ * added, they are encoded as one block of variable-byte doc deltas and
+ * frequencies, and its last doc id and start are recorded in a skip table.
+ * Only the postings after the last full block (the tail) are kept as plain
+ * ints, so appending stays cheap and the frequency of the last document can
+ * still be increased. Common stems take about two bytes per posting instead
+ * of eight.
+ *
+ * Every posting also has the positions of the stem in its document (see
+ * TermPositions), in a separate byte array: the length of the encoded
+ * positions in bytes, then the positions as deltas, both variable-byte
+ * integers. The position data of a block starts at an offset kept next to
+ * its skip entry, and the length in front of every posting lets a cursor
+ * step over the positions of the postings it does not need. Postings that
+ * are added without positions have a length of 0.
+ *
+ * The postings are read with a PostingsCursor (see cursor()), which decodes
+ * one block at a time and uses the skip table to jump over whole blocks.
+ * getDocId(index) and getFrequency(index) decode the block of index on
+ * every call and are only meant for occasional lookups.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class PostingList {
+
+	static final int BLOCK_SIZE = CompressedPostingList.BLOCK_SIZE;
+
+	private static final byte[] NO_DATA = new byte[0];
+	private static final int[] NO_BLOCKS = new int[0];
+
+	/* the full blocks, encoded one after the other */
+
+	private byte[] data;
+	private int dataSize;
+	private int[] blockLastDocIds;
+	private int[] blockStarts;
+	private int[] blockPositionStarts;
+	private int blockCount;
+
+	/* the positions of all postings, see above */
+
+	private byte[] positions;
+	private int positionsSize;
+	private int tailPositionsStart;
+	private int lastPositionsStart;
+
+	/* the postings after the last full block */
+
+	private int[] tailDocIds;
+	private int[] tailFrequencies;
+	private int tailSize;
+
+	private int size;
+
+
+	public PostingList(int initSize) {
+
+		initSize = Math.max(1, Math.min(BLOCK_SIZE, initSize));
+
+		this.data = NO_DATA;
+		this.blockLastDocIds = NO_BLOCKS;
+		this.blockStarts = NO_BLOCKS;
+		this.blockPositionStarts = NO_BLOCKS;
+		this.positions = NO_DATA;
+		this.tailDocIds = new int[initSize];
+		this.tailFrequencies = new int[initSize];
+		this.size = 0;
+
+	}
+
+
+	/*
+	 * Adds count to the frequency of the stem in the given document. A
+	 * document can only be appended after all documents with smaller ids,
+	 * so if docId is the last document of the list, its frequency is
+	 * increased instead of adding a second posting.
+	 *
+	 * */
+
+	void add(int docId, int count) {
+
+		this.add(docId, count, NO_DATA, 0, 0);
+
+	}
+
+
+	/*
+	 * Same as add(docId, count), with the positions of the stem in the
+	 * document: the bytes from to to of data, encoded like the positions of
+	 * a stem in a TermPositions. If docId is the last document of the
+	 * list, the positions are merged with those it has.
+	 *
+	 * */
+
+	void add(int docId, int count, byte[] data, int from, int to) {
+
+		if(count < 1) return;
+
+		/* the last posting is always in the tail, see encodeTail() */
+
+		if(this.tailSize > 0 && this.tailDocIds[this.tailSize-1] == docId) {
+
+			this.tailFrequencies[this.tailSize-1] += count;
+
+			if(to > from) {
+
+				this.mergePositions(data, from, to);
+
+			}
+
+			return;
+
+		}
+
+		if(this.tailSize == BLOCK_SIZE) {
+
+			this.encodeTail();
+
+		}
+
+		if(this.tailSize == 0) {
+
+			this.tailPositionsStart = this.positionsSize;
+
+		}
+
+		if(this.tailSize == this.tailDocIds.length) {
+
+			increaseSize();
+
+		}
+
+		this.tailDocIds[this.tailSize] = docId;
+		this.tailFrequencies[this.tailSize] = count;
+		this.tailSize++;
+		this.size++;
+
+		this.lastPositionsStart = this.positionsSize;
+		this.appendPositions(data, from, to);
+
+	}
+
+
+	/*
+	 * Returns a list with the same postings that can be appended to
+	 * without changing this one.
+	 *
+	 * */
+
+	PostingList copy() {
+
+		PostingList copy = new PostingList(1);
+		copy.data = Arrays.copyOf(this.data, this.dataSize);
+		copy.dataSize = this.dataSize;
+		copy.blockLastDocIds = Arrays.copyOf(this.blockLastDocIds, this.blockCount);
+		copy.blockStarts = Arrays.copyOf(this.blockStarts, this.blockCount);
+		copy.blockPositionStarts = Arrays.copyOf(this.blockPositionStarts, this.blockCount);
+		copy.blockCount = this.blockCount;
+		copy.positions = Arrays.copyOf(this.positions, this.positionsSize);
+		copy.positionsSize = this.positionsSize;
+		copy.tailPositionsStart = this.tailPositionsStart;
+		copy.lastPositionsStart = this.lastPositionsStart;
+		copy.tailDocIds = Arrays.copyOf(this.tailDocIds, Math.max(1, this.tailSize));
+		copy.tailFrequencies = Arrays.copyOf(this.tailFrequencies, Math.max(1, this.tailSize));
+		copy.tailSize = this.tailSize;
+		copy.size = this.size;
+
+		return copy;
+
+	}
+
+
+	/*
+	 * Appends the postings of other, with docBase added to their doc ids,
+	 * together with their positions. docBase must be larger than the last
+	 * doc id of this list. The positions are copied as they are, since
+	 * they are stored in the order of the postings.
+	 *
+	 * */
+
+	void append(PostingList other, int docBase) {
+
+		PostingsCursor cursor = other.cursor();
+		byte[] positions = other.positions;
+		int position = 0;
+
+		for(int docId = cursor.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = cursor.nextDoc()) {
+
+			int length = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = positions[position++];
+				length |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			this.add(docBase + docId, cursor.freq(), positions, position, position + length);
+			position += length;
+
+		}
+
+	}
+
+
+	/*
+	 * Appends the length to - from and the bytes from to to of data to
+	 * the positions.
+	 *
+	 * */
+
+	private void appendPositions(byte[] data, int from, int to) {
+
+		int length = to - from;
+
+		if(this.positionsSize + 5 + length > this.positions.length) {
+
+			this.positions = Arrays.copyOf(this.positions, Math.max(this.positionsSize + 5 + length,
+					Math.max(16, this.positions.length * 2)));
+
+		}
+
+		this.positionsSize = writeVInt(this.positions, this.positionsSize, length);
+		System.arraycopy(data, from, this.positions, this.positionsSize, length);
+		this.positionsSize += length;
+
+	}
+
+
+	/*
+	 * Replaces the positions of the last posting with the union of them
+	 * and the positions from to to of data.
+	 *
+	 * */
+
+	private void mergePositions(byte[] data, int from, int to) {
+
+		int position = this.lastPositionsStart;
+		int length = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = this.positions[position++];
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+
+		}
+		while(b < 0);
+
+		int[] a = decodePositions(this.positions, position, position + length);
+		int[] c = decodePositions(data, from, to);
+		byte[] merged = new byte[5 * (a.length + c.length)];
+		int size = 0;
+		int previous = 0;
+		int i = 0;
+		int j = 0;
+
+		while(i < a.length || j < c.length) {
+
+			int next = (j == c.length || (i < a.length && a[i] <= c[j])) ? a[i] : c[j];
+
+			while(i < a.length && a[i] == next) i++;
+			while(j < c.length && c[j] == next) j++;
+
+			size = writeVInt(merged, size, next - previous);
+			previous = next;
+
+		}
+
+		this.positionsSize = this.lastPositionsStart;
+		this.appendPositions(merged, 0, size);
+
+	}
+
+
+	/*
+	 * Decodes the positions from to to of data (deltas, see TermPositions).
+	 *
+	 * */
+
+	static int[] decodePositions(byte[] data, int from, int to) {
+
+		int[] positions = new int[to - from];
+		int n = 0;
+		int previous = 0;
+
+		while(from < to) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = data[from++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			previous += value;
+			positions[n++] = previous;
+
+		}
+
+		return (n == positions.length) ? positions : Arrays.copyOf(positions, n);
+
+	}
+
+
+	/*
+	 * Helper method for add(docId, count).
+	 *
+	 * */
+
+	private void increaseSize() {
+
+		int length = Math.min(BLOCK_SIZE, this.tailDocIds.length * 2);
+
+		this.tailDocIds = Arrays.copyOf(this.tailDocIds, length);
+		this.tailFrequencies = Arrays.copyOf(this.tailFrequencies, length);
+
+	}
+
+
+	/*
+	 * Encodes the full tail as a new block: the doc ids as deltas to the
+	 * previous one (the first to the last doc id of the previous block),
+	 * then the frequencies - 1.
+	 *
+	 * */
+
+	private void encodeTail() {
+
+		/* at most 5 bytes per int */
+
+		if(this.dataSize + 10 * BLOCK_SIZE > this.data.length) {
+
+			this.data = Arrays.copyOf(this.data, Math.max(this.dataSize + 10 * BLOCK_SIZE, this.data.length * 2));
+
+		}
+
+		if(this.blockCount == this.blockStarts.length) {
+
+			int length = Math.max(4, this.blockCount * 2);
+			this.blockStarts = Arrays.copyOf(this.blockStarts, length);
+			this.blockLastDocIds = Arrays.copyOf(this.blockLastDocIds, length);
+			this.blockPositionStarts = Arrays.copyOf(this.blockPositionStarts, length);
+
+		}
+
+		int previous = (this.blockCount == 0) ? -1 : this.blockLastDocIds[this.blockCount - 1];
+		int position = this.dataSize;
+
+		for(int i = 0; i < this.tailSize; i++) {
+
+			position = writeVInt(this.data, position, this.tailDocIds[i] - previous);
+			previous = this.tailDocIds[i];
+
+		}
+
+		for(int i = 0; i < this.tailSize; i++) {
+
+			position = writeVInt(this.data, position, this.tailFrequencies[i] - 1);
+
+		}
+
+		this.blockStarts[this.blockCount] = this.dataSize;
+		this.blockLastDocIds[this.blockCount] = previous;
+		this.blockPositionStarts[this.blockCount] = this.tailPositionsStart;
+		this.blockCount++;
+		this.dataSize = position;
+		this.tailSize = 0;
+
+	}
+
+
+	static int writeVInt(byte[] out, int position, int value) {
+
+		while((value & ~0x7F) != 0) {
+
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+
+		}
+
+		out[position++] = (byte) value;
+
+		return position;
+
+	}
+
+
+	/*
+	 * Returns the number of documents containing the stem.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.size;
+
+	}
+
+
+	/*
+	 * Returns the doc id of the posting at index, or -1 if there is none.
+	 * Decodes the block of the posting, so iterating with cursor() is much
+	 * faster.
+	 *
+	 * */
+
+	public int getDocId(int index) {
+
+		if(index < 0 || index >= this.size) {
+
+			return -1;
+
+		}
+
+		int block = index / BLOCK_SIZE;
+
+		if(block == this.blockCount) {
+
+			return this.tailDocIds[index - block * BLOCK_SIZE];
+
+		}
+
+		int position = this.blockStarts[block];
+		int docId = (block == 0) ? -1 : this.blockLastDocIds[block - 1];
+
+		for(int i = block * BLOCK_SIZE; i <= index; i++) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = this.data[position++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			docId += value;
+
+		}
+
+		return docId;
+
+	}
+
+
+	/*
+	 * Returns the frequency of the posting at index, or -1 if there is
+	 * none. Decodes the block of the posting, like getDocId(index).
+	 *
+	 * */
+
+	public int getFrequency(int index) {
+
+		if(index < 0 || index >= this.size) {
+
+			return -1;
+
+		}
+
+		int block = index / BLOCK_SIZE;
+
+		if(block == this.blockCount) {
+
+			return this.tailFrequencies[index - block * BLOCK_SIZE];
+
+		}
+
+		/* skip the doc deltas of the block and the frequencies before index */
+
+		int position = this.blockStarts[block];
+		int skip = BLOCK_SIZE + index - block * BLOCK_SIZE;
+
+		for(int i = 0; i < skip; i++) {
+
+			while(this.data[position++] < 0);
+
+		}
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = this.data[position++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+
+		}
+		while(b < 0);
+
+		return value + 1;
+
+	}
+
+
+	/*
+	 * Returns a new cursor at the start of this list.
+	 *
+	 * */
+
+	public PostingsCursor cursor() {
+
+		PostingsCursor cursor = new PostingsCursor();
+		cursor.reset(this);
+
+		return cursor;
+
+	}
+
+
+	/*
+	 * Returns the number of blocks, including the tail if it is not empty.
+	 *
+	 * */
+
+	int getBlockCount() {
+
+		return (this.tailSize > 0) ? this.blockCount + 1 : this.blockCount;
+
+	}
+
+
+	/*
+	 * Returns the number of encoded blocks, i.e. those in getData().
+	 *
+	 * */
+
+	int getEncodedBlockCount() {
+
+		return this.blockCount;
+
+	}
+
+
+	int getBlockLastDocId(int block) {
+
+		return (block == this.blockCount) ? this.tailDocIds[this.tailSize - 1] : this.blockLastDocIds[block];
+
+	}
+
+
+	/*
+	 * Position of the first byte of the encoded block in getData().
+	 *
+	 * */
+
+	int getBlockStart(int block) {
+
+		return this.blockStarts[block];
+
+	}
+
+
+	/*
+	 * Position in getPositionData() of the positions of the first posting
+	 * of the block (which may be the tail).
+	 *
+	 * */
+
+	int getBlockPositionsStart(int block) {
+
+		return (block == this.blockCount) ? this.tailPositionsStart : this.blockPositionStarts[block];
+
+	}
+
+
+	/*
+	 * The positions of all postings, see above. Returns the array itself,
+	 * so it must not be changed.
+	 *
+	 * */
+
+	byte[] getPositionData() {
+
+		return this.positions;
+
+	}
+
+
+	/*
+	 * The encoded blocks. Only the first getDataSize() bytes are valid.
+	 * Returns the array itself, so it must not be changed.
+	 *
+	 * */
+
+	byte[] getData() {
+
+		return this.data;
+
+	}
+
+
+	int getDataSize() {
+
+		return this.dataSize;
+
+	}
+
+
+	int getTailSize() {
+
+		return this.tailSize;
+
+	}
+
+
+	int[] getTailDocIds() {
+
+		return this.tailDocIds;
+
+	}
+
+
+	int[] getTailFrequencies() {
+
+		return this.tailFrequencies;
+
+	}
+
+
+	/*
+	 * Returns the memory taken by the postings in bytes (without the
+	 * object headers).
+	 *
+	 * */
+
+	public long sizeInBytes() {
+
+		return this.data.length + this.positions.length + 12L * this.blockStarts.length + 8L * this.tailDocIds.length;
+
+	}
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Iterates over the postings of a CompressedPostingList or of a PostingList
+ * (which keeps its blocks in the same format), one block at a time. The doc
+ * ids of the current block are decoded into an array that is reused for
+ * every block, and the frequencies only when freq() is first called for the
+ * block, so moving the cursor never allocates. A cursor can be reset to
+ * another list, which makes it reusable as well.
+ *
+ * advance(target) uses the skip table of the list to jump straight to the
+ * block that can contain target, without decoding the blocks in between.
+ * The block is found by galloping over the last doc ids of the blocks from
+ * the current one (steps of 1, 2, 4, ...) and a binary search in the last
+ * step, so a jump over b blocks costs O(log b).
+ *
+ * positions() decodes the positions of the current posting of a
+ * PostingList, stepping over those of the postings before it in the block
+ * by their lengths; a CompressedPostingList has no positions.
+ *
+ * */
+
+import java.nio.ByteBuffer;
+
+public class PostingsCursor {
+
+	/* returned by nextDoc() and advance(target) once the list is exhausted */
+
+	public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	private static final int[] NO_POSITIONS = new int[0];
+
+	/* one of them is set */
+
+	private CompressedPostingList compressed;
+	private PostingList list;
+
+	private ByteBuffer data;
+	private int blockCount;
+	private int size;
+
+	private int[] docIds = new int[CompressedPostingList.BLOCK_SIZE];
+	private int[] freqs = new int[CompressedPostingList.BLOCK_SIZE];
+
+	private int block;
+	private int blockSize;
+	private int index;
+	private int freqStart;
+	private boolean freqsDecoded;
+	private int docId;
+
+	/* the posting of the block whose positions start at positionsOffset */
+
+	private int positionsIndex;
+	private int positionsOffset;
+
+
+	/*
+	 * Moves the cursor to the start of list, before its first posting.
+	 *
+	 * */
+
+	public void reset(CompressedPostingList list) {
+
+		this.compressed = list;
+		this.list = null;
+		this.data = list.getData();
+		this.blockCount = list.getBlockCount();
+		this.size = list.size();
+		this.rewind();
+
+	}
+
+
+	/*
+	 * Moves the cursor to the start of list, before its first posting. The
+	 * cursor sees the postings list has now; it must not be used any more
+	 * once postings are added to list.
+	 *
+	 * */
+
+	public void reset(PostingList list) {
+
+		this.compressed = null;
+		this.list = list;
+		this.data = ByteBuffer.wrap(list.getData());
+		this.blockCount = list.getBlockCount();
+		this.size = list.size();
+		this.rewind();
+
+	}
+
+
+	private void rewind() {
+
+		this.block = -1;
+		this.blockSize = 0;
+		this.index = 0;
+		this.docId = -1;
+
+	}
+
+
+	/*
+	 * The doc id of the current posting, -1 before the first call of
+	 * nextDoc() or advance(target), NO_MORE_DOCS at the end.
+	 *
+	 * */
+
+	public int docId() {
+
+		return this.docId;
+
+	}
+
+
+	/*
+	 * The frequency of the current posting.
+	 *
+	 * */
+
+	public int freq() {
+
+		if(!this.freqsDecoded) {
+
+			this.decodeFreqs();
+
+		}
+
+		return this.freqs[this.index];
+
+	}
+
+
+	/*
+	 * Returns the positions of the stem in the document of the current
+	 * posting, in ascending order, in a new array. Returns an empty array
+	 * for a CompressedPostingList or a posting without positions.
+	 *
+	 * */
+
+	public int[] positions() {
+
+		if(this.list == null) {
+
+			return NO_POSITIONS;
+
+		}
+
+		byte[] data = this.list.getPositionData();
+
+		while(true) {
+
+			int position = this.positionsOffset;
+			int length = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = data[position++];
+				length |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			if(this.positionsIndex == this.index) {
+
+				return PostingList.decodePositions(data, position, position + length);
+
+			}
+
+			this.positionsIndex++;
+			this.positionsOffset = position + length;
+
+		}
+
+	}
+
+
+	/*
+	 * Moves to the next posting and returns its doc id.
+	 *
+	 * */
+
+	public int nextDoc() {
+
+		if(this.index + 1 < this.blockSize) {
+
+			return this.docId = this.docIds[++this.index];
+
+		}
+
+		if(this.block + 1 >= this.blockCount) {
+
+			this.index = this.blockSize;
+			return this.docId = NO_MORE_DOCS;
+
+		}
+
+		this.decodeBlock(this.block + 1);
+
+		return this.docId = this.docIds[0];
+
+	}
+
+
+	/*
+	 * Moves to the first posting with a doc id of at least target and
+	 * returns its doc id. Never moves backwards.
+	 *
+	 * */
+
+	public int advance(int target) {
+
+		if(this.docId >= target) {
+
+			return this.docId;
+
+		}
+
+		if(this.block < 0 || target > this.lastDocId(this.block)) {
+
+			/* skip all blocks that end before target */
+
+			int next = this.findBlock((this.block < 0) ? 0 : this.block + 1, target);
+
+			if(next >= this.blockCount) {
+
+				this.block = this.blockCount - 1;
+				this.index = this.blockSize;
+				return this.docId = NO_MORE_DOCS;
+
+			}
+
+			this.decodeBlock(next);
+
+		}
+
+		while(this.docIds[this.index] < target) {
+
+			this.index++;
+
+		}
+
+		return this.docId = this.docIds[this.index];
+
+	}
+
+
+	/*
+	 * Returns the first block from start on whose last doc id is at least
+	 * target, or the number of blocks: gallops forward with steps of 1, 2,
+	 * 4, ... and then searches the last step binary.
+	 *
+	 * */
+
+	private int findBlock(int start, int target) {
+
+		int low = start;
+		int step = 1;
+		int high = start;
+
+		while(high < this.blockCount && this.lastDocId(high) < target) {
+
+			low = high + 1;
+			high = start + step;
+			step <<= 1;
+
+		}
+
+		high = Math.min(high, this.blockCount);
+
+		while(low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if(this.lastDocId(middle) < target) {
+
+				low = middle + 1;
+
+			}
+			else {
+
+				high = middle;
+
+			}
+
+		}
+
+		return low;
+
+	}
+
+
+	private int lastDocId(int block) {
+
+		return (this.list != null) ? this.list.getBlockLastDocId(block) : this.compressed.getBlockLastDocId(block);
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the list.
+	 *
+	 * */
+
+	public int cost() {
+
+		return this.size;
+
+	}
+
+
+	private void decodeBlock(int block) {
+
+		int size = Math.min(CompressedPostingList.BLOCK_SIZE, this.size - block * CompressedPostingList.BLOCK_SIZE);
+
+		if(this.list != null && block == this.list.getEncodedBlockCount()) {
+
+			/* the tail of a PostingList is not encoded */
+
+			System.arraycopy(this.list.getTailDocIds(), 0, this.docIds, 0, size);
+			System.arraycopy(this.list.getTailFrequencies(), 0, this.freqs, 0, size);
+			this.block = block;
+			this.blockSize = size;
+			this.index = 0;
+			this.freqsDecoded = true;
+			this.positionsIndex = 0;
+			this.positionsOffset = this.list.getBlockPositionsStart(block);
+			return;
+
+		}
+
+		int position = (this.list != null) ? this.list.getBlockStart(block) : this.compressed.getBlockStart(block);
+		int previous = (block == 0) ? -1 : this.lastDocId(block - 1);
+
+		for(int i = 0; i < size; i++) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = this.data.get(position++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			previous += value;
+			this.docIds[i] = previous;
+
+		}
+
+		this.block = block;
+		this.blockSize = size;
+		this.index = 0;
+		this.freqStart = position;
+		this.freqsDecoded = false;
+
+		if(this.list != null) {
+
+			this.positionsIndex = 0;
+			this.positionsOffset = this.list.getBlockPositionsStart(block);
+
+		}
+
+	}
+
+
+	private void decodeFreqs() {
+
+		int position = this.freqStart;
+
+		for(int i = 0; i < this.blockSize; i++) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = this.data.get(position++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			this.freqs[i] = value + 1;
+
+		}
+
+		this.freqsDecoded = true;
+
+	}
+
+}
@@ -0,0 +1,652 @@
+/*
+ * Caches the results of a RankingEngine, for query traffic in which the
+ * same queries come again and again. A query is identified by its stems
+ * (see Document.stems), sorted, together with k, so queries that differ
+ * only in suffixes or in the order of their words share an entry. For
+ * each query, the doc ids and scores of the top k documents are kept.
+ *
+ * The cache is bounded by the (estimated) number of bytes of its entries.
+ * Eviction follows W-TinyLFU: new entries go into a small LRU window (1%
+ * of the bytes). An entry that falls out of the window is only admitted to
+ * the main area if it has been asked for more often recently than the
+ * entry it would push out, according to a FrequencySketch of all queries
+ * (including the misses). The main area is a segmented LRU: entries start
+ * in probation and are moved to the protected part (80%) when they are hit
+ * again. This keeps popular queries even through bursts of queries that
+ * come only once.
+ *
+ * The cache registers itself as a listener of the index. When a document
+ * is added, all entries whose query contains one of the stems of the
+ * document are removed, because the document may belong to their results.
+ * Call invalidate(document) when a document has been changed.
+ *
+ * The other entries are not recomputed for every document, although the
+ * number of documents and the average document length of the index (and
+ * with them the IDFs and norms) change a little with each one, and new
+ * ratings change the rating boost. Their staleness is bounded instead:
+ * every entry records the size of the index, the settings version of the
+ * engine (see RankingEngine.getSettingsVersion) and the version of its
+ * ratings (see RatingAggregates.getVersion) at the time it was computed.
+ * A hit is only served if the boosts are still the same and the documents
+ * and ratings added since then together amount to at most the maximum
+ * staleness (1% by default, see setMaxStaleness) of the index size at
+ * that time; otherwise the entry is removed and the query searched again.
+ * With a maximum staleness of 0, every added document or rating makes all
+ * entries stale.
+ *
+ * All methods are thread safe. The search itself runs outside of the lock,
+ * and its result is only cached if no entry was invalidated meanwhile.
+ *
+ * */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.LongAdder;
+
+public class QueryCache implements IndexListener {
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	/* estimated size of an entry without its arrays and strings */
+
+	private static final int ENTRY_OVERHEAD = 128;
+
+	static final float DEFAULT_MAX_STALENESS = 0.01f;
+
+	private RankingEngine engine;
+	private long maxBytes;
+	private long windowMaxBytes;
+	private long protectedMaxBytes;
+
+	private HashMap<String, Entry> entries;
+	private HashMap<String, HashSet<Entry>> entriesByStem;
+	private FrequencySketch sketch;
+	private long generation;
+	private volatile float maxStaleness = DEFAULT_MAX_STALENESS;
+
+	/* the queues, from least to most recently used */
+
+	private Entry[] heads = new Entry[3];
+	private Entry[] tails = new Entry[3];
+	private long[] queueBytes = new long[3];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+
+	private static class Entry {
+
+		String key;
+		String[] stems;
+		int[] docIds;
+		float[] scores;
+		long bytes;
+		int indexSize;
+		long settingsVersion;
+		long ratingsVersion;
+		int queue;
+		Entry previous;
+		Entry next;
+
+	}
+
+
+	/*
+	 * Creates a cache of at most maxBytes for the results of engine.
+	 *
+	 * */
+
+	public QueryCache(RankingEngine engine, long maxBytes) {
+
+		this.engine = engine;
+		this.maxBytes = Math.max(0, maxBytes);
+		this.windowMaxBytes = this.maxBytes / 100;
+		this.protectedMaxBytes = (this.maxBytes - this.windowMaxBytes) * 80 / 100;
+		this.entries = new HashMap<String, Entry>();
+		this.entriesByStem = new HashMap<String, HashSet<Entry>>();
+		this.sketch = new FrequencySketch((int) Math.min(1 << 24, this.maxBytes / 256));
+		this.generation = 0;
+
+		engine.getIndex().addListener(this);
+
+	}
+
+
+	public RankingEngine getEngine() {
+
+		return this.engine;
+
+	}
+
+
+	public float getMaxStaleness() {
+
+		return this.maxStaleness;
+
+	}
+
+
+	/*
+	 * Sets how many documents and ratings, as a fraction of the index size,
+	 * may have been added since an entry was computed for it to be served
+	 * (see above). Throws an IllegalArgumentException if maxStaleness is
+	 * negative.
+	 *
+	 * */
+
+	public void setMaxStaleness(float maxStaleness) {
+
+		if(!(maxStaleness >= 0)) {
+
+			throw new IllegalArgumentException("Negative staleness: " + maxStaleness);
+
+		}
+
+		this.maxStaleness = maxStaleness;
+
+	}
+
+
+	/*
+	 * Returns the k best documents for query, like RankingEngine.search,
+	 * from the cache if possible.
+	 *
+	 * */
+
+	public SearchResult[] search(String query, int k) {
+
+		String[] stems = Document.stems(query);
+
+		if(k <= 0 || stems.length == 0) {
+
+			return this.engine.search(query, k);
+
+		}
+
+		String[] sorted = stems.clone();
+		Arrays.sort(sorted);
+		String key = String.join(" ", sorted) + "#" + k;
+		RecencyBoost boost = this.engine.getRecencyBoost();
+
+		if(boost != null) {
+
+			/* boosted scores change from day to day */
+
+			key += "@" + boost + "/" + boost.getQueryDay();
+
+		}
+
+		/* read before searching, so an entry is never newer than its results */
+
+		int indexSize = this.engine.getIndex().size();
+		long settingsVersion = this.engine.getSettingsVersion();
+		long ratingsVersion = ratingsVersion(this.engine.getRatings());
+		long generation;
+
+		synchronized(this) {
+
+			this.sketch.increment(key.hashCode());
+			Entry entry = this.entries.get(key);
+
+			if(entry != null && this.isFresh(entry, indexSize, settingsVersion, ratingsVersion)) {
+
+				this.hits.increment();
+				this.touch(entry);
+
+				return this.toResults(entry);
+
+			}
+
+			if(entry != null) {
+
+				this.unlink(entry);
+				this.remove(entry);
+				this.invalidations.increment();
+
+			}
+
+			generation = this.generation;
+
+		}
+
+		this.misses.increment();
+
+		SearchResult[] results = this.engine.search(query, k);
+
+		Entry entry = new Entry();
+		entry.key = key;
+		entry.stems = sorted;
+		entry.indexSize = indexSize;
+		entry.settingsVersion = settingsVersion;
+		entry.ratingsVersion = ratingsVersion;
+		entry.docIds = new int[results.length];
+		entry.scores = new float[results.length];
+		entry.bytes = ENTRY_OVERHEAD + 4L * key.length() + 64L * sorted.length + 8L * results.length;
+
+		for(int i = 0; i < results.length; i++) {
+
+			entry.docIds[i] = results[i].getDocId();
+			entry.scores[i] = results[i].getScore();
+
+		}
+
+		synchronized(this) {
+
+			if(generation == this.generation && entry.bytes <= this.maxBytes && !this.entries.containsKey(key)) {
+
+				this.put(entry);
+
+			}
+
+		}
+
+		return results;
+
+	}
+
+
+	private static long ratingsVersion(RatingAggregates ratings) {
+
+		return (ratings == null) ? 0 : ratings.getVersion();
+
+	}
+
+
+	/*
+	 * Returns whether entry may still be served (see above).
+	 *
+	 * */
+
+	private boolean isFresh(Entry entry, int indexSize, long settingsVersion, long ratingsVersion) {
+
+		if(entry.settingsVersion != settingsVersion) {
+
+			return false;
+
+		}
+
+		long added = (long) (indexSize - entry.indexSize) + (ratingsVersion - entry.ratingsVersion);
+
+		return added <= (long) (this.maxStaleness * entry.indexSize);
+
+	}
+
+
+	private SearchResult[] toResults(Entry entry) {
+
+		InvertedIndex index = this.engine.getIndex();
+		SearchResult[] results = new SearchResult[entry.docIds.length];
+
+		for(int i = 0; i < results.length; i++) {
+
+			results[i] = new SearchResult(entry.docIds[i], index.getDocument(entry.docIds[i]), entry.scores[i]);
+
+		}
+
+		return results;
+
+	}
+
+
+	/*
+	 * Adds a new entry to the window and moves the entries that no longer
+	 * fit into the window on to the main area.
+	 *
+	 * */
+
+	private void put(Entry entry) {
+
+		this.entries.put(entry.key, entry);
+
+		for(int i = 0; i < entry.stems.length; i++) {
+
+			HashSet<Entry> set = this.entriesByStem.get(entry.stems[i]);
+
+			if(set == null) {
+
+				set = new HashSet<Entry>();
+				this.entriesByStem.put(entry.stems[i], set);
+
+			}
+
+			set.add(entry);
+
+		}
+
+		this.append(entry, WINDOW);
+
+		while(this.queueBytes[WINDOW] > this.windowMaxBytes) {
+
+			Entry candidate = this.heads[WINDOW];
+			this.unlink(candidate);
+			this.admit(candidate);
+
+		}
+
+	}
+
+
+	/*
+	 * Moves candidate from the window into probation if it is used more
+	 * often than each of the entries that have to make room for it, which
+	 * are taken from the least recently used end of probation, then of the
+	 * protected part. Otherwise, or if candidate is larger than the whole
+	 * main area, evicts candidate and keeps the others. Nothing is evicted
+	 * for a candidate that is not admitted in the end.
+	 *
+	 * */
+
+	private void admit(Entry candidate) {
+
+		long mainMaxBytes = this.maxBytes - this.windowMaxBytes;
+
+		if(candidate.bytes > mainMaxBytes) {
+
+			this.remove(candidate);
+			this.evictions.increment();
+
+			return;
+
+		}
+
+		/* find the victims without evicting them yet */
+
+		long excess = this.queueBytes[PROBATION] + this.queueBytes[PROTECTED] + candidate.bytes - mainMaxBytes;
+		int frequency = this.sketch.frequency(candidate.key.hashCode());
+		Entry victim = this.heads[PROBATION];
+		long freed = 0;
+
+		while(freed < excess) {
+
+			if(victim == null) {
+
+				victim = this.heads[PROTECTED];
+
+			}
+
+			if(frequency <= this.sketch.frequency(victim.key.hashCode())) {
+
+				this.remove(candidate);
+				this.evictions.increment();
+
+				return;
+
+			}
+
+			freed += victim.bytes;
+			victim = victim.next;
+
+		}
+
+		while(this.queueBytes[PROBATION] + this.queueBytes[PROTECTED] + candidate.bytes > mainMaxBytes) {
+
+			victim = (this.heads[PROBATION] != null) ? this.heads[PROBATION] : this.heads[PROTECTED];
+			this.unlink(victim);
+			this.remove(victim);
+			this.evictions.increment();
+
+		}
+
+		this.append(candidate, PROBATION);
+
+	}
+
+
+	/*
+	 * Marks entry as used: it moves to the most recently used end of its
+	 * queue, or from probation into the protected part.
+	 *
+	 * */
+
+	private void touch(Entry entry) {
+
+		int queue = entry.queue;
+		this.unlink(entry);
+
+		if(queue == WINDOW) {
+
+			this.append(entry, WINDOW);
+
+			return;
+
+		}
+
+		this.append(entry, PROTECTED);
+
+		while(this.queueBytes[PROTECTED] > this.protectedMaxBytes) {
+
+			Entry demoted = this.heads[PROTECTED];
+			this.unlink(demoted);
+			this.append(demoted, PROBATION);
+
+		}
+
+	}
+
+
+	private void append(Entry entry, int queue) {
+
+		entry.queue = queue;
+		entry.previous = this.tails[queue];
+		entry.next = null;
+
+		if(this.tails[queue] == null) {
+
+			this.heads[queue] = entry;
+
+		}
+		else {
+
+			this.tails[queue].next = entry;
+
+		}
+
+		this.tails[queue] = entry;
+		this.queueBytes[queue] += entry.bytes;
+
+	}
+
+
+	private void unlink(Entry entry) {
+
+		int queue = entry.queue;
+
+		if(entry.previous == null) {
+
+			this.heads[queue] = entry.next;
+
+		}
+		else {
+
+			entry.previous.next = entry.next;
+
+		}
+
+		if(entry.next == null) {
+
+			this.tails[queue] = entry.previous;
+
+		}
+		else {
+
+			entry.next.previous = entry.previous;
+
+		}
+
+		entry.previous = null;
+		entry.next = null;
+		this.queueBytes[queue] -= entry.bytes;
+
+	}
+
+
+	/*
+	 * Removes an entry, which is not in any queue (any more), from the
+	 * lookup tables.
+	 *
+	 * */
+
+	private void remove(Entry entry) {
+
+		this.entries.remove(entry.key);
+
+		for(int i = 0; i < entry.stems.length; i++) {
+
+			HashSet<Entry> set = this.entriesByStem.get(entry.stems[i]);
+
+			if(set != null) {
+
+				set.remove(entry);
+
+				if(set.isEmpty()) {
+
+					this.entriesByStem.remove(entry.stems[i]);
+
+				}
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Called by the index: removes the entries affected by the new
+	 * document.
+	 *
+	 * */
+
+	public void documentAdded(InvertedIndex index, int docId, Document document) {
+
+		this.invalidate(document);
+
+	}
+
+
+	/*
+	 * Removes all entries whose query contains one of the stems of
+	 * document. Call this after a document of the index has been changed.
+	 *
+	 * */
+
+	public synchronized void invalidate(Document document) {
+
+		this.generation++;
+
+		if(document == null) {
+
+			return;
+
+		}
+
+		WordCountsArray wca = document.getWordCounts();
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			HashSet<Entry> set = this.entriesByStem.get(wca.getWord(i));
+
+			if(set == null) {
+
+				continue;
+
+			}
+
+			Entry[] affected = set.toArray(new Entry[set.size()]);
+
+			for(int j = 0; j < affected.length; j++) {
+
+				this.unlink(affected[j]);
+				this.remove(affected[j]);
+				this.invalidations.increment();
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Removes all entries.
+	 *
+	 * */
+
+	public synchronized void clear() {
+
+		this.generation++;
+		this.entries.clear();
+		this.entriesByStem.clear();
+		Arrays.fill(this.heads, null);
+		Arrays.fill(this.tails, null);
+		Arrays.fill(this.queueBytes, 0);
+
+	}
+
+
+	public synchronized int size() {
+
+		return this.entries.size();
+
+	}
+
+
+	public synchronized long getSizeInBytes() {
+
+		return this.queueBytes[WINDOW] + this.queueBytes[PROBATION] + this.queueBytes[PROTECTED];
+
+	}
+
+
+	public long getMaxBytes() {
+
+		return this.maxBytes;
+
+	}
+
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	public long getInvalidations() {
+		return this.invalidations.sum();
+	}
+
+
+	public void exportTo(MetricsSink sink) {
+
+		if(sink == null) return;
+
+		sink.report("queryCache.hits", this.getHits());
+		sink.report("queryCache.misses", this.getMisses());
+		sink.report("queryCache.evictions", this.getEvictions());
+		sink.report("queryCache.invalidations", this.getInvalidations());
+		sink.report("queryCache.entries", this.size());
+		sink.report("queryCache.bytes", this.getSizeInBytes());
+
+	}
+
+
+	public String toString() {
+
+		return "hits: " + this.getHits() + ", misses: " + this.getMisses() + ", evictions: " + this.getEvictions()
+				+ ", invalidations: " + this.getInvalidations() + ", entries: " + this.size() + ", bytes: "
+				+ this.getSizeInBytes();
+
+	}
+
+}
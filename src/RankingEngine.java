@@ -0,0 +1,465 @@
+/*
+ * Ranks the documents of an InvertedIndex for a query. The words of the
+ * query are stemmed like the content of a document, and every document
+ * that contains at least one of the stems is scored with a Similarity
+ * (BM25 by default, or TF-IDF). Only the k best documents are kept, in a
+ * TopKHeap, so nothing is ever sorted but those k.
+ *
+ * The posting lists of the query stems are traversed side by side in order
+ * of doc ids (document at a time), with a PostingsCursor each, so a query
+ * only touches the postings of its stems. The IDF of each stem is computed
+ * once per query and the norms of all 256 encoded document lengths once
+ * per query (see InvertedIndex.encodeLength), so the cost of a query
+ * depends on k and the lengths of the posting lists, but not on the
+ * number of documents.
+ *
+ * Searches can be restricted to a range of release dates. The range is
+ * looked up in a DateRangeIndex, which is extended with the new documents
+ * once the index has grown. If the range holds fewer documents than the
+ * posting lists of the query, only the documents of the range are scored,
+ * from their word counts; otherwise the posting lists are traversed and
+ * the cursors advanced over documents outside of the range.
+ *
+ * With a RecencyBoost, the score of every hit is multiplied by the decay
+ * factor of its release day, looked up in a table that the boost computes
+ * once per query day.
+ *
+ * With ratings (see setRatingBoost), the score of every hit is also
+ * multiplied by a factor of its average review rating, read in O(1) from
+ * RatingAggregates.
+ *
+ * Every change of a boost increases the settings version, so a QueryCache
+ * can tell results scored with other boosts apart.
+ *
+ * */
+
+import java.util.BitSet;
+
+public class RankingEngine {
+
+	private InvertedIndex index;
+	private Similarity similarity;
+	private volatile DateRangeIndex dateIndex;
+	private volatile RecencyBoost recencyBoost;
+	private volatile RatingAggregates ratings;
+	private volatile float ratingWeight;
+	private volatile long settingsVersion;
+
+
+	public RankingEngine(InvertedIndex index) {
+
+		this(index, new BM25Similarity());
+
+	}
+
+
+	public RankingEngine(InvertedIndex index, Similarity similarity) {
+
+		this.index = index;
+		this.similarity = (similarity == null) ? new BM25Similarity() : similarity;
+
+	}
+
+
+	public InvertedIndex getIndex() {
+
+		return this.index;
+
+	}
+
+
+	public Similarity getSimilarity() {
+
+		return this.similarity;
+
+	}
+
+
+	public RecencyBoost getRecencyBoost() {
+
+		return this.recencyBoost;
+
+	}
+
+
+	/*
+	 * Boosts newer documents with recencyBoost from now on, or switches
+	 * boosting off again if it is null.
+	 *
+	 * */
+
+	public synchronized void setRecencyBoost(RecencyBoost recencyBoost) {
+
+		this.recencyBoost = recencyBoost;
+		this.settingsVersion++;
+
+	}
+
+
+	public RatingAggregates getRatings() {
+
+		return this.ratings;
+
+	}
+
+
+	public float getRatingWeight() {
+
+		return this.ratingWeight;
+
+	}
+
+
+	/*
+	 * Multiplies the score of every hit with ratings.boost(docId, weight)
+	 * from now on, so documents rated above 5 on average move up and those
+	 * rated below move down, by up to weight (e.g. 0.2 for 20%). Switched
+	 * off again with null. A QueryCache serves results scored with
+	 * older ratings only within its bounded staleness.
+	 *
+	 * */
+
+	public synchronized void setRatingBoost(RatingAggregates ratings, float weight) {
+
+		this.ratingWeight = weight;
+		this.ratings = ratings;
+		this.settingsVersion++;
+
+	}
+
+
+	/*
+	 * Returns a number that changes whenever a boost is set (see above).
+	 *
+	 * */
+
+	public long getSettingsVersion() {
+
+		return this.settingsVersion;
+
+	}
+
+
+	/*
+	 * Returns the k best documents for query, best first. Returns an empty
+	 * array if no document contains any word of the query.
+	 *
+	 * */
+
+	public SearchResult[] search(String query, int k) {
+
+		return this.search(query, k, null, null);
+
+	}
+
+
+	/*
+	 * Returns the k best documents for query that were released from from
+	 * to to, including both, best first. A null date leaves that end of
+	 * the range open.
+	 *
+	 * */
+
+	public SearchResult[] search(String query, int k, Date from, Date to) {
+
+		String[] stems = Document.stems(query);
+		String[] found = new String[stems.length];
+		PostingsCursor[] cursors = new PostingsCursor[stems.length];
+		float[] idfs = new float[stems.length];
+		int n = 0;
+		long postings = 0;
+
+		for(int i = 0; i < stems.length; i++) {
+
+			PostingList list = this.index.getPostings(stems[i]);
+
+			if(list != null) {
+
+				found[n] = stems[i];
+				cursors[n] = list.cursor();
+				idfs[n] = this.similarity.idf(list.size(), this.index.size());
+				postings += list.size();
+				n++;
+
+			}
+
+		}
+
+		TopKHeap heap = new TopKHeap(k);
+
+		if(n > 0) {
+
+			float[] norms = normCache(this.similarity, this.index.getAverageDocumentLength());
+			RecencyBoost boost = this.recencyBoost;
+			float[] recency = (boost == null) ? null : boost.getFactors(boost.getQueryDay());
+			RatingAggregates ratings = this.ratings;
+			float ratingWeight = this.ratingWeight;
+
+			if(from == null && to == null) {
+
+				collect(this.index.getLengthCodes(), 0, cursors, idfs, n, norms, this.similarity, heap, null, 0,
+						this.index.getReleaseDays(), recency, ratings, ratingWeight);
+
+			}
+			else {
+
+				DateRangeIndex dates = this.getDateIndex();
+				int start = dates.start(from);
+				int end = dates.end(to);
+
+				if(end - start < postings) {
+
+					this.collectRange(dates, start, end, found, idfs, n, norms, heap, recency, ratings,
+							ratingWeight);
+
+				}
+				else if(start < end) {
+
+					collect(this.index.getLengthCodes(), 0, cursors, idfs, n, norms, this.similarity, heap,
+							dates.getBitSet(from, to), dates.getMinDocId(from, to), this.index.getReleaseDays(), recency,
+							ratings, ratingWeight);
+
+				}
+
+			}
+
+		}
+
+		float[] scores = new float[heap.size()];
+		int[] docIds = heap.drain(scores);
+		SearchResult[] results = new SearchResult[docIds.length];
+
+		for(int i = 0; i < docIds.length; i++) {
+
+			results[i] = new SearchResult(docIds[i], this.index.getDocument(docIds[i]), scores[i]);
+
+		}
+
+		return results;
+
+	}
+
+
+	/*
+	 * Returns a DateRangeIndex over all documents of the index, extended
+	 * if documents have been added since the last one was built.
+	 *
+	 * */
+
+	public DateRangeIndex getDateIndex() {
+
+		DateRangeIndex dates = this.dateIndex;
+
+		if(dates == null) {
+
+			dates = DateRangeIndex.build(this.index);
+			this.dateIndex = dates;
+
+		}
+		else if(dates.size() < this.index.size()) {
+
+			dates = dates.extend(this.index.getReleaseDays(), this.index.size());
+			this.dateIndex = dates;
+
+		}
+
+		return dates;
+
+	}
+
+
+	/*
+	 * Scores the documents at the positions start to end of dates, from
+	 * the word counts of the documents, and offers those that contain at
+	 * least one of the n stems to heap.
+	 *
+	 * */
+
+	private void collectRange(DateRangeIndex dates, int start, int end, String[] stems, float[] idfs, int n,
+			float[] norms, TopKHeap heap, float[] recency, RatingAggregates ratings, float ratingWeight) {
+
+		byte[] lengthCodes = this.index.getLengthCodes();
+
+		for(int position = start; position < end; position++) {
+
+			int docId = dates.getDocId(position);
+			WordCountsArray wca = this.index.getDocument(docId).getWordCounts();
+			float norm = norms[lengthCodes[docId] & 0xFF];
+			float score = 0;
+			boolean match = false;
+
+			for(int t = 0; t < n; t++) {
+
+				int count = wca.getCount(stems[t]);
+
+				if(count > 0) {
+
+					score += this.similarity.score(count, idfs[t], norm);
+					match = true;
+
+				}
+
+			}
+
+			if(match) {
+
+				if(recency != null) {
+
+					int day = dates.getDay(position);
+					score *= (day < recency.length) ? recency[day] : 1;
+
+				}
+
+				if(ratings != null) {
+
+					score *= ratings.boost(docId, ratingWeight);
+
+				}
+
+				heap.offer(docId, score);
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the norms of all 256 encoded document lengths.
+	 *
+	 * */
+
+	static float[] normCache(Similarity similarity, float avgDocLength) {
+
+		float[] norms = new float[256];
+
+		for(int code = 0; code < norms.length; code++) {
+
+			norms[code] = similarity.norm(InvertedIndex.decodeLength(code), avgDocLength);
+
+		}
+
+		return norms;
+
+	}
+
+
+	/*
+	 * Scores every document that occurs in one of the lists of the first n
+	 * cursors, which must be at the start of their lists, and offers it to
+	 * heap, under its doc id + docBase. lengthCodes holds the encoded
+	 * length of each document. The lists are merged by doc id, so each
+	 * document is scored once.
+	 *
+	 * */
+
+	static void collect(byte[] lengthCodes, int docBase, PostingsCursor[] cursors, float[] idfs, int n,
+			float[] norms, Similarity similarity, TopKHeap heap) {
+
+		collect(lengthCodes, docBase, cursors, idfs, n, norms, similarity, heap, null, 0, null, null, null, 0);
+
+	}
+
+
+	/*
+	 * Like collect above, but only offers the documents whose doc id (not
+	 * counting docBase) minus filterBase is set in filter, if filter is
+	 * not null (see DateRangeIndex.getBitSet), and
+	 * multiplies their scores with the factor in recency of their release
+	 * day in releaseDays, if recency is not null (see RecencyBoost), and
+	 * with the rating boost of docBase + doc id, if ratings is not null
+	 * (ratings are kept by global doc id). The cursors skip
+	 * straight to the next document of filter, without decoding the
+	 * blocks in between.
+	 *
+	 * */
+
+	static void collect(byte[] lengthCodes, int docBase, PostingsCursor[] cursors, float[] idfs, int n,
+			float[] norms, Similarity similarity, TopKHeap heap, BitSet filter, int filterBase, int[] releaseDays,
+			float[] recency, RatingAggregates ratings, float ratingWeight) {
+
+		for(int t = 0; t < n; t++) {
+
+			cursors[t].nextDoc();
+
+		}
+
+		while(true) {
+
+			/* the smallest doc id any cursor is at */
+
+			int docId = PostingsCursor.NO_MORE_DOCS;
+
+			for(int t = 0; t < n; t++) {
+
+				if(cursors[t].docId() < docId) {
+
+					docId = cursors[t].docId();
+
+				}
+
+			}
+
+			if(docId == PostingsCursor.NO_MORE_DOCS) {
+
+				return;
+
+			}
+
+			if(filter != null && (docId < filterBase || !filter.get(docId - filterBase))) {
+
+				int next = filter.nextSetBit(Math.max(0, docId - filterBase));
+
+				if(next < 0) {
+
+					return;
+
+				}
+
+				next += filterBase;
+
+				for(int t = 0; t < n; t++) {
+
+					cursors[t].advance(next);
+
+				}
+
+				continue;
+
+			}
+
+			float norm = norms[lengthCodes[docId] & 0xFF];
+			float score = 0;
+
+			for(int t = 0; t < n; t++) {
+
+				if(cursors[t].docId() == docId) {
+
+					score += similarity.score(cursors[t].freq(), idfs[t], norm);
+					cursors[t].nextDoc();
+
+				}
+
+			}
+
+			if(recency != null) {
+
+				int day = releaseDays[docId];
+				score *= (day < recency.length) ? recency[day] : 1;
+
+			}
+
+			if(ratings != null) {
+
+				score *= ratings.boost(docBase + docId, ratingWeight);
+
+			}
+
+			heap.offer(docBase + docId, score);
+
+		}
+
+	}
+
+}
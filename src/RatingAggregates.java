@@ -0,0 +1,340 @@
+/*
+ * Keeps the number of reviews, the sum of their ratings and a histogram
+ * of the ratings (0 to 10) of every document of an InvertedIndex, updated
+ * as each Review comes in, so the average rating of a document is read in
+ * O(1) instead of by scanning all reviews.
+ *
+ * The values are kept in pages of PAGE_SIZE documents, in atomic arrays,
+ * so reviews can be added by many threads at once without any lock: two
+ * threads only contend when they add reviews of the same document at the
+ * same moment. Count and sum share one long (count in the upper, sum in
+ * the lower 32 bits), so a single atomic add updates both, and a reader
+ * never sees the count of one review with the sum of another.
+ *
+ * Pages are created when the first review of one of their documents
+ * arrives, so documents without reviews cost nothing.
+ *
+ * getVersion() counts the ratings added so far (in a LongAdder, so the
+ * writers do not contend on it), which lets a QueryCache tell how many
+ * ratings its results have missed.
+ *
+ * Without an index (e.g. for the global doc ids of a ConcurrentIndex),
+ * ratings can only be added by doc id, and topRated returns results
+ * without documents.
+ *
+ * */
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RatingAggregates {
+
+	static final int PAGE_SHIFT = 10;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	static final int RATINGS = 11;
+
+	private InvertedIndex index;
+	private volatile Page[] pages;
+	private final LongAdder version = new LongAdder();
+
+
+	private static class Page {
+
+		final AtomicLongArray countsAndSums = new AtomicLongArray(PAGE_SIZE);
+		final AtomicIntegerArray histograms = new AtomicIntegerArray(PAGE_SIZE * RATINGS);
+
+	}
+
+
+	public RatingAggregates() {
+
+		this(null);
+
+	}
+
+
+	public RatingAggregates(InvertedIndex index) {
+
+		this.index = index;
+		this.pages = new Page[0];
+
+	}
+
+
+	public InvertedIndex getIndex() {
+
+		return this.index;
+
+	}
+
+
+	/*
+	 * Adds the rating of review to the document it reviews. Returns false
+	 * if the review has no valid rating or its document is not in the
+	 * index.
+	 *
+	 * */
+
+	public boolean add(Review review) {
+
+		if(review == null || this.index == null) {
+
+			return false;
+
+		}
+
+		return this.add(this.index.getDocId(review.getReviewedDocument()), review.getRating());
+
+	}
+
+
+	/*
+	 * Adds a rating (0 to 10) to the document with the given id. Returns
+	 * false if rating or docId is invalid.
+	 *
+	 * */
+
+	public boolean add(int docId, int rating) {
+
+		if(docId < 0 || rating < 0 || rating >= RATINGS) {
+
+			return false;
+
+		}
+
+		Page page = this.getPage(docId >>> PAGE_SHIFT, true);
+		int offset = docId & (PAGE_SIZE - 1);
+
+		page.countsAndSums.getAndAdd(offset, (1L << 32) + rating);
+		page.histograms.getAndIncrement(offset * RATINGS + rating);
+		this.version.increment();
+
+		return true;
+
+	}
+
+
+	/*
+	 * Returns the number of ratings added so far. A rating whose add has
+	 * returned is always counted.
+	 *
+	 * */
+
+	public long getVersion() {
+
+		return this.version.sum();
+
+	}
+
+
+	private Page getPage(int number, boolean create) {
+
+		Page[] pages = this.pages;
+
+		if(number < pages.length && pages[number] != null) {
+
+			return pages[number];
+
+		}
+
+		if(!create) {
+
+			return null;
+
+		}
+
+		synchronized(this) {
+
+			pages = this.pages;
+
+			if(number >= pages.length) {
+
+				Page[] tmp = new Page[Math.max(number + 1, pages.length * 2)];
+				System.arraycopy(pages, 0, tmp, 0, pages.length);
+				pages = tmp;
+
+			}
+
+			if(pages[number] == null) {
+
+				pages[number] = new Page();
+
+			}
+
+			this.pages = pages;
+
+			return pages[number];
+
+		}
+
+	}
+
+
+	private long getCountAndSum(int docId) {
+
+		Page page = (docId < 0) ? null : this.getPage(docId >>> PAGE_SHIFT, false);
+
+		return (page == null) ? 0 : page.countsAndSums.get(docId & (PAGE_SIZE - 1));
+
+	}
+
+
+	/*
+	 * Returns the number of ratings of the document with the given id.
+	 *
+	 * */
+
+	public int getCount(int docId) {
+
+		return (int) (this.getCountAndSum(docId) >>> 32);
+
+	}
+
+
+	public long getSum(int docId) {
+
+		return this.getCountAndSum(docId) & 0xFFFFFFFFL;
+
+	}
+
+
+	/*
+	 * Returns the average rating of the document with the given id, or 0
+	 * if it has not been rated.
+	 *
+	 * */
+
+	public float getAverage(int docId) {
+
+		long countAndSum = this.getCountAndSum(docId);
+		long count = countAndSum >>> 32;
+
+		return (count == 0) ? 0 : (float) (countAndSum & 0xFFFFFFFFL) / count;
+
+	}
+
+
+	/*
+	 * Returns how many ratings of the document with the given id are
+	 * rating.
+	 *
+	 * */
+
+	public int getHistogramCount(int docId, int rating) {
+
+		Page page = (docId < 0) ? null : this.getPage(docId >>> PAGE_SHIFT, false);
+
+		if(page == null || rating < 0 || rating >= RATINGS) {
+
+			return 0;
+
+		}
+
+		return page.histograms.get((docId & (PAGE_SIZE - 1)) * RATINGS + rating);
+
+	}
+
+
+	/*
+	 * Returns the histogram of the ratings of the document with the given
+	 * id: the number of ratings of 0, 1, ..., 10.
+	 *
+	 * */
+
+	public int[] getHistogram(int docId) {
+
+		int[] histogram = new int[RATINGS];
+
+		for(int rating = 0; rating < RATINGS; rating++) {
+
+			histogram[rating] = this.getHistogramCount(docId, rating);
+
+		}
+
+		return histogram;
+
+	}
+
+
+	/*
+	 * Returns the factor by which the score of the document with the given
+	 * id is multiplied when ranking with ratings: 1 + weight * (average -
+	 * 5) / 5, i.e. between 1 - weight and 1 + weight. Documents without
+	 * ratings keep their score.
+	 *
+	 * */
+
+	public float boost(int docId, float weight) {
+
+		long countAndSum = this.getCountAndSum(docId);
+		long count = countAndSum >>> 32;
+
+		if(count == 0) {
+
+			return 1;
+
+		}
+
+		float average = (float) (countAndSum & 0xFFFFFFFFL) / count;
+
+		return 1 + weight * (average - 5) / 5;
+
+	}
+
+
+	/*
+	 * Returns the k documents with the best average rating among those
+	 * with at least minCount ratings, best first; the score of each result
+	 * is its average rating.
+	 *
+	 * */
+
+	public SearchResult[] topRated(int k, int minCount) {
+
+		TopKHeap heap = new TopKHeap(k);
+		Page[] pages = this.pages;
+		int size = (this.index == null) ? pages.length * PAGE_SIZE : this.index.size();
+		minCount = Math.max(1, minCount);
+
+		for(int number = 0; number < pages.length; number++) {
+
+			if(pages[number] == null) {
+
+				continue;
+
+			}
+
+			int end = Math.min(PAGE_SIZE, size - number * PAGE_SIZE);
+
+			for(int offset = 0; offset < end; offset++) {
+
+				long countAndSum = pages[number].countsAndSums.get(offset);
+				long count = countAndSum >>> 32;
+
+				if(count >= minCount) {
+
+					heap.offer(number * PAGE_SIZE + offset, (float) (countAndSum & 0xFFFFFFFFL) / count);
+
+				}
+
+			}
+
+		}
+
+		float[] scores = new float[heap.size()];
+		int[] docIds = heap.drain(scores);
+		SearchResult[] results = new SearchResult[docIds.length];
+
+		for(int i = 0; i < docIds.length; i++) {
+
+			Document document = (this.index == null) ? null : this.index.getDocument(docIds[i]);
+			results[i] = new SearchResult(docIds[i], document, scores[i]);
+
+		}
+
+		return results;
+
+	}
+
+}
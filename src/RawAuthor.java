@@ -0,0 +1,72 @@
+/*
+ * The unvalidated input for an Author: the same values that are passed to
+ * the Author constructor, held together so that whole batches of them can
+ * be handed over to the AuthorImporter.
+ * 
+ * */
+
+public class RawAuthor {
+	
+	private String firstName;
+	private String lastName;
+	private Date birthday;
+	private String residence;
+	private String email;
+	
+	
+	public RawAuthor(String firstName, String lastName, Date birthday, String residence, String email) {
+		
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.birthday = birthday;
+		this.residence = residence;
+		this.email = email;
+		
+	}
+	
+	
+	public String getFirstName() {
+		return this.firstName;
+	}
+	
+	public String getLastName() {
+		return this.lastName;
+	}
+	
+	public Date getBirthday() {
+		return this.birthday;
+	}
+	
+	public String getResidence() {
+		return this.residence;
+	}
+	
+	public String getEmail() {
+		return this.email;
+	}
+	
+	
+	/* 
+	 * Returns the invalid fields (see AuthorValidator.validate).
+	 * 
+	 * */
+	
+	public int validate() {
+		
+		return AuthorValidator.validate(this.firstName, this.lastName, this.birthday, this.residence, this.email);
+		
+	}
+	
+	
+	/* 
+	 * Creates the Author, with invalid being the result of validate().
+	 * 
+	 * */
+	
+	Author toAuthor(int invalid) {
+		
+		return new Author(this.firstName, this.lastName, this.birthday, this.residence, this.email, invalid);
+		
+	}
+	
+}
@@ -0,0 +1,67 @@
+/*
+ * The unprocessed input for a Document: the same values that are passed to
+ * the Document constructor, held together so that whole batches of them
+ * can be handed over to the BulkIngestor.
+ * 
+ * */
+
+public class RawDocument {
+	
+	private String title;
+	private String content;
+	private String language;
+	private String summary;
+	private Date releaseDate;
+	private Author author;
+	
+	
+	public RawDocument(String title, String content, String language, String summary, Date releaseDate, 
+			Author author) {
+		
+		this.title = title;
+		this.content = content;
+		this.language = language;
+		this.summary = summary;
+		this.releaseDate = releaseDate;
+		this.author = author;
+		
+	}
+	
+	
+	public String getTitle() {
+		return this.title;
+	}
+	
+	public String getContent() {
+		return this.content;
+	}
+	
+	public String getLanguage() {
+		return this.language;
+	}
+	
+	public String getSummary() {
+		return this.summary;
+	}
+	
+	public Date getReleaseDate() {
+		return this.releaseDate;
+	}
+	
+	public Author getAuthor() {
+		return this.author;
+	}
+	
+	
+	/* 
+	 * Tokenizes and stems the content, i.e. creates the Document.
+	 * 
+	 * */
+	
+	public Document toDocument() {
+		
+		return new Document(this.title, this.content, this.language, this.summary, this.releaseDate, this.author);
+		
+	}
+	
+}
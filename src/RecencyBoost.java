@@ -0,0 +1,195 @@
+/*
+ * Ranks newer documents higher: the score of a document is multiplied by
+ * a factor that decays with the age of the document (in days, from its
+ * release date to the day of the query), either exponentially with a half
+ * life, or like a Gauss curve that has fallen to 0.5 at a given scale.
+ *
+ * The factors do not depend on the document, only on its release day, so
+ * they are computed once per query day for all release days from the 1st
+ * of January 1970 (no release date is earlier) up to the query day, into
+ * a table indexed by release day (see InvertedIndex.getReleaseDay). The
+ * table is kept until the day changes, so scoring a hit costs one array
+ * lookup. Documents released after the query day get a factor of 1.
+ *
+ * The weight (1 by default) blends the decay in: factor = 1 - weight +
+ * weight * decay, so that with a weight of 0.3, even very old documents
+ * keep 70% of their score.
+ *
+ * Instances are immutable apart from the cached table, so they can be
+ * shared between threads.
+ *
+ * */
+
+public class RecencyBoost {
+
+	private final boolean gauss;
+	private final double scale;
+	private final float weight;
+	private final Date referenceDate;
+
+	private volatile Table table;
+
+
+	private static class Table {
+
+		final int queryDay;
+		final float[] factors;
+
+		Table(int queryDay, float[] factors) {
+			this.queryDay = queryDay;
+			this.factors = factors;
+		}
+
+	}
+
+
+	private RecencyBoost(boolean gauss, double scale, float weight, Date referenceDate) {
+
+		this.gauss = gauss;
+		this.scale = (scale > 0) ? scale : 1;
+		this.weight = Math.max(0, Math.min(1, weight));
+		this.referenceDate = referenceDate;
+
+	}
+
+
+	/*
+	 * Decay that halves the score every halfLifeDays.
+	 *
+	 * */
+
+	public static RecencyBoost exponential(double halfLifeDays) {
+
+		return new RecencyBoost(false, halfLifeDays, 1, null);
+
+	}
+
+
+	/*
+	 * Decay along a Gauss curve that is 0.5 for documents that are
+	 * scaleDays old.
+	 *
+	 * */
+
+	public static RecencyBoost gauss(double scaleDays) {
+
+		return new RecencyBoost(true, scaleDays, 1, null);
+
+	}
+
+
+	/*
+	 * Returns the same decay with the given weight, between 0 (no boost)
+	 * and 1.
+	 *
+	 * */
+
+	public RecencyBoost withWeight(float weight) {
+
+		return new RecencyBoost(this.gauss, this.scale, weight, this.referenceDate);
+
+	}
+
+
+	/*
+	 * Returns the same decay, measuring ages at date instead of today.
+	 *
+	 * */
+
+	public RecencyBoost at(Date date) {
+
+		return new RecencyBoost(this.gauss, this.scale, this.weight, date);
+
+	}
+
+
+	/*
+	 * The day ages are measured at: the reference date if there is one,
+	 * today otherwise.
+	 *
+	 * */
+
+	public int getQueryDay() {
+
+		return (this.referenceDate != null) ? this.referenceDate.getEpochDay() : new Date().getEpochDay();
+
+	}
+
+
+	/*
+	 * Returns the decay for a document that is ageDays old, between 0 and
+	 * 1.
+	 *
+	 * */
+
+	public double decay(int ageDays) {
+
+		if(ageDays <= 0) {
+
+			return 1;
+
+		}
+
+		if(this.gauss) {
+
+			/* exp(-age^2 / (2 sigma^2)) with sigma chosen so that decay(scale) = 0.5 */
+
+			double x = ageDays / this.scale;
+			return Math.exp(-Math.log(2) * x * x);
+
+		}
+
+		return Math.exp(-Math.log(2) * ageDays / this.scale);
+
+	}
+
+
+	/*
+	 * Returns the factor for a document that is ageDays old.
+	 *
+	 * */
+
+	public float factor(int ageDays) {
+
+		return (float) (1 - this.weight + this.weight * this.decay(ageDays));
+
+	}
+
+
+	/*
+	 * Returns the factors of all release days up to queryDay, indexed by
+	 * release day. Later release days have a factor of 1.
+	 *
+	 * */
+
+	float[] getFactors(int queryDay) {
+
+		Table table = this.table;
+
+		if(table == null || table.queryDay != queryDay) {
+
+			float[] factors = new float[Math.max(0, queryDay + 1)];
+
+			for(int day = 0; day < factors.length; day++) {
+
+				factors[day] = this.factor(queryDay - day);
+
+			}
+
+			table = new Table(queryDay, factors);
+			this.table = table;
+
+		}
+
+		return table.factors;
+
+	}
+
+
+	public String toString() {
+
+		return (this.gauss ? "gauss" : "exponential") + "(" + this.scale + " days, weight " + this.weight + ")";
+
+	}
+
+}
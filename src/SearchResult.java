@@ -0,0 +1,42 @@
+/*
+ * Each instance represents one hit of a search: the id of the document in
+ * the index, the document itself and its score.
+ * 
+ * */
+
+public class SearchResult {
+	
+	private int docId;
+	private Document document;
+	private float score;
+	
+	
+	public SearchResult(int docId, Document document, float score) {
+		
+		this.docId = docId;
+		this.document = document;
+		this.score = score;
+		
+	}
+	
+	
+	public int getDocId() {
+		return this.docId;
+	}
+	
+	public Document getDocument() {
+		return this.document;
+	}
+	
+	public float getScore() {
+		return this.score;
+	}
+	
+	
+	public String toString() {
+		
+		return this.docId + " (" + this.score + "): " + ((this.document == null) ? "" : this.document.getTitle());
+		
+	}
+	
+}
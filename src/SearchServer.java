@@ -0,0 +1,502 @@
+/*
+ * Serves a ConcurrentIndex over HTTP with the JDK's built-in server
+ * (com.sun.net.httpserver), answering in JSON:
+ *
+ * 	GET  /search?q=...&k=10		the k best documents for the query q
+ * 	GET  /documents/{id}		the metadata and rating of a document
+ * 	POST /reviews				a rating {"docId": 0, "rating": 8} from 0 to 10;
+ * 								answers with the new rating of the document
+ *
+ * Each request is handled on a thread of its own. On a JDK with virtual
+ * threads (21 and later), these are virtual threads, so the number of
+ * concurrent requests is not limited by a thread pool; the method that
+ * creates them is looked up by reflection, because the engine is built
+ * for Java 17. Older JDKs fall back to a cached thread pool. Searches read
+ * the current snapshot of the index without locks (see ConcurrentIndex),
+ * and ratings are lock-free counters (see RatingAggregates), so requests
+ * do not wait for each other. Only the rating of a review is kept, so a
+ * review with other fields (content, author, ...) is rejected rather than
+ * silently cut down to its rating.
+ *
+ * Malformed requests are answered with 400. Any other exception or error
+ * in a handler is answered with 500 (if the response has not started yet)
+ * and the exchange is closed, so a bug never just drops the connection.
+ *
+ * */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SearchServer {
+
+	static final int DEFAULT_K = 10;
+	static final int MAX_K = 1000;
+	static final int MAX_BODY = 1 << 20;
+
+	/* connections waiting to be accepted */
+
+	private static final int BACKLOG = 16384;
+
+	private ConcurrentIndex index;
+	private RatingAggregates ratings;
+	private HttpServer server;
+	private ExecutorService executor;
+	private boolean virtualThreads;
+
+
+	public SearchServer(ConcurrentIndex index) {
+
+		this(index, new RatingAggregates());
+
+	}
+
+
+	public SearchServer(ConcurrentIndex index, RatingAggregates ratings) {
+
+		this.index = index;
+		this.ratings = (ratings == null) ? new RatingAggregates() : ratings;
+
+	}
+
+
+	public ConcurrentIndex getIndex() {
+
+		return this.index;
+
+	}
+
+
+	public RatingAggregates getRatings() {
+
+		return this.ratings;
+
+	}
+
+
+	/*
+	 * Starts the server on port (0 for any free port) and returns the port
+	 * it listens on.
+	 *
+	 * */
+
+	public synchronized int start(int port) throws IOException {
+
+		if(this.server != null) {
+
+			throw new IllegalStateException("Server is running already");
+
+		}
+
+		this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		this.executor = newVirtualThreadExecutor();
+		this.virtualThreads = (this.executor != null);
+
+		if(this.executor == null) {
+
+			this.executor = Executors.newCachedThreadPool();
+
+		}
+
+		this.server.createContext("/search", guarded(this::handleSearch));
+		this.server.createContext("/documents/", guarded(this::handleDocument));
+		this.server.createContext("/reviews", guarded(this::handleReview));
+		this.server.setExecutor(this.executor);
+		this.server.start();
+
+		return this.server.getAddress().getPort();
+
+	}
+
+
+	/*
+	 * Stops the server, waiting at most delaySeconds for running requests.
+	 *
+	 * */
+
+	public synchronized void stop(int delaySeconds) {
+
+		if(this.server != null) {
+
+			this.server.stop(delaySeconds);
+			this.executor.shutdown();
+			this.server = null;
+			this.executor = null;
+
+		}
+
+	}
+
+
+	public synchronized int getPort() {
+
+		return (this.server == null) ? -1 : this.server.getAddress().getPort();
+
+	}
+
+
+	/*
+	 * Returns true if requests run on virtual threads.
+	 *
+	 * */
+
+	public synchronized boolean isUsingVirtualThreads() {
+
+		return this.virtualThreads;
+
+	}
+
+
+	/*
+	 * Returns Executors.newVirtualThreadPerTaskExecutor(), or null if the
+	 * JDK has no virtual threads.
+	 *
+	 * */
+
+	static ExecutorService newVirtualThreadExecutor() {
+
+		try {
+
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+		}
+		catch(ReflectiveOperationException e) {
+
+			return null;
+
+		}
+
+	}
+
+
+	/*
+	 * Wraps handler so that an unexpected exception or error is answered
+	 * with 500 and the exchange is closed. Sending fails if the handler has
+	 * sent the response headers already; then the exchange is only closed.
+	 *
+	 * */
+
+	private static HttpHandler guarded(HttpHandler handler) {
+
+		return exchange -> {
+
+			try {
+
+				handler.handle(exchange);
+
+			}
+			catch(RuntimeException | Error e) {
+
+				try {
+
+					sendError(exchange, 500, "Internal error");
+
+				}
+				catch(IOException | RuntimeException ignored) {
+
+					/* the response has started already */
+
+				}
+				finally {
+
+					exchange.close();
+
+				}
+
+			}
+
+		};
+
+	}
+
+
+	private void handleSearch(HttpExchange exchange) throws IOException {
+
+		try {
+
+			if(!exchange.getRequestMethod().equals("GET")) {
+
+				sendError(exchange, 405, "Method not allowed");
+				return;
+
+			}
+
+			String query = null;
+			int k = DEFAULT_K;
+			String rawQuery = exchange.getRequestURI().getRawQuery();
+
+			if(rawQuery != null) {
+
+				for(String parameter : rawQuery.split("&")) {
+
+					int equals = parameter.indexOf('=');
+					String name = (equals < 0) ? parameter : parameter.substring(0, equals);
+					String value = (equals < 0) ? "" : URLDecoder.decode(parameter.substring(equals + 1),
+							StandardCharsets.UTF_8);
+
+					if(name.equals("q")) {
+
+						query = value;
+
+					}
+					else if(name.equals("k")) {
+
+						k = Integer.parseInt(value);
+
+					}
+
+				}
+
+			}
+
+			if(query == null || k < 1 || k > MAX_K) {
+
+				sendError(exchange, 400, "Expected q and a k from 1 to " + MAX_K);
+				return;
+
+			}
+
+			long start = System.nanoTime();
+			SearchResult[] results = this.index.search(query, k);
+			long micros = (System.nanoTime() - start) / 1000;
+
+			StringBuilder out = new StringBuilder(64 + 128 * results.length);
+			out.append("{\"query\":");
+			Json.appendString(out, query);
+			out.append(",\"tookMicros\":").append(micros).append(",\"results\":[");
+
+			for(int i = 0; i < results.length; i++) {
+
+				Document document = results[i].getDocument();
+
+				if(i > 0) out.append(',');
+
+				out.append("{\"docId\":").append(results[i].getDocId());
+				out.append(",\"score\":").append(results[i].getScore());
+				out.append(",\"title\":");
+				Json.appendString(out, document.getTitle());
+				out.append(",\"author\":");
+				Json.appendString(out, document.getAuthor().toString());
+				out.append('}');
+
+			}
+
+			out.append("]}");
+			send(exchange, 200, out);
+
+		}
+		catch(IllegalArgumentException e) {
+
+			sendError(exchange, 400, e.getMessage());
+
+		}
+
+	}
+
+
+	private void handleDocument(HttpExchange exchange) throws IOException {
+
+		if(!exchange.getRequestMethod().equals("GET")) {
+
+			sendError(exchange, 405, "Method not allowed");
+			return;
+
+		}
+
+		String path = exchange.getRequestURI().getPath();
+		int docId;
+
+		try {
+
+			docId = Integer.parseInt(path.substring("/documents/".length()));
+
+		}
+		catch(NumberFormatException e) {
+
+			sendError(exchange, 400, "Invalid document id");
+			return;
+
+		}
+
+		Document document = this.index.getDocument(docId);
+
+		if(document == null) {
+
+			sendError(exchange, 404, "No document " + docId);
+			return;
+
+		}
+
+		Author author = document.getAuthor();
+		StringBuilder out = new StringBuilder(256);
+
+		out.append("{\"docId\":").append(docId).append(",\"title\":");
+		Json.appendString(out, document.getTitle());
+		out.append(",\"language\":");
+		Json.appendString(out, document.getLanguage());
+		out.append(",\"summary\":");
+		Json.appendString(out, document.getSummary());
+		out.append(",\"releaseDate\":");
+		Json.appendString(out, document.getReleaseDate().toString());
+		out.append(",\"author\":{\"firstName\":");
+		Json.appendString(out, author.getFirstName());
+		out.append(",\"lastName\":");
+		Json.appendString(out, author.getLastName());
+		out.append(",\"email\":");
+		Json.appendString(out, author.getEmail());
+		out.append("},");
+		this.appendRating(out, docId);
+		out.append('}');
+
+		send(exchange, 200, out);
+
+	}
+
+
+	private void handleReview(HttpExchange exchange) throws IOException {
+
+		try {
+
+			if(!exchange.getRequestMethod().equals("POST")) {
+
+				sendError(exchange, 405, "Method not allowed");
+				return;
+
+			}
+
+			Object body = Json.parse(readBody(exchange));
+
+			if(!(body instanceof Map)) {
+
+				sendError(exchange, 400, "Expected an object");
+				return;
+
+			}
+
+			Map<?, ?> fields = (Map<?, ?>) body;
+
+			for(Object name : fields.keySet()) {
+
+				if(!name.equals("docId") && !name.equals("rating")) {
+
+					sendError(exchange, 400, "Unknown field " + name);
+					return;
+
+				}
+
+			}
+
+			int docId = intField(fields, "docId");
+			int rating = intField(fields, "rating");
+
+			if(this.index.getDocument(docId) == null) {
+
+				sendError(exchange, 404, "No document " + docId);
+				return;
+
+			}
+
+			if(!this.ratings.add(docId, rating)) {
+
+				sendError(exchange, 400, "The rating must be between 0 and 10");
+				return;
+
+			}
+
+			StringBuilder out = new StringBuilder(64);
+			out.append("{\"docId\":").append(docId).append(',');
+			this.appendRating(out, docId);
+			out.append('}');
+
+			send(exchange, 201, out);
+
+		}
+		catch(IllegalArgumentException e) {
+
+			sendError(exchange, 400, e.getMessage());
+
+		}
+
+	}
+
+
+	private void appendRating(StringBuilder out, int docId) {
+
+		out.append("\"rating\":{\"count\":").append(this.ratings.getCount(docId));
+		out.append(",\"average\":").append(this.ratings.getAverage(docId)).append('}');
+
+	}
+
+
+	private static int intField(Map<?, ?> fields, String name) {
+
+		Object value = fields.get(name);
+
+		if(!(value instanceof Double) || (Double) value != Math.rint((Double) value)) {
+
+			throw new IllegalArgumentException("Expected an integer " + name);
+
+		}
+
+		return ((Double) value).intValue();
+
+	}
+
+
+	private static String readBody(HttpExchange exchange) throws IOException {
+
+		try(InputStream in = exchange.getRequestBody()) {
+
+			byte[] body = in.readNBytes(MAX_BODY + 1);
+
+			if(body.length > MAX_BODY) {
+
+				throw new IllegalArgumentException("Request body too large");
+
+			}
+
+			return new String(body, StandardCharsets.UTF_8);
+
+		}
+
+	}
+
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+
+		StringBuilder out = new StringBuilder(64);
+		out.append("{\"error\":");
+		Json.appendString(out, message);
+		out.append('}');
+
+		send(exchange, status, out);
+
+	}
+
+
+	private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try(OutputStream out = exchange.getResponseBody()) {
+
+			out.write(bytes);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,490 @@
+/*
+ * A read-only index segment written by SegmentWriter. The file is mapped
+ * into memory with FileChannel.map, so opening a segment neither reads the
+ * whole file nor analyzes any document again: the operating system loads
+ * the pages that are actually used, and a restart costs about as much as
+ * the parts of the index it touches. Only the encoded document lengths
+ * (one byte per document) are copied onto the heap, for ranking.
+ *
+ * Terms are found by binary search over the sorted term table. Posting
+ * lists are stored compressed and decoded straight from the mapping by a
+ * PostingsCursor while searching. Documents are returned with their
+ * metadata, word counts and positions, but without their content (see
+ * getDocument), and load() rebuilds an InvertedIndex from them, e.g. to
+ * open a search engine on a segment and go on adding documents.
+ *
+ * A segment is immutable, so it can be searched by many threads at once.
+ *
+ * */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class Segment {
+
+	private MappedByteBuffer buffer;
+	private int docCount;
+	private int termCount;
+	private long totalLength;
+	private int termTableOffset;
+	private int termDataOffset;
+	private int postingsOffset;
+	private int docTableOffset;
+	private int docDataOffset;
+	private byte[] lengthCodes;
+
+
+	private Segment(MappedByteBuffer buffer) throws IOException {
+
+		this.buffer = buffer;
+
+		if(buffer.capacity() < SegmentWriter.HEADER_SIZE || buffer.getInt(0) != SegmentWriter.MAGIC) {
+
+			throw new IOException("Not a segment file");
+
+		}
+
+		if(buffer.getInt(4) != SegmentWriter.VERSION) {
+
+			throw new IOException("Unsupported segment version: " + buffer.getInt(4));
+
+		}
+
+		this.docCount = buffer.getInt(8);
+		this.termCount = buffer.getInt(12);
+		this.totalLength = buffer.getLong(16);
+		this.termTableOffset = (int) buffer.getLong(24);
+		this.termDataOffset = (int) buffer.getLong(32);
+		this.postingsOffset = (int) buffer.getLong(40);
+		this.docTableOffset = (int) buffer.getLong(48);
+		this.docDataOffset = (int) buffer.getLong(56);
+
+		this.lengthCodes = new byte[this.docCount];
+		ByteBuffer lengths = buffer.duplicate();
+		lengths.position(this.docTableOffset + 8 * this.docCount);
+		lengths.get(this.lengthCodes);
+
+	}
+
+
+	/*
+	 * Maps the segment file into memory. Segments are limited to 2 GB,
+	 * the size of a single mapping.
+	 *
+	 * */
+
+	public static Segment open(Path file) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			if(channel.size() > Integer.MAX_VALUE) {
+
+				throw new IOException("Segment too large: " + file);
+
+			}
+
+			/* the mapping stays valid after the channel is closed */
+
+			return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the segment.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.docCount;
+
+	}
+
+
+	public int getVocabularySize() {
+
+		return this.termCount;
+
+	}
+
+
+	public float getAverageDocumentLength() {
+
+		return (this.docCount == 0) ? 0 : (float) ((double) this.totalLength / this.docCount);
+
+	}
+
+
+	public int getLengthCode(int docId) {
+
+		if(docId < 0 || docId >= this.docCount) {
+
+			return 0;
+
+		}
+
+		return this.lengthCodes[docId] & 0xFF;
+
+	}
+
+
+	/*
+	 * Returns the position of stem in the term table, or -1 if the segment
+	 * does not contain it.
+	 *
+	 * */
+
+	private int findTerm(String stem) {
+
+		if(stem == null) {
+
+			return -1;
+
+		}
+
+		byte[] key = stem.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = this.termCount - 1;
+
+		while(low <= high) {
+
+			int middle = (low + high) >>> 1;
+			int cmp = this.compareTerm(middle, key);
+
+			if(cmp < 0) {
+
+				low = middle + 1;
+
+			}
+			else if(cmp > 0) {
+
+				high = middle - 1;
+
+			}
+			else {
+
+				return middle;
+
+			}
+
+		}
+
+		return -1;
+
+	}
+
+
+	/*
+	 * Compares the term at position ord with key, byte by byte (unsigned),
+	 * the same order the terms were sorted in.
+	 *
+	 * */
+
+	private int compareTerm(int ord, byte[] key) {
+
+		int entry = this.termTableOffset + ord * SegmentWriter.TERM_ENTRY_SIZE;
+		int start = this.termDataOffset + this.buffer.getInt(entry);
+		int length = this.buffer.getInt(entry + 4);
+		int n = Math.min(length, key.length);
+
+		for(int i = 0; i < n; i++) {
+
+			int cmp = (this.buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+
+			if(cmp != 0) {
+
+				return cmp;
+
+			}
+
+		}
+
+		return length - key.length;
+
+	}
+
+
+	/*
+	 * Returns the number of documents in the segment containing stem.
+	 *
+	 * */
+
+	public int getDocumentFrequency(String stem) {
+
+		int ord = this.findTerm(stem);
+
+		if(ord < 0) {
+
+			return 0;
+
+		}
+
+		return this.buffer.getInt(this.termTableOffset + ord * SegmentWriter.TERM_ENTRY_SIZE + 8);
+
+	}
+
+
+	/*
+	 * Returns the compressed posting list of stem, backed by the mapped
+	 * file, or null if no document of the segment contains stem.
+	 *
+	 * */
+
+	public CompressedPostingList getCompressedPostings(String stem) {
+
+		int ord = this.findTerm(stem);
+
+		if(ord < 0) {
+
+			return null;
+
+		}
+
+		int entry = this.termTableOffset + ord * SegmentWriter.TERM_ENTRY_SIZE;
+		ByteBuffer data = this.buffer.duplicate();
+		data.position(this.postingsOffset + (int) this.buffer.getLong(entry + 12));
+
+		return new CompressedPostingList(data);
+
+	}
+
+
+	/*
+	 * Returns the posting list of stem, decoded from the file, or null if
+	 * no document of the segment contains stem.
+	 *
+	 * */
+
+	public PostingList getPostings(String stem) {
+
+		CompressedPostingList list = this.getCompressedPostings(stem);
+
+		return (list == null) ? null : list.toPostingList();
+
+	}
+
+
+	/*
+	 * Returns the document with the given id, or null if there is no such
+	 * document. The segment does not store the content of documents, but
+	 * everything else is restored: title, language, summary, release
+	 * date, author, and the word counts and positions of the content.
+	 *
+	 * */
+
+	public Document getDocument(int docId) {
+
+		if(docId < 0 || docId >= this.docCount) {
+
+			return null;
+
+		}
+
+		ByteBuffer in = this.buffer.duplicate();
+		in.position(this.docDataOffset + (int) this.buffer.getLong(this.docTableOffset + 8 * docId));
+
+		String title = readString(in);
+		String language = readString(in);
+		String summary = readString(in);
+		Date releaseDate = readDate(in);
+		String firstName = readString(in);
+		String lastName = readString(in);
+		Date birthday = readDate(in);
+		String residence = readString(in);
+		String email = readString(in);
+
+		Author author = new Author(firstName, lastName, birthday, residence, email);
+
+		/* word counts and positions, see SegmentWriter */
+
+		int stemCount = in.getInt();
+		int tokenCount = in.getInt();
+		WordCountsArray wca = new WordCountsArray(stemCount);
+		int[] offsets = new int[stemCount + 1];
+		int[] counts = new int[stemCount];
+		byte[] data = new byte[0];
+
+		for(int i = 0; i < stemCount; i++) {
+
+			int ord = in.getInt();
+			int count = in.getInt();
+			int length = in.getInt();
+
+			wca.add(this.getTerm(ord), count);
+
+			if(offsets[i] + length > data.length) {
+
+				data = Arrays.copyOf(data, Math.max(offsets[i] + length, 2 * data.length));
+
+			}
+
+			in.get(data, offsets[i], length);
+			offsets[i + 1] = offsets[i] + length;
+
+			/* one position ends in every byte without the continuation bit */
+
+			for(int j = offsets[i]; j < offsets[i + 1]; j++) {
+
+				if(data[j] >= 0) {
+
+					counts[i]++;
+
+				}
+
+			}
+
+		}
+
+		TermPositions positions = (tokenCount < 0) ? TermPositions.EMPTY
+				: new TermPositions(Arrays.copyOf(data, offsets[stemCount]), offsets, counts, tokenCount);
+
+		return Document.restore(title, wca, positions, language, summary, releaseDate, author);
+
+	}
+
+
+	/*
+	 * Returns the term at position ord of the term table.
+	 *
+	 * */
+
+	private String getTerm(int ord) {
+
+		int entry = this.termTableOffset + ord * SegmentWriter.TERM_ENTRY_SIZE;
+		byte[] bytes = new byte[this.buffer.getInt(entry + 4)];
+		ByteBuffer in = this.buffer.duplicate();
+		in.position(this.termDataOffset + this.buffer.getInt(entry));
+		in.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+
+	}
+
+
+	/*
+	 * Returns a new InvertedIndex with all documents of the segment, under
+	 * the same doc ids, built from their restored word counts and positions
+	 * (see getDocument), so that nothing has to be analyzed again. Unlike
+	 * the segment, the index can be added to.
+	 *
+	 * */
+
+	public InvertedIndex load() {
+
+		InvertedIndex index = new InvertedIndex();
+
+		for(int docId = 0; docId < this.docCount; docId++) {
+
+			index.addDocument(this.getDocument(docId));
+
+		}
+
+		return index;
+
+	}
+
+
+	public String getTitle(int docId) {
+
+		if(docId < 0 || docId >= this.docCount) {
+
+			return null;
+
+		}
+
+		ByteBuffer in = this.buffer.duplicate();
+		in.position(this.docDataOffset + (int) this.buffer.getLong(this.docTableOffset + 8 * docId));
+
+		return readString(in);
+
+	}
+
+
+	/*
+	 * Returns the k best documents of the segment for query, like
+	 * RankingEngine.search does for an InvertedIndex.
+	 *
+	 * */
+
+	public SearchResult[] search(String query, int k, Similarity similarity) {
+
+		if(similarity == null) {
+
+			similarity = new BM25Similarity();
+
+		}
+
+		String[] stems = Document.stems(query);
+		PostingsCursor[] cursors = new PostingsCursor[stems.length];
+		float[] idfs = new float[stems.length];
+		int n = 0;
+
+		for(int i = 0; i < stems.length; i++) {
+
+			CompressedPostingList list = this.getCompressedPostings(stems[i]);
+
+			if(list != null) {
+
+				cursors[n] = list.cursor();
+				idfs[n] = similarity.idf(list.size(), this.docCount);
+				n++;
+
+			}
+
+		}
+
+		TopKHeap heap = new TopKHeap(k);
+
+		if(n > 0) {
+
+			float[] norms = RankingEngine.normCache(similarity, this.getAverageDocumentLength());
+			RankingEngine.collect(this.lengthCodes, 0, cursors, idfs, n, norms, similarity, heap);
+
+		}
+
+		float[] scores = new float[heap.size()];
+		int[] docIds = heap.drain(scores);
+		SearchResult[] results = new SearchResult[docIds.length];
+
+		for(int i = 0; i < docIds.length; i++) {
+
+			results[i] = new SearchResult(docIds[i], this.getDocument(docIds[i]), scores[i]);
+
+		}
+
+		return results;
+
+	}
+
+
+	private static String readString(ByteBuffer in) {
+
+		int length = in.getInt();
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+
+	}
+
+
+	private static Date readDate(ByteBuffer in) {
+
+		int day = in.getInt();
+		int month = in.getInt();
+		int year = in.getInt();
+
+		return new Date(day, month, year);
+
+	}
+
+}
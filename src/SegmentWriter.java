@@ -0,0 +1,334 @@
+/*
+ * Writes an InvertedIndex to a file in the immutable segment format that
+ * Segment reads. A segment holds everything needed to search the index
+ * again without analyzing the documents a second time: the term
+ * dictionary, the posting lists and the metadata of every document (title,
+ * language, summary, release date and author, but not the content),
+ * together with its word counts and positions, so that Segment.load can
+ * rebuild the InvertedIndex, phrase queries included. The positions are
+ * read from the posting lists, which hold the only copy of them.
+ *
+ * The file is written to a temporary file first and then moved into place,
+ * so a segment file is either complete or not there at all. If writing
+ * fails, the temporary file is deleted again.
+ *
+ * File layout (all numbers big-endian, all strings UTF-8):
+ *
+ * 	header		magic, version, docCount, termCount (4 ints), totalLength,
+ * 				termTableOffset, termDataOffset, postingsOffset,
+ * 				docTableOffset, docDataOffset (6 longs)
+ * 	term table	per term, sorted by the UTF-8 bytes of the terms:
+ * 				termDataPos (int), termLength (int), docFreq (int),
+ * 				postingsPos (long, relative to postingsOffset)
+ * 	term data	the UTF-8 bytes of all terms, one after the other
+ * 	postings	per term, its CompressedPostingList (delta and variable-byte
+ * 				encoded blocks with a skip table)
+ * 	doc table	per document, the position of its metadata (long, relative
+ * 				to docDataOffset), followed by the encoded lengths of all
+ * 				documents (one byte each)
+ * 	doc data	per document: title, language, summary, release date
+ * 				(day, month, year as ints), author first name, last name,
+ * 				birthday (3 ints), residence, email. Strings are stored as
+ * 				their byte length (int) followed by their bytes. Then the
+ * 				number of stems and the number of words (both int, the
+ * 				latter -1 if the document has no positions), and per stem
+ * 				in the order of its WordCountsArray: its position in the
+ * 				term table (int), its count (int) and the byte length
+ * 				(int) and bytes of its positions, encoded as in
+ * 				TermPositions.
+ *
+ * */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+public class SegmentWriter {
+
+	static final int MAGIC = 0x53454731; // "SEG1"
+	static final int VERSION = 3;
+	static final int HEADER_SIZE = 4 * 4 + 6 * 8;
+	static final int TERM_ENTRY_SIZE = 3 * 4 + 8;
+
+
+	/*
+	 * Writes index to file, replacing the file if it exists.
+	 *
+	 * */
+
+	public static void write(InvertedIndex index, Path file) throws IOException {
+
+		/* the terms of the index, sorted by their UTF-8 bytes */
+
+		int termLimit = index.getDictionary().size();
+		int[] termIds = new int[index.getVocabularySize()];
+		int[] ords = new int[termLimit];
+		byte[][] termBytes = new byte[termIds.length][];
+		Integer[] order = new Integer[termIds.length];
+		int termCount = 0;
+
+		for(int termId = 0; termId < termLimit && termCount < termIds.length; termId++) {
+
+			if(index.getPostings(termId) != null) {
+
+				termIds[termCount] = termId;
+				termBytes[termCount] = index.getTerm(termId).getBytes(StandardCharsets.UTF_8);
+				order[termCount] = termCount;
+				termCount++;
+
+			}
+
+		}
+
+		Arrays.sort(order, 0, termCount, (a, b) -> Arrays.compareUnsigned(termBytes[a], termBytes[b]));
+
+		for(int i = 0; i < termCount; i++) {
+
+			ords[termIds[order[i]]] = i;
+
+		}
+
+		/* metadata of the documents */
+
+		int docCount = index.size();
+		long[] docPositions = new long[docCount];
+		ByteArrayOutputStream docData = new ByteArrayOutputStream();
+		DataOutputStream docOut = new DataOutputStream(docData);
+
+		PostingsCursor cursor = new PostingsCursor();
+
+		for(int docId = 0; docId < docCount; docId++) {
+
+			docPositions[docId] = docOut.size();
+			writeDocument(docOut, index, docId, ords, cursor);
+
+		}
+
+		docOut.flush();
+
+		/* offsets of the sections */
+
+		long termDataSize = 0;
+		long postingsSize = 0;
+		byte[][] postings = new byte[termCount][];
+
+		for(int i = 0; i < termCount; i++) {
+
+			postings[i] = CompressedPostingList.encodeToBytes(index.getPostings(termIds[i]));
+			termDataSize += termBytes[i].length;
+			postingsSize += postings[i].length;
+
+		}
+
+		long termTableOffset = HEADER_SIZE;
+		long termDataOffset = termTableOffset + (long) TERM_ENTRY_SIZE * termCount;
+		long postingsOffset = termDataOffset + termDataSize;
+		long docTableOffset = postingsOffset + postingsSize;
+		long docDataOffset = docTableOffset + 8L * docCount + docCount;
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try {
+
+			try(OutputStream os = Files.newOutputStream(tmp)) {
+
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(docCount);
+				out.writeInt(termCount);
+				out.writeLong(index.getTotalLength());
+				out.writeLong(termTableOffset);
+				out.writeLong(termDataOffset);
+				out.writeLong(postingsOffset);
+				out.writeLong(docTableOffset);
+				out.writeLong(docDataOffset);
+
+				int termDataPos = 0;
+				long postingsPos = 0;
+
+				for(int i = 0; i < termCount; i++) {
+
+					int t = order[i];
+					int docFreq = index.getPostings(termIds[t]).size();
+
+					out.writeInt(termDataPos);
+					out.writeInt(termBytes[t].length);
+					out.writeInt(docFreq);
+					out.writeLong(postingsPos);
+
+					termDataPos += termBytes[t].length;
+					postingsPos += postings[t].length;
+
+				}
+
+				for(int i = 0; i < termCount; i++) {
+
+					out.write(termBytes[order[i]]);
+
+				}
+
+				for(int i = 0; i < termCount; i++) {
+
+					out.write(postings[order[i]]);
+
+				}
+
+				for(int docId = 0; docId < docCount; docId++) {
+
+					out.writeLong(docPositions[docId]);
+
+				}
+
+				for(int docId = 0; docId < docCount; docId++) {
+
+					out.writeByte(index.getLengthCode(docId));
+
+				}
+
+				docData.writeTo(out);
+				out.flush();
+
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		}
+		catch(IOException | RuntimeException e) {
+
+			try {
+
+				Files.deleteIfExists(tmp);
+
+			}
+			catch(IOException suppressed) {
+
+				e.addSuppressed(suppressed);
+
+			}
+
+			throw e;
+
+		}
+
+	}
+
+
+	/*
+	 * Writes the metadata, word counts and positions of a document (see
+	 * above). The document no longer has its positions once it is indexed,
+	 * so they are read from the posting lists of its stems, with cursor.
+	 *
+	 * */
+
+	private static void writeDocument(DataOutputStream out, InvertedIndex index, int docId, int[] ords,
+			PostingsCursor cursor) throws IOException {
+
+		Document document = index.getDocument(docId);
+		TermDictionary dictionary = index.getDictionary();
+
+		writeString(out, document.getTitle());
+		writeString(out, document.getLanguage());
+		writeString(out, document.getSummary());
+		writeDate(out, document.getReleaseDate());
+
+		Author author = document.getAuthor();
+
+		writeString(out, author.getFirstName());
+		writeString(out, author.getLastName());
+		writeDate(out, author.getBirthday());
+		writeString(out, author.getResidence());
+		writeString(out, author.getEmail());
+
+		/* word counts and positions, see above */
+
+		WordCountsArray wca = document.getWordCounts();
+		int[] termIds = new int[wca.size()];
+		int[][] positions = new int[wca.size()][];
+		boolean hasPositions = true;
+		int tokenCount = 0;
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			termIds[i] = (wca.getDictionary() == dictionary) ? wca.getTermId(i) : dictionary.getId(wca.getWord(i));
+			cursor.reset(index.getPostings(termIds[i]));
+			cursor.advance(docId);
+			positions[i] = cursor.positions();
+
+			/* a document that was indexed without positions has none for any stem */
+
+			hasPositions &= positions[i].length > 0;
+			tokenCount += positions[i].length;
+
+		}
+
+		out.writeInt(wca.size());
+		out.writeInt(hasPositions ? tokenCount : -1);
+
+		byte[] data = new byte[0];
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			out.writeInt(ords[termIds[i]]);
+			out.writeInt(wca.getCount(i));
+
+			if(hasPositions) {
+
+				if(data.length < 5 * positions[i].length) {
+
+					data = new byte[5 * positions[i].length];
+
+				}
+
+				int length = 0;
+				int previous = 0;
+
+				for(int j = 0; j < positions[i].length; j++) {
+
+					length = PostingList.writeVInt(data, length, positions[i][j] - previous);
+					previous = positions[i][j];
+
+				}
+
+				out.writeInt(length);
+				out.write(data, 0, length);
+
+			}
+			else {
+
+				out.writeInt(0);
+
+			}
+
+		}
+
+	}
+
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+
+	}
+
+
+	private static void writeDate(DataOutputStream out, Date date) throws IOException {
+
+		out.writeInt(date.getDay());
+		out.writeInt(date.getMonth());
+		out.writeInt(date.getYear());
+
+	}
+
+}
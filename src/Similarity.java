@@ -0,0 +1,30 @@
+/*
+ * A scoring function of the RankingEngine. The score of a document for a
+ * query is the sum of score(termFreq, idf, norm) over all query terms the
+ * document contains. idf is computed once per query term and norm once per
+ * possible document length (see InvertedIndex.encodeLength), so that
+ * scoring a posting only costs a call of score.
+ * 
+ * */
+
+public interface Similarity {
+	
+	/* 
+	 * Weight of a term that occurs in docFreq of docCount documents.
+	 * 
+	 * */
+	
+	public float idf(int docFreq, int docCount);
+	
+	
+	/* 
+	 * Length normalization of a document with docLength words.
+	 * 
+	 * */
+	
+	public float norm(int docLength, float avgDocLength);
+	
+	
+	public float score(int termFreq, float idf, float norm);
+	
+}
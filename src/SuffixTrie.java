@@ -0,0 +1,150 @@
+/*
+ * A reverse trie over a fixed set of suffixes, such as Document.SUFFIXES.
+ * The suffixes are inserted from their last character to their first, so
+ * reading a word backwards walks down the trie, and the deepest node marked
+ * as the end of a suffix gives the longest suffix of the word. This takes
+ * at most as many steps as the longest suffix has characters, no matter how
+ * many suffixes there are.
+ *
+ * The trie is stored as a transition table (one row per node, one column
+ * per character that occurs in the suffixes), which is compiled once when
+ * the object is created.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class SuffixTrie {
+
+	/* column of each char below 256 in the transition table, -1 if unused */
+
+	private final int[] columns;
+	private final int alphabetSize;
+
+	/* transitions[node * alphabetSize + column] = child node, 0 = none */
+
+	private final int[] transitions;
+
+	/* length of the suffix ending at a node, 0 if no suffix ends there */
+
+	private final int[] suffixLengths;
+
+
+	public SuffixTrie(String[] suffixes) {
+
+		this.columns = new int[256];
+		Arrays.fill(this.columns, -1);
+
+		int alphabet = 0;
+		int nodes = 1;
+
+		for(int i = 0; i < suffixes.length; i++) {
+
+			for(int j = 0; j < suffixes[i].length(); j++) {
+
+				char c = suffixes[i].charAt(j);
+
+				if(c >= 256) {
+
+					throw new IllegalArgumentException("Unsupported character in suffix: " + suffixes[i]);
+
+				}
+
+				if(this.columns[c] < 0) {
+
+					this.columns[c] = alphabet++;
+
+				}
+
+			}
+
+			nodes += suffixes[i].length();
+
+		}
+
+		this.alphabetSize = (alphabet == 0) ? 1 : alphabet;
+		this.transitions = new int[nodes * this.alphabetSize];
+		this.suffixLengths = new int[nodes];
+
+		/* node 0 is the root, the next free node is 1 */
+
+		int next = 1;
+
+		for(int i = 0; i < suffixes.length; i++) {
+
+			String suffix = suffixes[i];
+			int node = 0;
+
+			for(int j = suffix.length() - 1; j >= 0; j--) {
+
+				int index = node * this.alphabetSize + this.columns[suffix.charAt(j)];
+
+				if(this.transitions[index] == 0) {
+
+					this.transitions[index] = next++;
+
+				}
+
+				node = this.transitions[index];
+
+			}
+
+			this.suffixLengths[node] = suffix.length();
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the length of the longest suffix that the word made up of
+	 * the characters of text between start and end ends with, or 0 if it
+	 * ends with none of them. A suffix is only matched if at least one
+	 * character of the word is left in front of it.
+	 *
+	 * */
+
+	public int longestSuffix(CharSequence text, int start, int end) {
+
+		int node = 0;
+		int longest = 0;
+
+		for(int i = end - 1; i > start; i--) {
+
+			char c = text.charAt(i);
+			int column = (c < 256) ? this.columns[c] : -1;
+
+			if(column < 0) {
+
+				break;
+
+			}
+
+			node = this.transitions[node * this.alphabetSize + column];
+
+			if(node == 0) {
+
+				break;
+
+			}
+
+			if(this.suffixLengths[node] > 0) {
+
+				longest = this.suffixLengths[node];
+
+			}
+
+		}
+
+		return longest;
+
+	}
+
+
+	public int longestSuffix(String word) {
+
+		return this.longestSuffix(word, 0, word.length());
+
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Maps word stems to dense int ids (0, 1, 2, ... in the order in which the
+ * stems are first added) and back. There is one global dictionary that all
+ * WordCountsArrays and indexes share by default, so every stem is stored as
+ * a String only once, and everything else (word counts, postings, term
+ * vectors) only stores its id.
+ *
+ * Documents are created in parallel (see BulkIngestor), so the dictionary
+ * can be used by many threads at once. Looking up a stem never blocks: the
+ * hash table is an array of immutable entries, and it is only replaced by
+ * a bigger copy, never changed in place except for filling empty slots.
+ * Adding a new stem takes a lock, and checks again under the lock whether
+ * another thread added the same stem in the meantime.
+ *
+ * */
+
+public class TermDictionary {
+
+	private static final TermDictionary GLOBAL = new TermDictionary();
+
+
+	/*
+	 * An entry of the hash table. All fields are final, so a thread that
+	 * sees the entry also sees its fields.
+	 *
+	 * */
+
+	private static final class Entry {
+
+		final String term;
+		final int hash;
+		final int id;
+
+
+		Entry(String term, int hash, int id) {
+
+			this.term = term;
+			this.hash = hash;
+			this.id = id;
+
+		}
+
+	}
+
+
+	/* open addressing hash table with a power of two length, at most half full */
+
+	private volatile Entry[] table;
+
+	/* terms[id] = stem */
+
+	private volatile String[] terms;
+
+	/* written last when a stem is added, so reading it first makes the stem visible */
+
+	private volatile int size;
+
+
+	public TermDictionary() {
+
+		this.table = new Entry[1024];
+		this.terms = new String[512];
+		this.size = 0;
+
+	}
+
+
+	/*
+	 * The dictionary shared by all WordCountsArrays and indexes that are not
+	 * given a dictionary of their own.
+	 *
+	 * */
+
+	public static TermDictionary getGlobal() {
+
+		return GLOBAL;
+
+	}
+
+
+	/*
+	 * Returns the number of stems in the dictionary. The ids of the stems
+	 * are 0 to size() - 1.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.size;
+
+	}
+
+
+	/*
+	 * Returns the stem with the given id, or null if there is no such id.
+	 *
+	 * */
+
+	public String getTerm(int id) {
+
+		if(id < 0 || id >= this.size) {
+
+			return null;
+
+		}
+
+		return this.terms[id];
+
+	}
+
+
+	/*
+	 * Returns the id of term, or -1 if the dictionary does not contain it.
+	 * Never adds the term, so it can be used to look up query words.
+	 *
+	 * */
+
+	public int getId(String term) {
+
+		if(term == null) {
+
+			return -1;
+
+		}
+
+		return this.getId(term, 0, term.length());
+
+	}
+
+
+	/*
+	 * Same as getId(term) for the characters of text between start and end.
+	 *
+	 * */
+
+	public int getId(CharSequence text, int start, int end) {
+
+		if(this.size == 0) {
+
+			return -1;
+
+		}
+
+		Entry entry = find(this.table, text, start, end, hash(text, start, end));
+
+		return (entry == null) ? -1 : entry.id;
+
+	}
+
+
+	/*
+	 * Returns the id of term, after adding it if it is new. Returns -1 for
+	 * null.
+	 *
+	 * */
+
+	public int add(String term) {
+
+		if(term == null) {
+
+			return -1;
+
+		}
+
+		return this.add(term, 0, term.length());
+
+	}
+
+
+	/*
+	 * Same as add(term) for the characters of text between start and end.
+	 * A String is only created if the stem is new.
+	 *
+	 * */
+
+	public int add(CharSequence text, int start, int end) {
+
+		int hash = hash(text, start, end);
+
+		/* reading size first makes all stems that were added before visible */
+
+		if(this.size > 0) {
+
+			Entry entry = find(this.table, text, start, end, hash);
+
+			if(entry != null) {
+
+				return entry.id;
+
+			}
+
+		}
+
+		return this.insert(text, start, end, hash);
+
+	}
+
+
+	private synchronized int insert(CharSequence text, int start, int end, int hash) {
+
+		Entry[] tab = this.table;
+		int mask = tab.length - 1;
+		int slot = mix(hash) & mask;
+
+		while(tab[slot] != null) {
+
+			Entry entry = tab[slot];
+
+			if(entry.hash == hash && regionEquals(entry.term, text, start, end)) {
+
+				return entry.id;
+
+			}
+
+			slot = (slot + 1) & mask;
+
+		}
+
+		int id = this.size;
+		String term = text.subSequence(start, end).toString();
+
+		if(id == this.terms.length) {
+
+			String[] tmp = new String[this.terms.length * 2];
+			System.arraycopy(this.terms, 0, tmp, 0, id);
+			this.terms = tmp;
+
+		}
+
+		this.terms[id] = term;
+		tab[slot] = new Entry(term, hash, id);
+
+		if((id + 1) * 2 > tab.length) {
+
+			this.table = rehash(tab);
+
+		}
+
+		this.size = id + 1;
+
+		return id;
+
+	}
+
+
+	private static Entry find(Entry[] tab, CharSequence text, int start, int end, int hash) {
+
+		int mask = tab.length - 1;
+		int slot = mix(hash) & mask;
+		Entry entry;
+
+		while((entry = tab[slot]) != null) {
+
+			if(entry.hash == hash && regionEquals(entry.term, text, start, end)) {
+
+				return entry;
+
+			}
+
+			slot = (slot + 1) & mask;
+
+		}
+
+		return null;
+
+	}
+
+
+	/*
+	 * Returns a table twice the size with the same entries. The old table
+	 * stays valid for threads that are still reading it.
+	 *
+	 * */
+
+	private static Entry[] rehash(Entry[] tab) {
+
+		Entry[] tmp = new Entry[tab.length * 2];
+		int mask = tmp.length - 1;
+
+		for(int i = 0; i < tab.length; i++) {
+
+			if(tab[i] != null) {
+
+				int slot = mix(tab[i].hash) & mask;
+
+				while(tmp[slot] != null) {
+
+					slot = (slot + 1) & mask;
+
+				}
+
+				tmp[slot] = tab[i];
+
+			}
+
+		}
+
+		return tmp;
+
+	}
+
+
+	private static boolean regionEquals(String term, CharSequence text, int start, int end) {
+
+		if(term.length() != end - start) {
+
+			return false;
+
+		}
+
+		for(int i = 0; i < term.length(); i++) {
+
+			if(term.charAt(i) != text.charAt(start + i)) {
+
+				return false;
+
+			}
+
+		}
+
+		return true;
+
+	}
+
+
+	/*
+	 * Computes the same value as String.hashCode() would for the given
+	 * characters, without creating the String.
+	 *
+	 * */
+
+	static int hash(CharSequence text, int start, int end) {
+
+		int hash = 0;
+
+		for(int i = start; i < end; i++) {
+
+			hash = 31 * hash + text.charAt(i);
+
+		}
+
+		return hash;
+
+	}
+
+
+	/*
+	 * Spreads the bits of the hash, whose lower bits are weak for short
+	 * words.
+	 *
+	 * */
+
+	static int mix(int hash) {
+
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * The positions of the words of a document: for every stem of its
+ * WordCountsArray (by index), the positions (0 for the first word of the
+ * content, 1 for the second, ...) at which the stem occurs. Recorded by
+ * Document while the content is tokenized, and used by PhraseQuery to find
+ * words that follow each other or occur close together.
+ *
+ * The positions of a stem are stored in ascending order as the differences
+ * (deltas) to the previous position, as variable-byte integers (7 bits per
+ * byte, the highest bit marks that another byte follows), all stems one
+ * after the other in a single byte array. Most deltas fit into one or two
+ * bytes, so the positions take little more memory than the content has
+ * words. They are only decoded when a query asks for the positions of a
+ * stem, so searches that do not need positions never pay for them.
+ *
+ * While the content is tokenized, a Builder appends the delta of every
+ * word to a small byte array of its stem, which doubles when it is full.
+ * So the positions are compressed as they arrive, chunk by chunk, and never
+ * held as one int per word; build() then copies the arrays of all stems
+ * into one. The InvertedIndex copies the encoded positions of every stem
+ * into its posting list as they are (see PostingList).
+ *
+ * A TermPositions is immutable.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class TermPositions {
+
+	static final TermPositions EMPTY = new TermPositions(new byte[0], new int[1], new int[0], 0);
+
+	private static final int[] NO_POSITIONS = new int[0];
+
+	private byte[] data;
+	private int[] offsets;
+	private int[] counts;
+	private int tokenCount;
+
+
+	/*
+	 * Wraps the encoded positions of counts.length stems; those of stem i
+	 * are the bytes from offsets[i] to offsets[i + 1] of data. Used by the
+	 * Builder and by Segment, which restores the positions from a file.
+	 *
+	 * */
+
+	TermPositions(byte[] data, int[] offsets, int[] counts, int tokenCount) {
+
+		this.data = data;
+		this.offsets = offsets;
+		this.counts = counts;
+		this.tokenCount = tokenCount;
+
+	}
+
+
+	/*
+	 * Collects the positions of the words of a content one after the other
+	 * (see above).
+	 *
+	 * */
+
+	static class Builder {
+
+		private byte[][] lists = new byte[16][];
+		private int[] lengths = new int[16];
+		private int[] last = new int[16];
+		private int[] counts = new int[16];
+		private int termCount;
+		private int tokenCount;
+
+
+		/*
+		 * Records the next word of the content, whose stem has the given
+		 * index (in the WordCountsArray).
+		 *
+		 * */
+
+		void add(int index) {
+
+			if(index >= this.lists.length) {
+
+				int length = Math.max(index + 1, this.lists.length * 2);
+				this.lists = Arrays.copyOf(this.lists, length);
+				this.lengths = Arrays.copyOf(this.lengths, length);
+				this.last = Arrays.copyOf(this.last, length);
+				this.counts = Arrays.copyOf(this.counts, length);
+
+			}
+
+			byte[] list = this.lists[index];
+
+			if(list == null) {
+
+				list = this.lists[index] = new byte[4];
+
+			}
+			else if(this.lengths[index] + 5 > list.length) {
+
+				list = this.lists[index] = Arrays.copyOf(list, list.length * 2);
+
+			}
+
+			int position = this.tokenCount++;
+			this.lengths[index] = writeVInt(list, this.lengths[index], position - this.last[index]);
+			this.last[index] = position;
+			this.counts[index]++;
+			this.termCount = Math.max(this.termCount, index + 1);
+
+		}
+
+
+		int getTokenCount() {
+
+			return this.tokenCount;
+
+		}
+
+
+		/*
+		 * Returns the positions of all words recorded so far, for the
+		 * stems with the indices 0 to termCount - 1.
+		 *
+		 * */
+
+		TermPositions build(int termCount) {
+
+			termCount = Math.max(termCount, this.termCount);
+			int[] offsets = new int[termCount + 1];
+
+			for(int index = 0; index < termCount; index++) {
+
+				offsets[index + 1] = offsets[index] + ((index < this.termCount) ? this.lengths[index] : 0);
+
+			}
+
+			byte[] data = new byte[offsets[termCount]];
+
+			for(int index = 0; index < this.termCount; index++) {
+
+				if(this.lists[index] != null) {
+
+					System.arraycopy(this.lists[index], 0, data, offsets[index], this.lengths[index]);
+
+				}
+
+			}
+
+			return new TermPositions(data, offsets, Arrays.copyOf(this.counts, termCount), this.tokenCount);
+
+		}
+
+	}
+
+
+	private static int writeVInt(byte[] out, int position, int value) {
+
+		while((value & ~0x7F) != 0) {
+
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+
+		}
+
+		out[position++] = (byte) value;
+
+		return position;
+
+	}
+
+
+	/*
+	 * Returns the number of stems with positions.
+	 *
+	 * */
+
+	public int size() {
+
+		return this.counts.length;
+
+	}
+
+
+	/*
+	 * Returns the number of words of the content, i.e. the number of
+	 * positions of all stems together.
+	 *
+	 * */
+
+	public int getTokenCount() {
+
+		return this.tokenCount;
+
+	}
+
+
+	/*
+	 * Returns how often the stem with the given index occurs, which is the
+	 * number of its positions.
+	 *
+	 * */
+
+	public int getCount(int index) {
+
+		if(index < 0 || index >= this.counts.length) {
+
+			return 0;
+
+		}
+
+		return this.counts[index];
+
+	}
+
+
+	/*
+	 * Decodes the positions of the stem with the given index, in ascending
+	 * order. Returns an empty array if there is no such stem.
+	 *
+	 * */
+
+	public int[] getPositions(int index) {
+
+		if(index < 0 || index >= this.counts.length) {
+
+			return NO_POSITIONS;
+
+		}
+
+		int[] positions = new int[this.counts[index]];
+		int offset = this.offsets[index];
+		int previous = 0;
+
+		for(int i = 0; i < positions.length; i++) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = this.data[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			}
+			while(b < 0);
+
+			previous += value;
+			positions[i] = previous;
+
+		}
+
+		return positions;
+
+	}
+
+
+	/*
+	 * The encoded positions of all stems. Returns the array itself, so it
+	 * must not be changed.
+	 *
+	 * */
+
+	byte[] getData() {
+
+		return this.data;
+
+	}
+
+
+	/*
+	 * Position in getData() of the first byte of the positions of the stem
+	 * with the given index; they end where those of index + 1 start.
+	 *
+	 * */
+
+	int getOffset(int index) {
+
+		return this.offsets[index];
+
+	}
+
+
+	/*
+	 * Returns the size of the encoded positions in bytes.
+	 *
+	 * */
+
+	public int sizeInBytes() {
+
+		return this.data.length;
+
+	}
+
+}
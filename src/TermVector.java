@@ -0,0 +1,141 @@
+/*
+ * The word counts of a document frozen into a sparse vector: the ids of its
+ * terms (see InvertedIndex.getTermId) in ascending order, each with a weight,
+ * and the Euclidean norm of the vector, which is computed once when the
+ * vector is created. Because both vectors are sorted by term id, the cosine
+ * similarity of two documents is a single merge of the two arrays.
+ *
+ * The weight of a term is 1 + ln(count), so that a word occurring very often
+ * in a document does not dominate its vector.
+ *
+ * */
+
+import java.util.Arrays;
+
+public class TermVector {
+
+	private int[] termIds;
+	private float[] weights;
+	private float norm;
+
+
+	/*
+	 * Creates the vector of the first n terms and counts of the arrays,
+	 * which need not be sorted. Terms with a count below 1 are left out.
+	 *
+	 * */
+
+	public TermVector(int[] termIds, int[] counts, int n) {
+
+		/* sort by term id, keeping track of the counts: id in the upper, index in the lower half */
+
+		long[] pairs = new long[n];
+		int size = 0;
+
+		for(int i = 0; i < n; i++) {
+
+			if(counts[i] > 0) {
+
+				pairs[size++] = ((long) termIds[i] << 32) | i;
+
+			}
+
+		}
+
+		Arrays.sort(pairs, 0, size);
+
+		this.termIds = new int[size];
+		this.weights = new float[size];
+
+		double sum = 0;
+
+		for(int i = 0; i < size; i++) {
+
+			this.termIds[i] = (int) (pairs[i] >>> 32);
+			this.weights[i] = (float) (1 + Math.log(counts[(int) pairs[i]]));
+			sum += this.weights[i] * this.weights[i];
+
+		}
+
+		this.norm = (float) Math.sqrt(sum);
+
+	}
+
+
+	public int size() {
+
+		return this.termIds.length;
+
+	}
+
+
+	public int getTermId(int index) {
+
+		return this.termIds[index];
+
+	}
+
+
+	public float getWeight(int index) {
+
+		return this.weights[index];
+
+	}
+
+
+	public float getNorm() {
+
+		return this.norm;
+
+	}
+
+
+	public float dot(TermVector other) {
+
+		int i = 0;
+		int j = 0;
+		double sum = 0;
+
+		while(i < this.termIds.length && j < other.termIds.length) {
+
+			if(this.termIds[i] < other.termIds[j]) {
+
+				i++;
+
+			}
+			else if(this.termIds[i] > other.termIds[j]) {
+
+				j++;
+
+			}
+			else {
+
+				sum += this.weights[i++] * other.weights[j++];
+
+			}
+
+		}
+
+		return (float) sum;
+
+	}
+
+
+	/*
+	 * Returns the cosine similarity, between 0 (no common term) and 1.
+	 *
+	 * */
+
+	public float cosine(TermVector other) {
+
+		if(other == null || this.norm == 0 || other.norm == 0) {
+
+			return 0;
+
+		}
+
+		return this.dot(other) / (this.norm * other.norm);
+
+	}
+
+}
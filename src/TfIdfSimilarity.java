@@ -0,0 +1,30 @@
+/*
+ * Classic TF-IDF: the square root of the term frequency, weighted by the
+ * inverse document frequency and divided by the square root of the length
+ * of the document.
+ * 
+ * */
+
+public class TfIdfSimilarity implements Similarity {
+	
+	public float idf(int docFreq, int docCount) {
+		
+		return (float) (1 + Math.log((docCount + 1.0) / (docFreq + 1.0)));
+		
+	}
+	
+	
+	public float norm(int docLength, float avgDocLength) {
+		
+		return (docLength < 1) ? 1 : (float) (1 / Math.sqrt(docLength));
+		
+	}
+	
+	
+	public float score(int termFreq, float idf, float norm) {
+		
+		return (float) Math.sqrt(termFreq) * idf * norm;
+		
+	}
+	
+}
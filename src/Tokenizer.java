@@ -0,0 +1,193 @@
+/*
+ * Splits a text into single words in one pass. The tokenizer does not create
+ * any objects while it runs: next() moves a cursor to the following word and
+ * start() and end() return its offsets in the text. A String is only created
+ * when token() is called, e.g. when a new word is stored.
+ *
+ * Words are separated by whitespace (spaces, tabs, line breaks). Opening
+ * brackets and quotes at the beginning of a word, as well as dots, commas,
+ * colons, semicolons, closing brackets, quotes, question marks and
+ * exclamation marks at its end are not part of the word.
+ *
+ * */
+
+public class Tokenizer {
+
+	private CharSequence text;
+	private int position;
+	private int limit;
+	private int tokenStart;
+	private int tokenEnd;
+
+
+	public Tokenizer() {
+
+		this.reset("");
+
+	}
+
+
+	public Tokenizer(CharSequence text) {
+
+		this.reset(text);
+
+	}
+
+
+	/*
+	 * Restarts the tokenizer on a new text, so that one instance can be
+	 * reused for many texts.
+	 *
+	 * */
+
+	public void reset(CharSequence text) {
+
+		if(text == null) {
+
+			text = "";
+
+		}
+
+		this.reset(text, 0, text.length());
+
+	}
+
+
+	/*
+	 * Restarts the tokenizer on the characters of text between from
+	 * (inclusive) and to (exclusive).
+	 *
+	 * */
+
+	public void reset(CharSequence text, int from, int to) {
+
+		this.text = text;
+		this.position = from;
+		this.limit = to;
+		this.tokenStart = from;
+		this.tokenEnd = from;
+
+	}
+
+
+	/*
+	 * Moves to the next word. Returns false if there are no more words,
+	 * in which case start() and end() are no longer meaningful.
+	 *
+	 * */
+
+	public boolean next() {
+
+		while(this.position < this.limit) {
+
+			/* skip separators */
+
+			while(this.position < this.limit && Character.isWhitespace(this.text.charAt(this.position))) {
+
+				this.position++;
+
+			}
+
+			int start = this.position;
+
+			while(this.position < this.limit && !Character.isWhitespace(this.text.charAt(this.position))) {
+
+				this.position++;
+
+			}
+
+			int end = this.position;
+
+			/* skip opening brackets or quotes, and punctuation at the end */
+
+			while(start < end && isLeading(this.text.charAt(start))) {
+
+				start++;
+
+			}
+
+			while(end > start && isTrailing(this.text.charAt(end-1))) {
+
+				end--;
+
+			}
+
+			if(start < end) {
+
+				this.tokenStart = start;
+				this.tokenEnd = end;
+				return true;
+
+			}
+
+		}
+
+		return false;
+
+	}
+
+
+	private static boolean isLeading(char c) {
+
+		return c == '(' || c == '"';
+
+	}
+
+
+	private static boolean isTrailing(char c) {
+
+		return c == ',' || c == '.' || c == ':' || c == ';' || c == ')' || c == '"' || c == '?' || c == '!';
+
+	}
+
+
+	public CharSequence getText() {
+
+		return this.text;
+
+	}
+
+
+	/*
+	 * Offset of the first character of the current word.
+	 *
+	 * */
+
+	public int start() {
+
+		return this.tokenStart;
+
+	}
+
+
+	/*
+	 * Offset after the last character of the current word.
+	 *
+	 * */
+
+	public int end() {
+
+		return this.tokenEnd;
+
+	}
+
+
+	public int length() {
+
+		return this.tokenEnd - this.tokenStart;
+
+	}
+
+
+	/*
+	 * Creates a String of the current word.
+	 *
+	 * */
+
+	public String token() {
+
+		return this.text.subSequence(this.tokenStart, this.tokenEnd).toString();
+
+	}
+
+}
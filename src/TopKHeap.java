@@ -0,0 +1,217 @@
+/*
+ * Keeps the k best (doc id, score) pairs of a search. The pairs are stored
+ * in a min-heap of size k, so the worst of the current best k is at the
+ * root and a new pair only has to be compared with it. Offering n pairs
+ * costs O(n log k), and no pair but the k best is ever stored. Among equal
+ * scores the smaller doc id wins.
+ * 
+ * */
+
+import java.util.Arrays;
+
+public class TopKHeap {
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private int[] docIds;
+	private float[] scores;
+	private int size;
+	private int k;
+	
+	
+	/* 
+	 * Creates a heap for the k best pairs. The arrays start small and grow
+	 * (doubling) up to k as pairs arrive, so a huge k, like 
+	 * Integer.MAX_VALUE for "all matches", only costs memory for the pairs 
+	 * that are actually offered.
+	 * 
+	 * */
+	
+	public TopKHeap(int k) {
+		
+		if(k < 0) {
+			
+			k = 0;
+			
+		}
+		
+		this.k = k;
+		this.docIds = new int[Math.min(k, INITIAL_CAPACITY)];
+		this.scores = new float[this.docIds.length];
+		this.size = 0;
+		
+	}
+	
+	
+	/* 
+	 * Adds the pair if it belongs to the best k seen so far. Returns true
+	 * if it was added.
+	 * 
+	 * */
+	
+	public boolean offer(int docId, float score) {
+		
+		if(this.size < this.k) {
+			
+			if(this.size == this.docIds.length) {
+				
+				this.grow();
+				
+			}
+			
+			int i = this.size++;
+			
+			/* sift up */
+			
+			while(i > 0) {
+				
+				int parent = (i - 1) >>> 1;
+				
+				if(!worse(docId, score, this.docIds[parent], this.scores[parent])) {
+					
+					break;
+					
+				}
+				
+				this.docIds[i] = this.docIds[parent];
+				this.scores[i] = this.scores[parent];
+				i = parent;
+				
+			}
+			
+			this.docIds[i] = docId;
+			this.scores[i] = score;
+			return true;
+			
+		}
+		
+		if(this.size == 0 || !worse(this.docIds[0], this.scores[0], docId, score)) {
+			
+			return false;
+			
+		}
+		
+		this.replaceRoot(docId, score);
+		return true;
+		
+	}
+	
+	
+	/* 
+	 * The lowest score that still makes it into the heap once it is full,
+	 * or negative infinity while it is not full yet.
+	 * 
+	 * */
+	
+	public float threshold() {
+		
+		return (this.size < this.k || this.size == 0) ? Float.NEGATIVE_INFINITY : this.scores[0];
+		
+	}
+	
+	
+	public int size() {
+		
+		return this.size;
+		
+	}
+	
+	
+	/* 
+	 * Empties the heap and returns the doc ids, best first. The scores are
+	 * written to scores, if it is not null.
+	 * 
+	 * */
+	
+	public int[] drain(float[] scores) {
+		
+		int[] result = new int[this.size];
+		
+		for(int i = this.size - 1; i >= 0; i--) {
+			
+			result[i] = this.docIds[0];
+			
+			if(scores != null && i < scores.length) {
+				
+				scores[i] = this.scores[0];
+				
+			}
+			
+			int lastId = this.docIds[this.size - 1];
+			float lastScore = this.scores[this.size - 1];
+			this.size--;
+			
+			if(this.size > 0) {
+				
+				this.replaceRoot(lastId, lastScore);
+				
+			}
+			
+		}
+		
+		return result;
+		
+	}
+	
+	
+	private void grow() {
+		
+		int capacity = (int) Math.min(this.k, 2L * this.docIds.length);
+		this.docIds = Arrays.copyOf(this.docIds, capacity);
+		this.scores = Arrays.copyOf(this.scores, capacity);
+		
+	}
+	
+	
+	/* 
+	 * Puts the pair at the root and sifts it down.
+	 * 
+	 * */
+	
+	private void replaceRoot(int docId, float score) {
+		
+		int i = 0;
+		int half = this.size >>> 1;
+		
+		while(i < half) {
+			
+			int child = 2 * i + 1;
+			int right = child + 1;
+			
+			if(right < this.size && worse(this.docIds[right], this.scores[right], this.docIds[child], 
+					this.scores[child])) {
+				
+				child = right;
+				
+			}
+			
+			if(!worse(this.docIds[child], this.scores[child], docId, score)) {
+				
+				break;
+				
+			}
+			
+			this.docIds[i] = this.docIds[child];
+			this.scores[i] = this.scores[child];
+			i = child;
+			
+		}
+		
+		this.docIds[i] = docId;
+		this.scores[i] = score;
+		
+	}
+	
+	
+	/* 
+	 * Returns true if pair 1 ranks below pair 2.
+	 * 
+	 * */
+	
+	private static boolean worse(int docId1, float score1, int docId2, float score2) {
+		
+		return score1 < score2 || (score1 == score2 && docId1 > docId2);
+		
+	}
+	
+}
@@ -1,151 +1,476 @@
 /*
  * This class manages the frequencies of the different words in a document.
- * Therefore, each instance of the Document class has an instance of this 
- * class (WordCountsArray), which in turn contains many different instances
- * of the WordCount class.
- * 
+ * Therefore, each instance of the Document class has an instance of this
+ * class (WordCountsArray).
+ *
+ * The words themselves are kept in a TermDictionary (by default the global
+ * one, shared by all documents), and this array only stores their int ids
+ * and counts, in two parallel arrays in the order in which the words were
+ * first added. An open addressing hash table (linear probing) maps each id
+ * to its index, and adding a word that is already present increments its
+ * count in place.
+ *
  * */
 
 public class WordCountsArray {
 
-	private WordCount[] wca;
+	private TermDictionary dictionary;
+	private int[] termIds;
+	private int[] counts;
 	private int nextEmptyPos;
-	
-	
+
+	/*
+	 * Hash table with a power of two length. Each slot holds the index of a
+	 * term id + 1, so that 0 marks an empty slot. The table is kept at most
+	 * half full.
+	 *
+	 * */
+
+	private int[] slots;
+
+
 	public WordCountsArray(int initSize) {
-		
+
+		this(initSize, TermDictionary.getGlobal());
+
+	}
+
+
+	public WordCountsArray(int initSize, TermDictionary dictionary) {
+
 		if(initSize < 1) {
-			
-			this.wca = new WordCount[1];
-			
-		}
-		else {
-			
-			this.wca = new WordCount[initSize];
-			
+
+			initSize = 1;
+
 		}
-		
+
+		this.dictionary = (dictionary == null) ? TermDictionary.getGlobal() : dictionary;
+		this.termIds = new int[initSize];
+		this.counts = new int[initSize];
+		this.slots = new int[tableSizeFor(initSize)];
 		this.nextEmptyPos = 0;
-		
+
 	}
-	
-	
+
+
+	public TermDictionary getDictionary() {
+
+		return this.dictionary;
+
+	}
+
+
+	/*
+	 * Returns a copy of the contents as WordCount objects, in the order
+	 * in which the words were first added.
+	 *
+	 * */
+
 	public WordCount[] getWordCount() {
-		
-		return this.wca;
-		
-	}
-	
-	
-	public void add(String word, int count) {	
-		
+
+		WordCount[] wc = new WordCount[this.nextEmptyPos];
+
+		for(int i = 0; i < this.nextEmptyPos; i++) {
+
+			wc[i] = new WordCount(this.getWord(i), this.counts[i]);
+
+		}
+
+		return wc;
+
+	}
+
+
+	/*
+	 * Adds count to the frequency of word. A word that is not yet
+	 * contained is appended at the end; negative counts are stored as 0,
+	 * the same way WordCount handles them.
+	 *
+	 * */
+
+	public void add(String word, int count) {
+
 		if(word == null || word.isEmpty() || word.equals(" ")) {
-			
-			return; 
-			
-		}
-		
-		WordCount wc = new WordCount(word, count);
-		
-		/* 
-		 * if array full (too small), create new array with double
-		 * the size and copy old wca to new array. re-link wca to
-		 * reference the new (copied version) array.
-		 * 
+
+			return;
+
+		}
+
+		this.addTermId(this.dictionary.add(word), count);
+
+	}
+
+
+	/*
+	 * Same as add(word, count) for the word made up of the characters of
+	 * text between start (inclusive) and end (exclusive). A String is only
+	 * created if the word is new to the dictionary, which lets the
+	 * Tokenizer feed words into the array without creating a String per
+	 * word.
+	 *
+	 * */
+
+	public void add(CharSequence text, int start, int end, int count) {
+
+		if(text == null || start < 0 || end > text.length() || start >= end) {
+
+			return;
+
+		}
+
+		this.addTermId(this.dictionary.add(text, start, end), count);
+
+	}
+
+
+	/*
+	 * Same as add(word, count) for the word with the given id in the
+	 * dictionary of this array.
+	 *
+	 * */
+
+	public void addTermId(int termId, int count) {
+
+		this.addTermIdAt(termId, count);
+
+	}
+
+
+	/*
+	 * Same as add(text, start, end, 1), but returns the index of the word,
+	 * or -1 if nothing was added. Used by Document to record the position
+	 * of every word (see TermPositions).
+	 *
+	 * */
+
+	int addToken(CharSequence text, int start, int end) {
+
+		if(text == null || start < 0 || end > text.length() || start >= end) {
+
+			return -1;
+
+		}
+
+		return this.addTermIdAt(this.dictionary.add(text, start, end), 1);
+
+	}
+
+
+	/*
+	 * Adds count to the frequency of the word with the given id and
+	 * returns its index, or -1 if termId is invalid.
+	 *
+	 * */
+
+	private int addTermIdAt(int termId, int count) {
+
+		if(termId < 0) {
+
+			return -1;
+
+		}
+
+		int slot = this.findSlot(termId);
+		int index = this.slots[slot] - 1;
+
+		if(index >= 0) {
+
+			if(count > 0) {
+
+				this.counts[index] += count;
+
+			}
+
+			return index;
+
+		}
+
+		/*
+		 * if array full (too small), create new arrays with double
+		 * the size and copy the old ones.
+		 *
 		 * */
-		
-		if(this.nextEmptyPos == this.wca.length) {
-			
+
+		if(this.nextEmptyPos == this.termIds.length) {
+
 			increaseSize();
-			
+
+		}
+
+		index = this.nextEmptyPos;
+		this.termIds[index] = termId;
+		this.counts[index] = (count < 0) ? 0 : count;
+		this.slots[slot] = ++this.nextEmptyPos;
+
+		/* keep the table at most half full */
+
+		if(this.nextEmptyPos * 2 > this.slots.length) {
+
+			rehash();
+
+		}
+
+		return index;
+
+	}
+
+
+	/*
+	 * Adds the counts of all words of wca to this array, e.g. to merge
+	 * the word counts of several documents.
+	 *
+	 * */
+
+	public void addAll(WordCountsArray wca) {
+
+		if(wca == null) return;
+
+		boolean sameDictionary = wca.getDictionary() == this.dictionary;
+
+		for(int i = 0; i < wca.size(); i++) {
+
+			if(sameDictionary) {
+
+				this.addTermId(wca.getTermId(i), wca.getCount(i));
+
+			}
+			else {
+
+				this.add(wca.getWord(i), wca.getCount(i));
+
+			}
+
+		}
+
+	}
+
+
+	/*
+	 * Returns the slot of termId in the hash table, or the empty slot at
+	 * which it would have to be inserted.
+	 *
+	 * */
+
+	private int findSlot(int termId) {
+
+		int mask = this.slots.length - 1;
+		int slot = TermDictionary.mix(termId) & mask;
+
+		while(this.slots[slot] != 0 && this.termIds[this.slots[slot] - 1] != termId) {
+
+			slot = (slot + 1) & mask;
+
 		}
-		
-		this.wca[this.nextEmptyPos++] = wc;
-		
+
+		return slot;
+
 	}
-	
-	
-	/* 
-	 * Helper method for add(word, count).
-	 * 
+
+
+	/*
+	 * Helper method for addTermId(termId, count).
+	 *
 	 * */
-	
+
 	private void increaseSize() {
-		
-		WordCount[] tmp = new WordCount[this.wca.length * 2];
-		
+
+		int[] tmpIds = new int[this.termIds.length * 2];
+		int[] tmpCounts = new int[this.termIds.length * 2];
+
+		System.arraycopy(this.termIds, 0, tmpIds, 0, this.nextEmptyPos);
+		System.arraycopy(this.counts, 0, tmpCounts, 0, this.nextEmptyPos);
+
+		/* re-link to reference the new arrays - old ones will be deleted by GC */
+
+		this.termIds = tmpIds;
+		this.counts = tmpCounts;
+
+	}
+
+
+	/*
+	 * Doubles the hash table and re-inserts the indices of all term ids.
+	 *
+	 * */
+
+	private void rehash() {
+
+		int[] tmp = new int[this.slots.length * 2];
+		int mask = tmp.length - 1;
+
 		for(int i = 0; i < this.nextEmptyPos; i++) {
-			
-			tmp[i] = this.wca[i];
-			
-		}
-		
-		/* re-link wca to reference new array - tmp will be deleted by GC */
-		
-		this.wca = tmp;
-		
-	}
-	
-	
+
+			int slot = TermDictionary.mix(this.termIds[i]) & mask;
+
+			while(tmp[slot] != 0) {
+
+				slot = (slot + 1) & mask;
+
+			}
+
+			tmp[slot] = i + 1;
+
+		}
+
+		this.slots = tmp;
+
+	}
+
+
+	/*
+	 * Smallest power of two that keeps n entries at most half full.
+	 *
+	 * */
+
+	private static int tableSizeFor(int n) {
+
+		int size = 2;
+
+		while(size < n * 2) {
+
+			size <<= 1;
+
+		}
+
+		return size;
+
+	}
+
+
 	public int size() {
-		
+
 		return this.nextEmptyPos;
-		
+
+	}
+
+
+	/*
+	 * Returns the index of word, or -1 if word is not contained.
+	 *
+	 * */
+
+	public int indexOf(String word) {
+
+		return this.indexOfTermId(this.dictionary.getId(word));
+
+	}
+
+
+	/*
+	 * Returns the index of the word with the given id, or -1 if it is not
+	 * contained.
+	 *
+	 * */
+
+	public int indexOfTermId(int termId) {
+
+		if(termId < 0) {
+
+			return -1;
+
+		}
+
+		return this.slots[this.findSlot(termId)] - 1;
+
 	}
-	
-	
+
+
 	public String getWord(int index) {
-		
-		if(index < 0 && index >= this.nextEmptyPos) {
-			
+
+		if(index < 0 || index >= this.nextEmptyPos) {
+
 			return "";
-			
+
+		}
+
+		return this.dictionary.getTerm(this.termIds[index]);
+
+	}
+
+
+	public int getTermId(int index) {
+
+		if(index < 0 || index >= this.nextEmptyPos) {
+
+			return -1;
+
 		}
-		
-		return this.wca[index].getWord();
-		
+
+		return this.termIds[index];
+
 	}
-	
-	
+
+
 	public int getCount(int index) {
-		
-		if(index < 0 && index >= this.nextEmptyPos) {
-			
+
+		if(index < 0 || index >= this.nextEmptyPos) {
+
 			return -1;
-			
+
 		}
-		
-		return this.wca[index].getCount();
-		
+
+		return this.counts[index];
+
 	}
-	
-	
+
+
+	/*
+	 * Returns the frequency of word, or 0 if word is not contained.
+	 *
+	 * */
+
+	public int getCount(String word) {
+
+		int index = this.indexOf(word);
+
+		return (index < 0) ? 0 : this.counts[index];
+
+	}
+
+
 	public void setCount(int index, int count) {
-		
-		if(index < 0 && index >= this.nextEmptyPos) {
-			
+
+		if(index < 0 || index >= this.nextEmptyPos || count < 0) {
+
 			return;
-			
+
 		}
-		
-		this.wca[index].setCount(count);
-		
+
+		this.counts[index] = count;
+
 	}
-	
-	
+
+
+	/*
+	 * Returns true only if both contain the same words with the same
+	 * counts, regardless of the order in which the words were added.
+	 *
+	 * */
+
 	public boolean equals(WordCountsArray wca) {
-		
-		if(wca != null && this.wca.equals(wca.getWordCount())) {
-			
-			return true;
-			
-		}
-		else {
-			
+
+		if(wca == null || this.nextEmptyPos != wca.size()) {
+
 			return false;
-			
+
 		}
-		
+
+		boolean sameDictionary = wca.getDictionary() == this.dictionary;
+
+		for(int i = 0; i < this.nextEmptyPos; i++) {
+
+			int index = sameDictionary ? wca.indexOfTermId(this.termIds[i]) : wca.indexOf(this.getWord(i));
+
+			if(index < 0 || wca.getCount(index) != this.counts[i]) {
+
+				return false;
+
+			}
+
+		}
+
+		return true;
+
 	}
-	
+
 }
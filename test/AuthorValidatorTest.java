@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class AuthorValidatorTest {
+
+	private static final Pattern EMAIL = Pattern.compile(AuthorValidator.EMAIL_REGEX);
+
+
+	@Test
+	void acceptsTheEmailsOfTheGrammar() {
+
+		String[] valid = { "a@b.de", "max_mustermann@example.com", "A1@x.y.z.org", "_@_.ab", "x@1.2.3.info" };
+		String[] invalid = { null, "", "@b.de", "a@", "a@b", "a@b.", "a@.de", "a@b..de", "a@b.d", "a@b.De",
+				"a@b.d1", "a.b@c.de", "a@b@c.de", "a-b@c.de", "a@b.de ", " a@b.de", "\u00e4@b.de", "a@b.d\u00e9" };
+
+		for(int i = 0; i < valid.length; i++) {
+
+			assertTrue(AuthorValidator.isValidEmail(valid[i]), valid[i]);
+			assertTrue(EMAIL.matcher(valid[i]).matches(), valid[i]);
+
+		}
+
+		for(int i = 0; i < invalid.length; i++) {
+
+			assertFalse(AuthorValidator.isValidEmail(invalid[i]), invalid[i]);
+
+		}
+
+	}
+
+
+	@Test
+	void matchesTheRegexOnRandomStrings() {
+
+		String alphabet = "abZ09_@.-\u00e4";
+		Random random = new Random(13);
+
+		for(int n = 0; n < 200000; n++) {
+
+			StringBuilder email = new StringBuilder();
+			int length = random.nextInt(10);
+
+			for(int i = 0; i < length; i++) {
+
+				email.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+			}
+
+			String s = email.toString();
+
+			assertEquals(EMAIL.matcher(s).matches(), AuthorValidator.isValidEmail(s), s);
+
+		}
+
+	}
+
+
+	@Test
+	void acceptsLettersOnlyInNames() {
+
+		assertTrue(AuthorValidator.isValidName("Anna"));
+		assertTrue(AuthorValidator.isValidName("J\u00fcrgen"));
+		assertTrue(AuthorValidator.isValidName(""));
+		assertFalse(AuthorValidator.isValidName(null));
+		assertFalse(AuthorValidator.isValidName("Anna-Lena"));
+		assertFalse(AuthorValidator.isValidName("Anna1"));
+		assertFalse(AuthorValidator.isValidName("@nna"));
+
+		assertEquals(AuthorValidator.FIRST_NAME | AuthorValidator.BIRTHDAY | AuthorValidator.EMAIL,
+				AuthorValidator.validate("4nna", "Muster", null, "Berlin", "anna@example"));
+		assertEquals(0, AuthorValidator.validate("Anna", "Muster", new Date(1, 2, 1980), "Berlin", "anna@example.com"));
+
+	}
+
+}
@@ -0,0 +1,189 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BooleanQueryTest {
+
+	private static final String[] WORDS = {"hund", "katze", "maus", "vogel", "fisch", "pferd"};
+
+
+	@Test
+	void gallopsToTheFirstValueNotBelowTarget() {
+
+		int[] list = {1, 3, 5, 7, 9, 11, 13, 15, 17, 19};
+
+		assertEquals(0, BooleanQuery.gallop(list, 0, list.length, 0));
+		assertEquals(0, BooleanQuery.gallop(list, 0, list.length, 1));
+		assertEquals(1, BooleanQuery.gallop(list, 0, list.length, 2));
+		assertEquals(6, BooleanQuery.gallop(list, 2, list.length, 13));
+		assertEquals(9, BooleanQuery.gallop(list, 0, list.length, 19));
+		assertEquals(10, BooleanQuery.gallop(list, 0, list.length, 20));
+		assertEquals(5, BooleanQuery.gallop(list, 5, list.length, 2));
+		assertEquals(4, BooleanQuery.gallop(list, 0, 4, 100));
+
+	}
+
+
+	@Test
+	void intersectsLikeAMerge() {
+
+		Random random = new Random(1);
+
+		for(int run = 0; run < 200; run++) {
+
+			int[] a = generate(random, 1 + random.nextInt(50), 1 + random.nextInt(100));
+			int[] b = generate(random, 1 + random.nextInt(2000), 1 + random.nextInt(5));
+			int[] expected = Arrays.stream(a).filter(x -> Arrays.binarySearch(b, x) >= 0).toArray();
+			int[] remaining = Arrays.stream(a).filter(x -> Arrays.binarySearch(b, x) < 0).toArray();
+			int[] out = new int[a.length];
+
+			assertArrayEquals(expected, Arrays.copyOf(out, BooleanQuery.intersect(a, a.length, b, b.length, out)));
+			assertArrayEquals(expected, Arrays.copyOf(out, BooleanQuery.intersect(a, a.length, toPostingList(b).cursor(),
+					out)));
+			assertArrayEquals(remaining, Arrays.copyOf(out, BooleanQuery.difference(a, a.length, b, b.length, out)));
+			assertArrayEquals(remaining, Arrays.copyOf(out, BooleanQuery.difference(a, a.length,
+					toPostingList(b).cursor(), out)));
+
+		}
+
+	}
+
+
+	@Test
+	void intersectsInPlace() {
+
+		int[] a = {2, 4, 6, 8, 10};
+		int[] b = {1, 2, 3, 4, 10};
+
+		assertEquals(3, BooleanQuery.intersect(a, a.length, b, b.length, a));
+		assertArrayEquals(new int[] {2, 4, 10}, Arrays.copyOf(a, 3));
+
+	}
+
+
+	@Test
+	void unitesWithoutDuplicates() {
+
+		int[][] lists = {{1, 4, 9}, {}, {2, 4, 8, 9}, {0}};
+		int[] sizes = {3, 0, 4, 1};
+
+		assertArrayEquals(new int[] {0, 1, 2, 4, 8, 9}, BooleanQuery.union(lists, sizes, lists.length));
+
+	}
+
+
+	@Test
+	void matchesLikeABruteForceScan() {
+
+		Random random = new Random(5);
+		InvertedIndex index = new InvertedIndex();
+		boolean[][] contains = new boolean[3000][WORDS.length];
+
+		for(int docId = 0; docId < contains.length; docId++) {
+
+			StringBuilder content = new StringBuilder();
+
+			for(int w = 0; w < WORDS.length; w++) {
+
+				/* word w is in about 1 of 2^w documents */
+
+				if(random.nextInt(1 << w) == 0) {
+
+					content.append(WORDS[w]).append(' ');
+					contains[docId][w] = true;
+
+				}
+
+			}
+
+			index.addDocument(new Document("Dokument " + docId, content.toString(), "de", null, null, null));
+
+		}
+
+		assertMatches(index, contains, "hund fisch", d -> d[0] && d[4]);
+		assertMatches(index, contains, "katze AND maus AND pferd", d -> d[1] && d[2] && d[5]);
+		assertMatches(index, contains, "hund OR pferd", d -> d[0] || d[5]);
+		assertMatches(index, contains, "hund NOT katze", d -> d[0] && !d[1]);
+		assertMatches(index, contains, "NOT vogel", d -> !d[3]);
+		assertMatches(index, contains, "NOT vogel NOT hund", d -> !d[3] && !d[0]);
+		assertMatches(index, contains, "(katze OR vogel) maus NOT fisch", d -> (d[1] || d[3]) && d[2] && !d[4]);
+		assertMatches(index, contains, "hund AND elefant", d -> false);
+
+	}
+
+
+	@Test
+	void rejectsInvalidQueries() {
+
+		assertThrows(IllegalArgumentException.class, () -> BooleanQuery.parse("hund AND"));
+		assertThrows(IllegalArgumentException.class, () -> BooleanQuery.parse("(hund"));
+		assertThrows(IllegalArgumentException.class, () -> BooleanQuery.parse("hund )"));
+		assertThrows(IllegalArgumentException.class, () -> BooleanQuery.parse("\"hund katze"));
+
+	}
+
+
+	private interface Predicate {
+
+		boolean test(boolean[] contains);
+
+	}
+
+
+	private static void assertMatches(InvertedIndex index, boolean[][] contains, String query, Predicate predicate) {
+
+		int[] expected = new int[contains.length];
+		int n = 0;
+
+		for(int docId = 0; docId < contains.length; docId++) {
+
+			if(predicate.test(contains[docId])) {
+
+				expected[n++] = docId;
+
+			}
+
+		}
+
+		assertArrayEquals(Arrays.copyOf(expected, n), BooleanQuery.parse(query).execute(index), query);
+
+	}
+
+
+	private static int[] generate(Random random, int size, int maxGap) {
+
+		int[] ids = new int[size];
+		int docId = -1;
+
+		for(int i = 0; i < size; i++) {
+
+			docId += 1 + random.nextInt(maxGap);
+			ids[i] = docId;
+
+		}
+
+		return ids;
+
+	}
+
+
+	private static PostingList toPostingList(int[] ids) {
+
+		PostingList list = new PostingList(4);
+
+		for(int i = 0; i < ids.length; i++) {
+
+			list.add(ids[i], 1);
+
+		}
+
+		return list;
+
+	}
+
+}
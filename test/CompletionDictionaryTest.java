@@ -0,0 +1,211 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class CompletionDictionaryTest {
+
+	/*
+	 * Random stems over few letters, so they share long prefixes, with
+	 * two non-ASCII letters that sort after all ASCII ones by their UTF-8
+	 * bytes.
+	 *
+	 * */
+
+	private static String[] stems(int n, long seed) {
+
+		String letters = "abcd\u00e4\u00fc";
+		Random random = new Random(seed);
+		TreeSet<String> stems = new TreeSet<String>();
+
+		while(stems.size() < n) {
+
+			StringBuilder stem = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+
+			for(int i = 0; i < length; i++) {
+
+				stem.append(letters.charAt(random.nextInt(letters.length())));
+
+			}
+
+			stems.add(stem.toString());
+
+		}
+
+		return stems.toArray(new String[stems.size()]);
+
+	}
+
+
+	/*
+	 * Sorts like the dictionary: by UTF-8 bytes, unsigned.
+	 *
+	 * */
+
+	private static String[] sorted(String[] stems) {
+
+		String[] sorted = stems.clone();
+		Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8),
+				b.getBytes(StandardCharsets.UTF_8)));
+
+		return sorted;
+
+	}
+
+
+	@Test
+	void decodesEveryFrontCodedStem() {
+
+		for(int n : new int[] { 1, 15, 16, 17, 500 }) {
+
+			String[] stems = stems(n, n);
+			int[] docFreqs = new int[n];
+
+			for(int i = 0; i < n; i++) {
+
+				docFreqs[i] = 1 + i % 7;
+
+			}
+
+			CompletionDictionary dictionary = CompletionDictionary.build(stems, docFreqs);
+			String[] sorted = sorted(stems);
+
+			assertEquals(n, dictionary.size());
+
+			for(int ord = 0; ord < n; ord++) {
+
+				assertEquals(sorted[ord], dictionary.getTerm(ord));
+				assertEquals(ord, dictionary.getOrd(sorted[ord]));
+
+			}
+
+			for(int i = 0; i < n; i++) {
+
+				assertEquals(docFreqs[i], dictionary.getDocumentFrequency(stems[i]));
+
+			}
+
+			assertNull(dictionary.getTerm(n));
+
+		}
+
+	}
+
+
+	@Test
+	void findsTheFirstOrdOfMissingStemsAndPrefixes() {
+
+		String[] stems = stems(300, 3);
+		CompletionDictionary dictionary = CompletionDictionary.build(stems, new int[stems.length]);
+		String[] sorted = sorted(stems);
+
+		/* every prefix of every stem, and stems that are not in the dictionary */
+
+		TreeSet<String> keys = new TreeSet<String>();
+		keys.add("0");
+		keys.add("zzz");
+		keys.add("\u00fc\u00fc\u00fc\u00fc\u00fc\u00fc\u00fc\u00fc\u00fc");
+
+		for(String stem : stems) {
+
+			for(int end = 0; end <= stem.length(); end++) {
+
+				keys.add(stem.substring(0, end));
+				keys.add(stem.substring(0, end) + "e");
+
+			}
+
+		}
+
+		for(String key : keys) {
+
+			int count = 0;
+			boolean contained = false;
+
+			for(String stem : sorted) {
+
+				count += stem.startsWith(key) ? 1 : 0;
+				contained |= stem.equals(key);
+
+			}
+
+			assertEquals(count, dictionary.count(key), key);
+			assertEquals(contained, dictionary.getOrd(key) >= 0, key);
+
+		}
+
+	}
+
+
+	@Test
+	void completesWithTheMostFrequentStems() {
+
+		String[] stems = stems(1000, 5);
+		int[] docFreqs = new int[stems.length];
+		Random random = new Random(9);
+
+		for(int i = 0; i < stems.length; i++) {
+
+			docFreqs[i] = random.nextInt(50);
+
+		}
+
+		CompletionDictionary dictionary = CompletionDictionary.build(stems, docFreqs);
+
+		for(String prefix : new String[] { "", "a", "ab", "c\u00e4", "\u00fc", "dd", "x" }) {
+
+			Completion[] completions = dictionary.complete(prefix, 10);
+
+			/* the frequencies of the stems with the prefix, ascending */
+
+			int[] frequencies = new int[stems.length];
+			int matches = 0;
+
+			for(int i = 0; i < stems.length; i++) {
+
+				if(stems[i].startsWith(prefix)) {
+
+					frequencies[matches++] = docFreqs[i];
+
+				}
+
+			}
+
+			Arrays.sort(frequencies, 0, matches);
+
+			assertEquals(Math.min(10, matches), completions.length, prefix);
+
+			for(int i = 0; i < completions.length; i++) {
+
+				assertTrue(completions[i].getStem().startsWith(prefix));
+				assertEquals(frequencies[matches - 1 - i], completions[i].getDocumentFrequency(), prefix);
+				assertEquals(dictionary.getDocumentFrequency(completions[i].getStem()),
+						completions[i].getDocumentFrequency());
+
+			}
+
+		}
+
+	}
+
+
+	@Test
+	void handlesAnEmptyDictionary() {
+
+		CompletionDictionary dictionary = CompletionDictionary.build(new String[0], new int[0]);
+
+		assertEquals(0, dictionary.size());
+		assertEquals(-1, dictionary.getOrd("a"));
+		assertEquals(0, dictionary.count(""));
+		assertEquals(0, dictionary.complete("", 5).length);
+
+	}
+
+}
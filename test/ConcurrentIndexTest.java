@@ -0,0 +1,186 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentIndexTest {
+
+	private static final String[] WORDS = { "fuchs", "hund", "katze", "maus", "vogel", "pferd", "kuh", "schaf" };
+
+
+	private static Document document(int i) {
+
+		StringBuilder content = new StringBuilder();
+
+		for(int w = 0; w < 3 + i % 5; w++) {
+
+			content.append(WORDS[(i * 7 + w * w) % WORDS.length]).append(' ');
+
+		}
+
+		return new Document("Titel " + i, content.toString(), "de", null,
+				new Date(1, 1 + i % 12, 2000 + i % 20), null);
+
+	}
+
+
+	/*
+	 * Adds the documents in batches of growing size, so refresh merges
+	 * segments of different sizes.
+	 *
+	 * */
+
+	private static ConcurrentIndex concurrentIndex(Document[] documents) {
+
+		ConcurrentIndex index = new ConcurrentIndex(2, null);
+		int from = 0;
+
+		for(int batch = 1; from < documents.length; batch++) {
+
+			for(int i = from; i < Math.min(documents.length, from + batch * 37); i++) {
+
+				index.addDocument(documents[i]);
+
+			}
+
+			from += batch * 37;
+			index.refresh();
+
+		}
+
+		return index;
+
+	}
+
+
+	@Test
+	void mergedSegmentsKeepThePostingsAndPositions() {
+
+		Document[] documents = new Document[1000];
+		InvertedIndex expected = new InvertedIndex();
+
+		/* an indexed document no longer has its positions, so the expected index gets copies */
+
+		for(int i = 0; i < documents.length; i++) {
+
+			documents[i] = document(i);
+			expected.addDocument(document(i));
+
+		}
+
+		ConcurrentIndex index = concurrentIndex(documents);
+		InvertedIndex[] segments = index.getSnapshot().getSegments();
+		int docBase = 0;
+
+		assertEquals(documents.length, index.size());
+		assertTrue(segments.length < 10);
+
+		for(int s = 0; s < segments.length; s++) {
+
+			for(int docId = 0; docId < segments[s].size(); docId++) {
+
+				assertSame(documents[docBase + docId], segments[s].getDocument(docId));
+				assertEquals(docId, segments[s].getDocId(segments[s].getDocument(docId)));
+				assertEquals(expected.getLengthCode(docBase + docId), segments[s].getLengthCode(docId));
+				assertEquals(expected.getReleaseDay(docBase + docId), segments[s].getReleaseDay(docId));
+
+				for(int w = 0; w < WORDS.length; w++) {
+
+					assertArrayEquals(expected.getPositions(docBase + docId, WORDS[w]),
+							segments[s].getPositions(docId, WORDS[w]));
+
+				}
+
+			}
+
+			docBase += segments[s].size();
+
+		}
+
+		for(int w = 0; w < WORDS.length; w++) {
+
+			assertEquals(expected.getDocumentFrequency(WORDS[w]), index.getSnapshot().getDocumentFrequency(WORDS[w]));
+
+		}
+
+	}
+
+
+	@Test
+	void searchesLikeARankingEngine() {
+
+		Document[] documents = new Document[500];
+		InvertedIndex expected = new InvertedIndex();
+
+		for(int i = 0; i < documents.length; i++) {
+
+			documents[i] = document(i);
+			expected.addDocument(documents[i]);
+
+		}
+
+		ConcurrentIndex index = concurrentIndex(documents);
+		RankingEngine engine = new RankingEngine(expected);
+		RatingAggregates ratings = new RatingAggregates();
+
+		for(int docId = 0; docId < documents.length; docId += 3) {
+
+			ratings.add(docId, docId % 11);
+
+		}
+
+		assertSameResults(engine.search("fuchs hund", 20), index.search("fuchs hund", 20));
+
+		index.setRatingBoost(ratings, 0.5f);
+		engine.setRatingBoost(ratings, 0.5f);
+		assertSameResults(engine.search("fuchs hund", 20), index.search("fuchs hund", 20));
+
+		RecencyBoost recency = RecencyBoost.exponential(365);
+		index.setRecencyBoost(recency);
+		engine.setRecencyBoost(recency);
+		assertSameResults(engine.search("katze maus", 20), index.search("katze maus", 20));
+
+		/* switched off again */
+
+		index.setRatingBoost(null, 0);
+		index.setRecencyBoost(null);
+		engine.setRatingBoost(null, 0);
+		engine.setRecencyBoost(null);
+		assertSameResults(engine.search("katze maus", 20), index.search("katze maus", 20));
+
+	}
+
+
+	@Test
+	void keepsTheBoostsAcrossRefreshes() {
+
+		ConcurrentIndex index = new ConcurrentIndex(1, null);
+		RatingAggregates ratings = new RatingAggregates();
+
+		index.addDocument(new Document("A", "fuchs", "de", null, null, null));
+		index.addDocument(new Document("B", "fuchs", "de", null, null, null));
+		index.setRatingBoost(ratings, 0.5f);
+		index.refresh();
+		ratings.add(1, 10);
+
+		assertEquals(1, index.search("fuchs", 2)[0].getDocId());
+
+	}
+
+
+	private static void assertSameResults(SearchResult[] expected, SearchResult[] actual) {
+
+		assertEquals(expected.length, actual.length);
+
+		for(int i = 0; i < expected.length; i++) {
+
+			assertEquals(expected[i].getDocId(), actual[i].getDocId());
+			assertEquals(expected[i].getScore(), actual[i].getScore(), 1e-4f);
+
+		}
+
+	}
+
+}
@@ -0,0 +1,183 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DateRangeIndexTest {
+
+	@Test
+	void findsTheLowerBoundLikeALinearScan() {
+
+		Random random = new Random(7);
+
+		/* few distinct days, so runs of equal days cross the block boundaries */
+
+		for(int n : new int[] { 0, 1, 127, 128, 129, 1000 }) {
+
+			int[] releaseDays = new int[n];
+
+			for(int i = 0; i < n; i++) {
+
+				releaseDays[i] = 100 + random.nextInt(20);
+
+			}
+
+			DateRangeIndex dates = new DateRangeIndex(releaseDays, n);
+
+			for(int day = 95; day < 125; day++) {
+
+				int expected = 0;
+
+				while(expected < n && dates.getDay(expected) < day) {
+
+					expected++;
+
+				}
+
+				assertEquals(expected, dates.lowerBound(day), "n = " + n + ", day = " + day);
+
+			}
+
+		}
+
+	}
+
+
+	@Test
+	void extendsLikeABuild() {
+
+		Random random = new Random(11);
+		int[] releaseDays = new int[2000];
+
+		for(int i = 0; i < releaseDays.length; i++) {
+
+			releaseDays[i] = (i < 1000) ? i / 3 : random.nextInt(1000);
+
+		}
+
+		DateRangeIndex dates = new DateRangeIndex(releaseDays, 0);
+
+		for(int n = 0; n <= releaseDays.length; n += 1 + random.nextInt(300)) {
+
+			dates = dates.extend(releaseDays, n);
+			DateRangeIndex expected = new DateRangeIndex(releaseDays, n);
+
+			assertEquals(n, dates.size());
+			assertEquals(expected.isInDocOrder(), dates.isInDocOrder());
+
+			for(int position = 0; position < n; position++) {
+
+				assertEquals(expected.getDay(position), dates.getDay(position));
+				assertEquals(expected.getDocId(position), dates.getDocId(position));
+
+			}
+
+			assertEquals(expected.lowerBound(500), dates.lowerBound(500));
+
+		}
+
+		assertFalse(dates.isInDocOrder());
+
+	}
+
+
+	@Test
+	void sizesTheBitSetToTheRange() {
+
+		int[] releaseDays = new int[10000];
+
+		for(int i = 0; i < releaseDays.length; i++) {
+
+			releaseDays[i] = i;
+
+		}
+
+		DateRangeIndex dates = new DateRangeIndex(releaseDays, releaseDays.length);
+		Date from = new Date(1, 1, 1990);
+		Date to = new Date(31, 1, 1990);
+		BitSet bits = dates.getBitSet(from, to);
+
+		assertTrue(dates.isInDocOrder());
+		assertEquals(from.getEpochDay(), dates.getMinDocId(from, to));
+		assertEquals(31, bits.cardinality());
+		assertTrue(bits.size() <= 64);
+
+		/* out of order: the bits are relative to the smallest doc id */
+
+		releaseDays[5000] = 5;
+		releaseDays[10] = 9000;
+		dates = new DateRangeIndex(releaseDays, releaseDays.length);
+		bits = dates.getBitSet(new Date(2, 1, 1970), new Date(6, 1, 1970));
+
+		assertEquals(1, dates.getMinDocId(new Date(2, 1, 1970), new Date(6, 1, 1970)));
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 4999 }, bits.stream().toArray());
+		assertEquals(0, dates.getBitSet(new Date(1, 1, 2100), null).cardinality());
+
+	}
+
+
+	@Test
+	void filtersSearchesByDate() {
+
+		InvertedIndex index = new InvertedIndex();
+		RankingEngine engine = new RankingEngine(index);
+
+		for(int i = 0; i < 300; i++) {
+
+			index.addDocument(new Document("Titel " + i, "der fuchs " + ((i % 7 == 0) ? "hase" : ""), "de", null,
+					new Date(1 + i % 28, 1 + (i * 7) % 12, 2000 + i % 5), null));
+
+			if(i % 50 == 0) {
+
+				engine.search("fuchs", 1, new Date(1, 1, 2001), null);
+
+			}
+
+		}
+
+		Date from = new Date(1, 3, 2001);
+		Date to = new Date(30, 9, 2002);
+
+		/* "fuchs" scores the documents of the range, "hase" filters its postings with the bitmap */
+
+		assertFiltered(index, engine.search("fuchs", 300, from, to), "fuchs", from, to);
+		assertFiltered(index, engine.search("hase", 300, from, to), "hase", from, to);
+		assertEquals(index.size(), engine.getDateIndex().size());
+
+	}
+
+
+	private static void assertFiltered(InvertedIndex index, SearchResult[] results, String stem, Date from, Date to) {
+
+		int expected = 0;
+
+		for(int docId = 0; docId < index.size(); docId++) {
+
+			int day = index.getReleaseDay(docId);
+
+			if(day >= from.getEpochDay() && day <= to.getEpochDay() && index.getPositions(docId, stem).length > 0) {
+
+				expected++;
+
+			}
+
+		}
+
+		assertTrue(expected > 0);
+		assertEquals(expected, results.length);
+
+		for(int i = 0; i < results.length; i++) {
+
+			int day = index.getReleaseDay(results[i].getDocId());
+			assertTrue(day >= from.getEpochDay() && day <= to.getEpochDay());
+
+		}
+
+	}
+
+}
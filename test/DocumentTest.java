@@ -0,0 +1,161 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DocumentTest {
+
+	private static final String[] WORDS = { "der", "schnelle", "braune", "fuchs", "springt", "\u00fcber", "den",
+			"faulen", "hund", "stra\u00dfen" };
+
+
+	/*
+	 * Returns words separated by single spaces, with a word cut by every
+	 * multiple of Document.CHUNK_SIZE.
+	 *
+	 * */
+
+	private static String content(int chunks) {
+
+		StringBuilder content = new StringBuilder();
+		Random random = new Random(chunks);
+
+		while(content.length() < chunks * Document.CHUNK_SIZE) {
+
+			int boundary = (content.length() / Document.CHUNK_SIZE + 1) * Document.CHUNK_SIZE;
+
+			if(boundary - content.length() < 12) {
+
+				/* pad, so that the next word starts 3 characters before the boundary */
+
+				while(content.length() < boundary - 3) {
+
+					content.append(' ');
+
+				}
+
+				content.append("wortgrenze ");
+
+			}
+			else {
+
+				content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+			}
+
+		}
+
+		/* no whitespace after the last word */
+
+		return content.append("ende").toString();
+
+	}
+
+
+	/*
+	 * A reader that returns fewer characters than asked for, in random
+	 * amounts.
+	 *
+	 * */
+
+	private static Reader trickle(String content, long seed) {
+
+		Random random = new Random(seed);
+
+		return new StringReader(content) {
+
+			public int read(char[] buffer, int offset, int length) throws IOException {
+
+				return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(5000)));
+
+			}
+
+		};
+
+	}
+
+
+	private static void assertSameWords(Document expected, Document document) {
+
+		assertTrue(expected.getWordCounts().equals(document.getWordCounts()));
+		assertEquals(expected.getPositions().getTokenCount(), document.getPositions().getTokenCount());
+
+		for(int i = 0; i < expected.getWordCounts().size(); i++) {
+
+			assertArrayEquals(expected.getPositions().getPositions(i), document.getPositions().getPositions(i));
+
+		}
+
+	}
+
+
+	@Test
+	void readsWordsAcrossChunkBoundaries() throws IOException {
+
+		String content = content(3);
+		Document expected = new Document("Titel", content, "de", null, null, null);
+
+		assertTrue(expected.getWordCounts().getCount(Document.stem("wortgrenze")) >= 3);
+		assertSameWords(expected, Document.read("Titel", new StringReader(content), "de", null, null, null));
+		assertSameWords(expected, Document.read("Titel", trickle(content, 1), "de", null, null, null));
+
+	}
+
+
+	@Test
+	void growsTheBufferForAWordLongerThanAChunk() throws IOException {
+
+		StringBuilder word = new StringBuilder();
+
+		while(word.length() < 2 * Document.CHUNK_SIZE + 5) {
+
+			word.append("abcdefghij");
+
+		}
+
+		String content = "der fuchs " + word + " springt " + word;
+		Document expected = new Document("Titel", content, "de", null, null, null);
+
+		assertEquals(5, expected.getPositions().getTokenCount());
+		assertSameWords(expected, Document.read("Titel", trickle(content, 2), "de", null, null, null));
+
+	}
+
+
+	@Test
+	void decodesCharactersAcrossByteChunks() throws IOException {
+
+		String content = content(2);
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		Document expected = new Document("Titel", content, "de", null, null, null);
+		Document document = Document.read("Titel", Channels.newChannel(new ByteArrayInputStream(bytes)),
+				StandardCharsets.UTF_8, "de", null, null, null);
+
+		assertTrue(bytes.length > content.length());
+		assertSameWords(expected, document);
+
+	}
+
+
+	@Test
+	void readsEmptyContent() throws IOException {
+
+		Document document = Document.read("Titel", new StringReader(""), "de", null, null, null);
+
+		assertEquals(0, document.getWordCounts().size());
+		assertEquals(0, document.getPositions().getTokenCount());
+		assertEquals(0, Document.read("Titel", new StringReader(" \n\t "), "de", null, null, null)
+				.getWordCounts().size());
+
+	}
+
+}
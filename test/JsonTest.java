@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class JsonTest {
+
+	@Test
+	void parsesNestedValues() {
+
+		Map<?, ?> object = (Map<?, ?>) Json.parse("{\"a\": [1, 2.5, \"x\"], \"b\": {\"c\": null}, \"d\": true}");
+
+		assertEquals(List.of(1.0, 2.5, "x"), object.get("a"));
+		assertTrue(((Map<?, ?>) object.get("b")).containsKey("c"));
+		assertEquals(Boolean.TRUE, object.get("d"));
+
+	}
+
+
+	@Test
+	void acceptsNestingUpToTheLimit() {
+
+		String text = "[".repeat(Json.MAX_DEPTH) + "]".repeat(Json.MAX_DEPTH);
+
+		assertInstanceOf(List.class, Json.parse(text));
+
+	}
+
+
+	@Test
+	void rejectsDeepNestingWithoutOverflowingTheStack() {
+
+		String text = "[".repeat(SearchServer.MAX_BODY);
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Json.parse(text));
+		assertTrue(e.getMessage().startsWith("Too deeply nested"));
+
+		String objects = "{\"a\":".repeat(Json.MAX_DEPTH + 1) + "1" + "}".repeat(Json.MAX_DEPTH + 1);
+		assertThrows(IllegalArgumentException.class, () -> Json.parse(objects));
+
+	}
+
+
+	@Test
+	void rejectsTrailingText() {
+
+		assertThrows(IllegalArgumentException.class, () -> Json.parse("[1] 2"));
+		assertThrows(IllegalArgumentException.class, () -> Json.parse("[1,"));
+
+	}
+
+}
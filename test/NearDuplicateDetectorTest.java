@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class NearDuplicateDetectorTest {
+
+	private static final String CONTENT = "Der schnelle braune Fuchs springt am frühen Morgen über den faulen "
+			+ "Hund, der im hohen Gras neben der alten Scheune schläft und von warmen Sommertagen träumt.";
+
+
+	@Test
+	void dropsNearDuplicates() {
+
+		InvertedIndex index = new InvertedIndex();
+		NearDuplicateDetector detector = new NearDuplicateDetector(index);
+
+		int original = detector.addDocument(document("Original", CONTENT));
+		int copy = detector.addDocument(document("Kopie", CONTENT + " " + CONTENT));
+
+		assertEquals(original, copy);
+		assertEquals(1, index.size());
+		assertEquals(1, detector.getDuplicateCount(original));
+
+	}
+
+
+	@Test
+	void indexesEmptyDocuments() {
+
+		InvertedIndex index = new InvertedIndex();
+		NearDuplicateDetector detector = new NearDuplicateDetector(index);
+
+		for(int i = 0; i < 5; i++) {
+
+			assertEquals(i, detector.addDocument(document("Leer " + i, "")));
+
+		}
+
+		assertEquals(5, index.size());
+		assertEquals(-1, detector.findDuplicate(document("Leer", "")));
+		assertArrayEquals(new int[0], detector.findDuplicates(document("Leer", "")));
+		assertEquals(0, detector.getDuplicateCount(0));
+
+	}
+
+
+	@Test
+	void indexesDocumentsWithFewStems() {
+
+		InvertedIndex index = new InvertedIndex();
+		NearDuplicateDetector detector = new NearDuplicateDetector(index);
+
+		assertEquals(0, detector.addDocument(document("A", "Fuchs")));
+		assertEquals(1, detector.addDocument(document("B", "Fuchs")));
+		assertEquals(2, detector.addDocument(document("C", "Fuchs Hund")));
+		assertEquals(3, detector.addDocument(document("D", CONTENT)));
+
+		assertEquals(4, index.size());
+
+	}
+
+
+	@Test
+	void ignoresShortDocumentsAlreadyInTheIndex() {
+
+		InvertedIndex index = new InvertedIndex();
+		index.addDocument(document("Leer", ""));
+		index.addDocument(document("Kurz", "Fuchs"));
+
+		NearDuplicateDetector detector = new NearDuplicateDetector(index);
+
+		assertEquals(2, detector.addDocument(document("Auch leer", "")));
+		assertEquals(0, detector.getFingerprint(0));
+
+	}
+
+
+	private static Document document(String title, String content) {
+
+		return new Document(title, content, "de", null, null, null);
+
+	}
+
+}
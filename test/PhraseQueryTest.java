@@ -0,0 +1,230 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhraseQueryTest {
+
+	private static final String[] WORDS = {"hund", "katze", "maus", "vogel"};
+
+
+	@Test
+	void findsTheSmallestWindow() {
+
+		/* "a b": b right after a at 5, 6 */
+
+		assertEquals(0, PhraseQuery.smallestWindow(new int[][] {{1, 5, 9}, {3, 6}}, new int[] {0, 1}, 0));
+
+		/* "a b" in reverse order: 4, 3 */
+
+		assertEquals(2, PhraseQuery.smallestWindow(new int[][] {{4}, {3}}, new int[] {0, 1}, 0));
+
+		/* "a b c" with one word in between */
+
+		assertEquals(1, PhraseQuery.smallestWindow(new int[][] {{0}, {1}, {3}}, new int[] {0, 1, 2}, 0));
+
+		assertEquals(Integer.MAX_VALUE, PhraseQuery.smallestWindow(new int[][] {{0}, {}}, new int[] {0, 1}, 0));
+
+	}
+
+
+	@Test
+	void stopsAtTheLimit() {
+
+		int[][] positions = {{0, 10, 20}, {5, 21}};
+
+		assertEquals(4, PhraseQuery.smallestWindow(positions, new int[] {0, 1}, 5));
+		assertEquals(0, PhraseQuery.smallestWindow(positions, new int[] {0, 1}, 0));
+
+	}
+
+
+	@Test
+	void needsDistinctPositionsForARepeatedStem() {
+
+		/* "a a" in a document with a single a */
+
+		int[] once = {7};
+
+		assertEquals(Integer.MAX_VALUE, PhraseQuery.smallestWindow(new int[][] {once, once}, new int[] {0, 0}, 5));
+
+		/* "a b a" with a at 1 and 4, b at 2: p - i = 1, 1, 2 */
+
+		int[] a = {1, 4};
+
+		assertEquals(1, PhraseQuery.smallestWindow(new int[][] {a, {2}, a}, new int[] {0, 1, 0}, 0));
+
+		/* "a b a" with a single a, only if the a may be taken twice */
+
+		int[] single = {1};
+
+		assertEquals(Integer.MAX_VALUE, PhraseQuery.smallestWindow(new int[][] {single, {2}, single},
+				new int[] {0, 1, 0}, 5));
+		assertEquals(2, PhraseQuery.smallestWindow(new int[][] {single, {2}, single}, 5));
+
+	}
+
+
+	@Test
+	void matchesARepeatedStemOnlyIfItOccursOftenEnough() {
+
+		InvertedIndex index = new InvertedIndex();
+		index.addDocument(document("der hund bellt"));
+		index.addDocument(document("der hund und der hund"));
+
+		assertArrayEquals(new int[] {1}, new PhraseQuery("hund hund", 3).execute(index));
+		assertArrayEquals(new int[] {1}, new PhraseQuery("hund und der hund", 0).execute(index));
+		assertArrayEquals(new int[] {0, 1}, new PhraseQuery("der hund", 0).execute(index));
+		assertArrayEquals(new int[0], new PhraseQuery("hund der", 0).execute(index));
+		assertArrayEquals(new int[] {1}, new PhraseQuery("hund der", 1).execute(index));
+
+	}
+
+
+	@Test
+	void matchesLikeABruteForceSearch() throws IOException {
+
+		Random random = new Random(3);
+		InvertedIndex index = new InvertedIndex();
+		String[][] contents = new String[300][];
+
+		for(int docId = 0; docId < contents.length; docId++) {
+
+			contents[docId] = new String[1 + random.nextInt(12)];
+
+			for(int i = 0; i < contents[docId].length; i++) {
+
+				contents[docId][i] = WORDS[random.nextInt(WORDS.length)];
+
+			}
+
+			/* half of them streamed */
+
+			String content = String.join(" ", contents[docId]);
+			index.addDocument((docId % 2 == 0) ? document(content)
+					: Document.read("Dokument", new StringReader(content), "de", null, null, null));
+
+		}
+
+		for(int run = 0; run < 200; run++) {
+
+			String[] phrase = new String[1 + random.nextInt(3)];
+
+			for(int i = 0; i < phrase.length; i++) {
+
+				phrase[i] = WORDS[random.nextInt(WORDS.length)];
+
+			}
+
+			int slop = random.nextInt(4);
+			int[] expected = new int[contents.length];
+			int n = 0;
+
+			for(int docId = 0; docId < contents.length; docId++) {
+
+				if(matches(contents[docId], phrase, slop, new int[phrase.length], 0)) {
+
+					expected[n++] = docId;
+
+				}
+
+			}
+
+			PhraseQuery query = new PhraseQuery(String.join(" ", phrase), slop);
+
+			assertArrayEquals(Arrays.copyOf(expected, n), query.execute(index), query.toString());
+
+		}
+
+	}
+
+
+	@Test
+	void readsThePositionsFromThePostings() {
+
+		InvertedIndex index = new InvertedIndex();
+		index.addDocument(document("katze"));
+		index.addDocument(document("hund katze hund maus hund"));
+
+		assertArrayEquals(new int[] {0, 2, 4}, index.getPositions(1, "hund"));
+		assertArrayEquals(new int[] {1}, index.getPositions(1, "katze"));
+		assertArrayEquals(new int[0], index.getPositions(0, "hund"));
+		assertArrayEquals(new int[0], index.getPositions(1, "vogel"));
+
+	}
+
+
+	@Test
+	void rejectsEmptyPhrasesAndNegativeSlop() {
+
+		assertThrows(IllegalArgumentException.class, () -> new PhraseQuery("  ", 0));
+		assertThrows(IllegalArgumentException.class, () -> new PhraseQuery("hund", -1));
+
+	}
+
+
+	/*
+	 * Tries every assignment of distinct positions to the words of phrase.
+	 *
+	 * */
+
+	private static boolean matches(String[] content, String[] phrase, int slop, int[] chosen, int word) {
+
+		if(word == phrase.length) {
+
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+
+			for(int i = 0; i < chosen.length; i++) {
+
+				min = Math.min(min, chosen[i] - i);
+				max = Math.max(max, chosen[i] - i);
+
+			}
+
+			return max - min <= slop;
+
+		}
+
+		for(int p = 0; p < content.length; p++) {
+
+			boolean free = content[p].equals(phrase[word]);
+
+			for(int i = 0; i < word && free; i++) {
+
+				free = chosen[i] != p;
+
+			}
+
+			if(free) {
+
+				chosen[word] = p;
+
+				if(matches(content, phrase, slop, chosen, word + 1)) {
+
+					return true;
+
+				}
+
+			}
+
+		}
+
+		return false;
+
+	}
+
+
+	private static Document document(String content) {
+
+		return new Document("Dokument", content, "de", null, null, null);
+
+	}
+
+}
@@ -0,0 +1,248 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PostingsCursorTest {
+
+	/* sizes around the block size, and several blocks with a tail */
+
+	private static final int[] SIZES = {0, 1, 127, 128, 129, 256, 1000};
+
+
+	@Test
+	void readsAllPostingsOfAPostingList() {
+
+		for(int size : SIZES) {
+
+			int[][] postings = generate(new Random(size), size);
+			PostingList list = toPostingList(postings);
+
+			assertEquals(size, list.size());
+			assertPostings(postings, list.cursor());
+			assertPostings(postings, CompressedPostingList.encode(list).cursor());
+
+			for(int i = 0; i < size; i++) {
+
+				assertEquals(postings[0][i], list.getDocId(i));
+				assertEquals(postings[1][i], list.getFrequency(i));
+
+			}
+
+			assertEquals(-1, list.getDocId(size));
+
+		}
+
+	}
+
+
+	@Test
+	void addsToTheFrequencyOfTheLastDocument() {
+
+		PostingList list = new PostingList(1);
+
+		for(int docId = 0; docId < 300; docId++) {
+
+			list.add(docId, 1);
+			list.add(docId, 2);
+
+		}
+
+		assertEquals(300, list.size());
+
+		PostingsCursor cursor = list.cursor();
+
+		for(int docId = 0; docId < 300; docId++) {
+
+			assertEquals(docId, cursor.nextDoc());
+			assertEquals(3, cursor.freq());
+
+		}
+
+		assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+
+	}
+
+
+	@Test
+	void keepsThePositionsOfEveryPosting() {
+
+		PostingList list = new PostingList(1);
+
+		for(int docId = 0; docId < 300; docId++) {
+
+			list.add(docId, 2, encode(docId, docId + 3), 0, encode(docId, docId + 3).length);
+
+		}
+
+		/* the last document again: its positions are merged */
+
+		list.add(299, 2, encode(1, 302), 0, encode(1, 302).length);
+
+		PostingsCursor cursor = list.cursor();
+
+		assertEquals(150, cursor.advance(150));
+		assertArrayEquals(new int[] {150, 153}, cursor.positions());
+		assertEquals(151, cursor.nextDoc());
+		assertArrayEquals(new int[] {151, 154}, cursor.positions());
+		assertEquals(299, cursor.advance(299));
+		assertEquals(4, cursor.freq());
+		assertArrayEquals(new int[] {1, 299, 302}, cursor.positions());
+		assertArrayEquals(new int[0], CompressedPostingList.encode(list).cursor().positions());
+
+	}
+
+
+	@Test
+	void advancesLikeALinearScan() {
+
+		Random random = new Random(7);
+		int[][] postings = generate(random, 5000);
+		PostingList list = toPostingList(postings);
+		CompressedPostingList compressed = CompressedPostingList.encode(list);
+
+		for(int run = 0; run < 50; run++) {
+
+			PostingsCursor heap = list.cursor();
+			PostingsCursor encoded = compressed.cursor();
+			int target = 0;
+			int i = 0;
+
+			while(true) {
+
+				target += random.nextInt((run % 5 == 0) ? 20000 : 200);
+
+				while(i < postings[0].length && postings[0][i] < target) {
+
+					i++;
+
+				}
+
+				int expected = (i < postings[0].length) ? postings[0][i] : PostingsCursor.NO_MORE_DOCS;
+
+				assertEquals(expected, heap.advance(target));
+				assertEquals(expected, encoded.advance(target));
+
+				if(expected == PostingsCursor.NO_MORE_DOCS) {
+
+					break;
+
+				}
+
+				assertEquals(postings[1][i], heap.freq());
+				assertEquals(postings[1][i], encoded.freq());
+
+			}
+
+		}
+
+	}
+
+
+	@Test
+	void neverAdvancesBackwards() {
+
+		PostingList list = toPostingList(generate(new Random(3), 1000));
+		PostingsCursor cursor = list.cursor();
+
+		int docId = cursor.advance(list.getDocId(500));
+
+		assertEquals(docId, cursor.advance(0));
+		assertEquals(list.getDocId(501), cursor.nextDoc());
+
+	}
+
+
+	@Test
+	void decodesACompressedListBack() {
+
+		int[][] postings = generate(new Random(11), 777);
+		PostingList decoded = CompressedPostingList.encode(toPostingList(postings)).toPostingList();
+
+		assertPostings(postings, decoded.cursor());
+		assertArrayEquals(CompressedPostingList.encodeToBytes(toPostingList(postings)),
+				CompressedPostingList.encodeToBytes(decoded));
+
+	}
+
+
+	private static void assertPostings(int[][] postings, PostingsCursor cursor) {
+
+		for(int i = 0; i < postings[0].length; i++) {
+
+			assertEquals(postings[0][i], cursor.nextDoc());
+			assertEquals(postings[1][i], cursor.freq());
+
+		}
+
+		assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+		assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.nextDoc());
+
+	}
+
+
+	/*
+	 * Doc ids with gaps of up to 300 (some need two or three bytes) and
+	 * frequencies up to 1000.
+	 *
+	 * */
+
+	private static int[][] generate(Random random, int size) {
+
+		int[][] postings = new int[2][size];
+		int docId = -1;
+
+		for(int i = 0; i < size; i++) {
+
+			docId += 1 + ((i % 10 == 0) ? random.nextInt(300) : random.nextInt(3));
+			postings[0][i] = docId;
+			postings[1][i] = 1 + ((i % 7 == 0) ? random.nextInt(1000) : random.nextInt(3));
+
+		}
+
+		return postings;
+
+	}
+
+
+	/*
+	 * Encodes the ascending positions like TermPositions does.
+	 *
+	 * */
+
+	private static byte[] encode(int... positions) {
+
+		byte[] data = new byte[5 * positions.length];
+		int size = 0;
+		int previous = 0;
+
+		for(int i = 0; i < positions.length; i++) {
+
+			size = PostingList.writeVInt(data, size, positions[i] - previous);
+			previous = positions[i];
+
+		}
+
+		return Arrays.copyOf(data, size);
+
+	}
+
+
+	private static PostingList toPostingList(int[][] postings) {
+
+		PostingList list = new PostingList(4);
+
+		for(int i = 0; i < postings[0].length; i++) {
+
+			list.add(postings[0][i], postings[1][i]);
+
+		}
+
+		return list;
+
+	}
+
+}
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class QueryCacheTest {
+
+	/*
+	 * An index of 200 documents about foxes and dogs.
+	 *
+	 * */
+
+	private static InvertedIndex index() {
+
+		InvertedIndex index = new InvertedIndex();
+
+		for(int i = 0; i < 200; i++) {
+
+			String content = (i % 2 == 0) ? "der fuchs springt " + i : "der hund bellt " + i;
+			index.addDocument(new Document("Titel " + i, content, "de", null, new Date(1, 1, 1990 + i % 30), null));
+
+		}
+
+		return index;
+
+	}
+
+
+	@Test
+	void servesRepeatedQueries() {
+
+		QueryCache cache = new QueryCache(new RankingEngine(index()), 1 << 20);
+
+		SearchResult[] first = cache.search("der fuchs", 10);
+		SearchResult[] second = cache.search("fuchs der", 10);
+
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(first.length, second.length);
+		assertEquals(first[0].getDocId(), second[0].getDocId());
+
+	}
+
+
+	@Test
+	void invalidatesEntriesWhenTheBoostsChange() {
+
+		RankingEngine engine = new RankingEngine(index());
+		QueryCache cache = new QueryCache(engine, 1 << 20);
+		RatingAggregates ratings = new RatingAggregates();
+		ratings.add(198, 10);
+
+		float unboosted = cache.search("fuchs", 1)[0].getScore();
+
+		engine.setRatingBoost(ratings, 0.5f);
+		assertEquals(198, cache.search("fuchs", 1)[0].getDocId());
+		assertEquals(2, cache.getMisses());
+
+		engine.setRatingBoost(null, 0);
+		assertEquals(unboosted, cache.search("fuchs", 1)[0].getScore());
+		assertEquals(3, cache.getMisses());
+
+		engine.setRecencyBoost(RecencyBoost.exponential(365));
+		assertNotEquals(unboosted, cache.search("fuchs", 1)[0].getScore());
+		assertEquals(4, cache.getMisses());
+
+		engine.setRecencyBoost(null);
+		assertEquals(unboosted, cache.search("fuchs", 1)[0].getScore());
+		assertEquals(5, cache.getMisses());
+		assertEquals(0, cache.getHits());
+
+	}
+
+
+	@Test
+	void servesEntriesWithinTheMaximumStaleness() {
+
+		InvertedIndex index = index();
+		RankingEngine engine = new RankingEngine(index);
+		RatingAggregates ratings = new RatingAggregates();
+		engine.setRatingBoost(ratings, 0.5f);
+		QueryCache cache = new QueryCache(engine, 1 << 20);
+
+		cache.search("fuchs", 5);
+
+		/* 1% of 200: two documents or ratings may be missed */
+
+		index.addDocument(new Document("Katze", "die katze schlaeft", "de", null, null, null));
+		ratings.add(0, 10);
+		cache.search("fuchs", 5);
+		assertEquals(1, cache.getHits());
+
+		ratings.add(2, 10);
+		SearchResult[] results = cache.search("fuchs", 5);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, results[0].getDocId());
+
+	}
+
+
+	@Test
+	void servesNoStaleEntriesWithoutStaleness() {
+
+		InvertedIndex index = index();
+		RankingEngine engine = new RankingEngine(index);
+		RatingAggregates ratings = new RatingAggregates();
+		engine.setRatingBoost(ratings, 0.5f);
+		QueryCache cache = new QueryCache(engine, 1 << 20);
+		cache.setMaxStaleness(0);
+
+		cache.search("hund", 5);
+		ratings.add(1, 0);
+		cache.search("hund", 5);
+		index.addDocument(new Document("Katze", "die katze schlaeft", "de", null, null, null));
+		cache.search("hund", 5);
+		cache.search("hund", 5);
+
+		assertEquals(3, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertThrows(IllegalArgumentException.class, () -> cache.setMaxStaleness(-1));
+
+	}
+
+
+	@Test
+	void evictsNothingForACandidateThatIsNotAdmitted() {
+
+		/* the window holds no entry, so every new entry is a candidate for the main area of 1100 bytes */
+
+		QueryCache cache = new QueryCache(new RankingEngine(index()), 1111);
+
+		cache.search("fuchs", 1);
+		cache.search("hund", 1);
+		cache.search("hund", 1);
+		cache.search("hund", 1);
+		assertEquals(2, cache.size());
+
+		/* 100 results: only fits if both other entries are evicted, but is asked for less often than "hund" */
+
+		cache.search("springt", 100);
+		cache.search("springt", 100);
+
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getEvictions());
+
+		cache.search("fuchs", 1);
+		cache.search("hund", 1);
+		assertEquals(4, cache.getHits());
+
+	}
+
+}
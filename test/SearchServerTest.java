@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchServerTest {
+
+	private SearchServer server;
+	private HttpClient client;
+	private int port;
+
+
+	@BeforeEach
+	void start() throws Exception {
+
+		this.start(new RatingAggregates());
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	}
+
+
+	private void start(RatingAggregates ratings) throws Exception {
+
+		ConcurrentIndex index = new ConcurrentIndex();
+		index.addDocument(new Document("Der Fuchs", "der schnelle braune fuchs", "de", null, null, null));
+		index.refresh();
+
+		this.server = new SearchServer(index, ratings);
+		this.port = this.server.start(0);
+
+	}
+
+
+	@AfterEach
+	void stop() {
+
+		this.server.stop(0);
+
+	}
+
+
+	@Test
+	void searches() throws Exception {
+
+		HttpResponse<String> response = this.get("/search?q=fuchs&k=5");
+
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("\"title\":\"Der Fuchs\""));
+
+	}
+
+
+	@Test
+	void answersDeeplyNestedBodiesWith400() throws Exception {
+
+		HttpResponse<String> response = this.post("/reviews", "[".repeat(100000));
+
+		assertEquals(400, response.statusCode());
+		assertTrue(response.body().contains("Too deeply nested"));
+
+	}
+
+
+	@Test
+	void recordsTheRatingOfAReview() throws Exception {
+
+		HttpResponse<String> response = this.post("/reviews", "{\"docId\": 0, \"rating\": 8}");
+
+		assertEquals(201, response.statusCode());
+		assertEquals("{\"docId\":0,\"rating\":{\"count\":1,\"average\":8.0}}", response.body());
+
+		this.post("/reviews", "{\"docId\": 0, \"rating\": 3}");
+		response = this.get("/documents/0");
+
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().endsWith("\"rating\":{\"count\":2,\"average\":5.5}}"));
+
+	}
+
+
+	@Test
+	void answersInvalidReviewsWith400() throws Exception {
+
+		assertEquals(400, this.post("/reviews", "{\"docId\": 0, \"rating\": 11}").statusCode());
+		assertEquals(400, this.post("/reviews", "{\"docId\": 0, \"rating\": -1}").statusCode());
+		assertEquals(400, this.post("/reviews", "{\"docId\": 0, \"rating\": 7.5}").statusCode());
+		assertEquals(400, this.post("/reviews", "{\"docId\": 0, \"rating\": 8, \"content\": \"gut\"}")
+				.statusCode());
+		assertEquals(404, this.post("/reviews", "{\"docId\": 1, \"rating\": 8}").statusCode());
+
+		/* nothing was recorded */
+
+		assertTrue(this.get("/documents/0").body().contains("\"rating\":{\"count\":0,"));
+
+	}
+
+
+	@Test
+	void answersUnexpectedExceptionsWith500() throws Exception {
+
+		/* ratings that fail on every add, as a bug would */
+
+		this.server.stop(0);
+		this.start(new RatingAggregates() {
+
+			public boolean add(int docId, int rating) {
+
+				throw new NullPointerException();
+
+			}
+
+		});
+
+		HttpResponse<String> response = this.post("/reviews", "{\"docId\": 0, \"rating\": 8}");
+
+		assertEquals(500, response.statusCode());
+
+		/* the server still answers */
+
+		assertEquals(200, this.get("/documents/0").statusCode());
+
+	}
+
+
+	private HttpResponse<String> get(String path) throws Exception {
+
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + path)).build();
+
+		return this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+	}
+
+
+	private HttpResponse<String> post(String path, String body) throws Exception {
+
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + path))
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+
+		return this.client.send(request, HttpResponse.BodyHandlers.ofString());
+
+	}
+
+}
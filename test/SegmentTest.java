@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentTest {
+
+	private static final String[] WORDS = { "der", "schnelle", "braune", "fuchs", "springt", "ueber", "den", "hund" };
+
+	@TempDir
+	Path directory;
+
+
+	private static InvertedIndex index() {
+
+		InvertedIndex index = new InvertedIndex();
+
+		for(int i = 0; i < 300; i++) {
+
+			StringBuilder content = new StringBuilder();
+
+			for(int w = 0; w < 5 + i % 20; w++) {
+
+				content.append(WORDS[(i + w * (1 + i % 3)) % WORDS.length]).append(' ');
+
+			}
+
+			index.addDocument(new Document("Titel " + i, content.toString(), "de", "Zusammenfassung " + i,
+					new Date(1 + i % 28, 1 + i % 12, 1990 + i % 30), new Author("Anna", "Muster", null, null, null)));
+
+		}
+
+		/* without words */
+
+		index.addDocument(new Document("Leer", "", "de", null, null, null));
+
+		return index;
+
+	}
+
+
+	@Test
+	void restoresTheDocuments() throws IOException {
+
+		InvertedIndex index = index();
+		Path file = this.directory.resolve("index.seg");
+		SegmentWriter.write(index, file);
+		Segment segment = Segment.open(file);
+
+		assertEquals(index.size(), segment.size());
+		assertEquals(index.getVocabularySize(), segment.getVocabularySize());
+
+		for(int docId = 0; docId < index.size(); docId++) {
+
+			Document expected = index.getDocument(docId);
+			Document document = segment.getDocument(docId);
+
+			assertTrue(expected.equals(document));
+			assertEquals(expected.getSummary(), document.getSummary());
+			assertTrue(expected.getWordCounts().equals(document.getWordCounts()));
+
+			/* the indexed document has dropped its positions, the postings have them */
+
+			int tokenCount = 0;
+
+			for(int i = 0; i < expected.getWordCounts().size(); i++) {
+
+				int[] positions = index.getPositions(docId, expected.getWordCounts().getWord(i));
+
+				assertArrayEquals(positions, document.getPositions().getPositions(i));
+				tokenCount += positions.length;
+
+			}
+
+			assertEquals(0, expected.getPositions().size());
+			assertEquals(tokenCount, document.getPositions().getTokenCount());
+
+		}
+
+	}
+
+
+	@Test
+	void loadsAnIndexThatSearchesLikeTheOriginal() throws IOException {
+
+		InvertedIndex index = index();
+		Path file = this.directory.resolve("index.seg");
+		SegmentWriter.write(index, file);
+		InvertedIndex loaded = Segment.open(file).load();
+
+		assertEquals(index.size(), loaded.size());
+		assertEquals(index.getTotalLength(), loaded.getTotalLength());
+
+		SearchResult[] expected = new RankingEngine(index).search("brauner fuchs", 20);
+		SearchResult[] results = new RankingEngine(loaded).search("brauner fuchs", 20);
+
+		assertEquals(expected.length, results.length);
+
+		for(int i = 0; i < expected.length; i++) {
+
+			assertEquals(expected[i].getDocId(), results[i].getDocId());
+			assertEquals(expected[i].getScore(), results[i].getScore());
+
+		}
+
+		PhraseQuery phrase = new PhraseQuery("fuchs springt", 1);
+
+		assertTrue(phrase.execute(index).length > 0);
+		assertArrayEquals(phrase.execute(index), phrase.execute(loaded));
+
+		/* the loaded index can be added to */
+
+		loaded.addDocument(new Document("Neu", "der fuchs springt", "de", null, null, null));
+		assertEquals(index.size() + 1, loaded.size());
+
+	}
+
+
+	@Test
+	void deletesTheTemporaryFileIfWritingFails() throws IOException {
+
+		/* a non-empty directory cannot be replaced by the segment */
+
+		Path file = this.directory.resolve("index.seg");
+		Files.createDirectory(file);
+		Files.createFile(file.resolve("other"));
+
+		assertThrows(IOException.class, () -> SegmentWriter.write(index(), file));
+		assertFalse(Files.exists(this.directory.resolve("index.seg.tmp")));
+
+	}
+
+}
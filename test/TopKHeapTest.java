@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TopKHeapTest {
+
+	@Test
+	void keepsTheBestKBestFirst() {
+
+		TopKHeap heap = new TopKHeap(3);
+
+		for(int docId = 0; docId < 10; docId++) {
+
+			heap.offer(docId, (docId * 7) % 10);
+
+		}
+
+		float[] scores = new float[3];
+
+		assertArrayEquals(new int[] { 7, 4, 1 }, heap.drain(scores));
+		assertArrayEquals(new float[] { 9, 8, 7 }, scores);
+
+	}
+
+
+	@Test
+	void prefersTheSmallerDocIdAmongEqualScores() {
+
+		TopKHeap heap = new TopKHeap(2);
+		heap.offer(5, 1);
+		heap.offer(3, 1);
+		heap.offer(9, 1);
+		heap.offer(1, 1);
+
+		assertArrayEquals(new int[] { 1, 3 }, heap.drain(null));
+
+	}
+
+
+	@Test
+	void growsUpToAHugeK() {
+
+		TopKHeap heap = new TopKHeap(Integer.MAX_VALUE);
+
+		for(int docId = 0; docId < 1000; docId++) {
+
+			heap.offer(docId, docId % 17);
+
+		}
+
+		assertEquals(1000, heap.size());
+		assertEquals(Float.NEGATIVE_INFINITY, heap.threshold());
+
+		int[] docIds = heap.drain(null);
+		assertEquals(1000, docIds.length);
+		assertEquals(16, docIds[0]);
+
+	}
+
+
+	@Test
+	void acceptsNothingForKZero() {
+
+		TopKHeap heap = new TopKHeap(0);
+
+		assertEquals(false, heap.offer(1, 1));
+		assertEquals(0, heap.drain(null).length);
+
+	}
+
+
+	@Test
+	void searchesForAllMatches() {
+
+		InvertedIndex index = new InvertedIndex();
+
+		for(int i = 0; i < 50; i++) {
+
+			index.addDocument(new Document("Titel " + i, "der fuchs springt " + i, "de", null, null, null));
+
+		}
+
+		RankingEngine engine = new RankingEngine(index);
+
+		assertEquals(50, engine.search("fuchs", Integer.MAX_VALUE).length);
+
+	}
+
+}